@@ -0,0 +1,66 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of a call below the threshold, which should be a single
+ * field comparison and allocate nothing.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DisabledLevelBenchmark
+{
+    private LoggerFixture fixture;
+    private final Object argument = "argument";
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = new LoggerFixture(true, "log.threshold", "INFO");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public void logDebug() {
+        fixture.logger.logDebug(DisabledLevelBenchmark.class, "disabled");
+    }
+
+    @Benchmark
+    public void logDebugParameterized() {
+        fixture.logger.logDebug(DisabledLevelBenchmark.class, "disabled {}", argument);
+    }
+
+    @Benchmark
+    public void isDebugEnabled(Blackhole blackhole) {
+        blackhole.consume(fixture.logger.isDebugEnabled());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the flush policies of the channel appender: a system call per
+ * event against events collected into batches, written when the batch is full
+ * or has waited long enough, or every 10 milliseconds. Run it with one, eight
+ * and 32 producer threads:
+ * <pre>
+ * java -jar target/benchmarks.jar FlushPolicyBenchmark -t 1 -prof gc
+ * java -jar target/benchmarks.jar FlushPolicyBenchmark -t 8 -prof gc
+ * java -jar target/benchmarks.jar FlushPolicyBenchmark -t 32 -prof gc
+ * </pre>
+ * or through {@link ThreadScalingRunner} for every thread count:
+ * {@code ThreadScalingRunner FlushPolicyBenchmark}
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlushPolicyBenchmark
+{
+    @Param({"every-event", "batch", "interval:10ms"})
+    public String flush;
+
+    @Param({"false", "true"})
+    public boolean async;
+
+    private LoggerFixture fixture;
+    private final Integer argument = 42;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = new LoggerFixture(true, "log.appender", "channel", "log.flush", flush,
+                "log.async", String.valueOf(async));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public void logInfo() {
+        fixture.logger.logInfo(FlushPolicyBenchmark.class, "request {} served", argument);
+    }
+}
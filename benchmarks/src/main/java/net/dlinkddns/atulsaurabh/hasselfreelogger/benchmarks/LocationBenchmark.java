@@ -0,0 +1,85 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.spi.LocationInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of the caller location printed by %M. A call is measured
+ * with a pattern without location converters and with one printing the
+ * method, and {@link #log4jLocation()} measures how log4j finds the caller,
+ * i.e. the cost the location had per event before it was cached per call
+ * site. log4j converts every frame of the stack while the location engine
+ * stops at the caller, so the calls are made {@code depth} frames deep, like
+ * the calls of an application running in a container.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocationBenchmark
+{
+    @Param({"[%p] %c - %m%n", "[%p] %c %M - %m%n"})
+    public String pattern;
+
+    @Param({"0", "128"})
+    public int depth;
+
+    private LoggerFixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = new LoggerFixture(true, "log.appender", "channel", "log.conversionpattern", pattern);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public Object logInfo() {
+        return logInfo(depth);
+    }
+
+    @Benchmark
+    public Object log4jLocation() {
+        return log4jLocation(depth);
+    }
+
+    private Object logInfo(int remaining) {
+        if (remaining > 0)
+            return logInfo(remaining - 1);
+        fixture.logger.logInfo(LocationBenchmark.class, "location");
+        return null;
+    }
+
+    private Object log4jLocation(int remaining) {
+        if (remaining > 0)
+            return log4jLocation(remaining - 1);
+        return new LocationInfo(new Throwable(), LocationBenchmark.class.getName());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures every entry point of {@link net.dlinkddns.atulsaurabh.hasselfreelogger.api.Logger}
+ * with rolling on and off, synchronous and asynchronous, for every appender
+ * and for short, medium and long messages. Debug is below the threshold, so
+ * {@link #logDebugDisabled()} measures a disabled call.
+ * <p>
+ * The thread count is chosen with {@code -t}, the allocation per call is
+ * reported by {@code -prof gc}.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggerBenchmark
+{
+    @Param({"false", "true"})
+    public boolean rolling;
+
+    @Param({"log4j", "channel", "mmap"})
+    public String appender;
+
+    @Param({"false", "true"})
+    public boolean async;
+
+    @Param({"16", "256", "4096"})
+    public int messageSize;
+
+    private LoggerFixture fixture;
+    private String message;
+    private final RuntimeException exception = new RuntimeException("benchmark");
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = new LoggerFixture(rolling, "log.appender", appender, "log.async", String.valueOf(async),
+                "log.threshold", "INFO");
+        message = LoggerFixture.message(messageSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public void logInfo() {
+        fixture.logger.logInfo(LoggerBenchmark.class, message);
+    }
+
+    @Benchmark
+    public void logInfoWithoutClass() {
+        fixture.logger.logInfo(message);
+    }
+
+    @Benchmark
+    public void logInfoParameterized() {
+        fixture.logger.logInfo(LoggerBenchmark.class, "{} {}", message, messageSize);
+    }
+
+    @Benchmark
+    public void logError() {
+        fixture.logger.logError(LoggerBenchmark.class, message);
+    }
+
+    @Benchmark
+    public void logErrorWithThrowable() {
+        fixture.logger.logError(LoggerBenchmark.class, message, exception);
+    }
+
+    @Benchmark
+    public void logAll() {
+        fixture.logger.logAll(LoggerBenchmark.class, message);
+    }
+
+    @Benchmark
+    public void logDebugDisabled() {
+        fixture.logger.logDebug(LoggerBenchmark.class, message);
+    }
+}
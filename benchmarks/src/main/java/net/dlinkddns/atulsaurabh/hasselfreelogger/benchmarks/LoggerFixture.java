@@ -0,0 +1,70 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.stream.Stream;
+import net.dlinkddns.atulsaurabh.hasselfreelogger.impl.HasselFreeLogger;
+import org.apache.log4j.varia.NullAppender;
+
+/**
+ * Creates the logger measured by the benchmarks. The level files are written
+ * into a fresh temporary directory which is deleted again by {@link #close()}.
+ * With rolling off the events go to log4j, which gets a
+ * {@link NullAppender} so that only the cost of the library is measured.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class LoggerFixture implements AutoCloseable
+{
+    final HasselFreeLogger logger;
+    private final Path directory;
+
+    /**
+     * @param settings additional configuration keys, e.g. {@code log.async},
+     *                 given as key and value pairs
+     */
+    LoggerFixture(boolean rolling, String... settings) throws IOException {
+        directory = Files.createTempDirectory("hasselfreelogger-bench");
+        Properties properties = new Properties();
+        properties.setProperty("log.directory", directory.toString());
+        properties.setProperty("log.all", "all.log");
+        properties.setProperty("log.debug", "debug.log");
+        properties.setProperty("log.error", "error.log");
+        properties.setProperty("log.fatal", "fatal.log");
+        properties.setProperty("log.info", "info.log");
+        properties.setProperty("log.warn", "warn.log");
+        properties.setProperty("log.rolling", String.valueOf(rolling));
+        for (int i = 0; i + 1 < settings.length; i += 2)
+            properties.setProperty(settings[i], settings[i + 1]);
+        if (!rolling && !org.apache.log4j.Logger.getRootLogger().getAllAppenders().hasMoreElements())
+            org.apache.log4j.Logger.getRootLogger().addAppender(new NullAppender());
+        logger = new HasselFreeLogger(properties);
+    }
+
+    /**
+     * @return a message of {@code size} characters
+     */
+    static String message(int size) {
+        StringBuilder message = new StringBuilder(size);
+        for (int i = 0; i < size; i++)
+            message.append((char) ('a' + i % 26));
+        return message.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        logger.shutdown();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.benchmarks;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import net.dlinkddns.atulsaurabh.hasselfreelogger.impl.HasselFreeLogger;
+
+/**
+ * Ships events over TCP to a collector running in the same process, a
+ * {@link ServerSocketChannel} on the loopback interface, and checks that every
+ * event arrives:
+ * <pre>
+ * java -cp target/benchmarks.jar \
+ *      net.dlinkddns.atulsaurabh.hasselfreelogger.benchmarks.NetworkCollectorCheck
+ * </pre>
+ * The check runs three phases of events:
+ * <ul>
+ *     <li> framing: the collector parses every syslog message by the length in
+ *          front of it, so a message of several lines and of characters
+ *          longer than one byte has to arrive as one frame
+ *     <li> resend: the collector closes the connection and stops listening
+ *          for a while; the events logged meanwhile have to arrive once it
+ *          listens again
+ *     <li> restart: the logger is shut down while the collector is stopped;
+ *          a new logger on the same directory has to ship the events left in
+ *          the spool file
+ * </ul>
+ * An event may arrive twice, but none may be missing. The check exits with 1
+ * if an event is missing or a frame is malformed.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+public final class NetworkCollectorCheck
+{
+    private static final int EVENTS = 1000;
+    private static final String TAIL = " grüße\nsecond line";
+    private static final long TIMEOUT = TimeUnit.SECONDS.toMillis(20L);
+
+    private NetworkCollectorCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path directory = Files.createTempDirectory("hasselfreelogger-network");
+        List<String> failures = new ArrayList<>();
+        Collector collector = new Collector();
+        try {
+            collector.start(0);
+            Properties properties = new Properties();
+            properties.setProperty("log.directory", directory.toString());
+            properties.setProperty("log.rolling", "true");
+            properties.setProperty("log.network", "127.0.0.1:" + collector.port);
+            properties.setProperty("log.network.format", "syslog");
+            properties.setProperty("log.network.spoolsize", "1MB");
+            properties.setProperty("log.network.backoff", "50");
+            properties.setProperty("log.network.backoff.max", "200");
+
+            HasselFreeLogger logger = new HasselFreeLogger(properties);
+            log(logger, "framing");
+            check(collector, "framing", failures);
+
+            /*
+                The sender notices the closed connection while it is idle; the
+                events logged while nothing listens wait in the spool.
+            */
+            collector.stop();
+            Thread.sleep(500L);
+            log(logger, "resend");
+            Thread.sleep(500L);
+            collector.start(collector.port);
+            check(collector, "resend", failures);
+
+            collector.stop();
+            Thread.sleep(500L);
+            log(logger, "restart");
+            logger.shutdown();
+            collector.start(collector.port);
+            logger = new HasselFreeLogger(properties);
+            check(collector, "restart", failures);
+            logger.shutdown();
+        } finally {
+            collector.stop();
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+        failures.addAll(collector.malformed);
+        if (!failures.isEmpty()) {
+            for (String failure : failures)
+                System.out.println(failure);
+            System.exit(1);
+        }
+        System.out.println("every event arrived, " + collector.duplicates() + " twice");
+    }
+
+    private static void log(HasselFreeLogger logger, String phase) {
+        for (int i = 0; i < EVENTS; i++)
+            logger.logInfo(NetworkCollectorCheck.class, "event {}-{}" + TAIL, phase, i);
+        logger.flush();
+    }
+
+    /*
+        Waits until every event of the phase arrived or the time is up.
+    */
+    private static void check(Collector collector, String phase, List<String> failures) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        int missing;
+        while ((missing = collector.missing(phase)) > 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(20L);
+        if (missing > 0)
+            failures.add(phase + ": " + missing + " of " + EVENTS + " events missing");
+        else
+            System.out.println(phase + ": " + EVENTS + " events arrived");
+    }
+
+    /**
+     * Accepts connections and reads the messages framed by octet counting as
+     * of RFC 6587: the length of the message in decimal digits, a space and
+     * the message.
+     */
+    private static final class Collector
+    {
+        final Map<String, Integer> received = new ConcurrentHashMap<>();
+        final List<String> malformed = new CopyOnWriteArrayList<>();
+        private final List<Closeable> open = new CopyOnWriteArrayList<>();
+        int port;
+
+        void start(int port) throws IOException {
+            ServerSocketChannel server = ServerSocketChannel.open();
+            server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            this.port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+            open.add(server);
+            Thread acceptor = new Thread(() -> accept(server), "Collector-Accept");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private void accept(ServerSocketChannel server) {
+            try {
+                while (true) {
+                    SocketChannel connection = server.accept();
+                    open.add(connection);
+                    Thread reader = new Thread(() -> read(connection), "Collector-Read");
+                    reader.setDaemon(true);
+                    reader.start();
+                }
+            } catch (IOException e) {
+                /* stopped */
+            }
+        }
+
+        private void read(SocketChannel connection) {
+            try (DataInputStream in = new DataInputStream(Channels.newInputStream(connection))) {
+                String message;
+                while ((message = frame(in)) != null)
+                    receive(message);
+            } catch (IOException e) {
+                /* stopped */
+            }
+        }
+
+        private String frame(DataInputStream in) throws IOException {
+            int length = 0;
+            int digits = 0;
+            int c;
+            while ((c = in.read()) != ' ') {
+                if (c < 0 && digits == 0)
+                    return null;
+                if (c < '0' || c > '9' || ++digits > 9)
+                    throw malformed("Not A Length: " + (char) c);
+                length = length * 10 + c - '0';
+            }
+            byte[] message = new byte[length];
+            try {
+                in.readFully(message);
+            } catch (EOFException e) {
+                return null;
+            }
+            return new String(message, StandardCharsets.UTF_8);
+        }
+
+        private void receive(String message) throws IOException {
+            int start = message.indexOf("event ");
+            if (!message.startsWith("<") || start < 0 || !message.endsWith(TAIL))
+                throw malformed("Not An Event: " + message);
+            received.merge(message.substring(start + 6, message.length() - TAIL.length()), 1, Integer::sum);
+        }
+
+        private IOException malformed(String problem) {
+            malformed.add("malformed frame, " + problem);
+            return new IOException(problem);
+        }
+
+        int missing(String phase) {
+            int missing = 0;
+            for (int i = 0; i < EVENTS; i++)
+                if (!received.containsKey(phase + "-" + i))
+                    missing++;
+            return missing;
+        }
+
+        long duplicates() {
+            return received.values().stream().filter(count -> count > 1).count();
+        }
+
+        /*
+            Closes the listening socket and every connection.
+        */
+        void stop() {
+            for (Closeable closeable : open) {
+                try {
+                    closeable.close();
+                } catch (IOException ignored) {
+                    /* closed anyway */
+                }
+            }
+            open.clear();
+        }
+    }
+}
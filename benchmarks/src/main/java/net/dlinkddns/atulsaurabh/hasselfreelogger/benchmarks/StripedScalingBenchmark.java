@@ -0,0 +1,69 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the threads recording into the sinks under their locks with the
+ * striped writing, where every thread formats into a buffer of its own. Run it
+ * through {@link ThreadScalingRunner} to see how the throughput grows with the
+ * number of threads:
+ * {@code ThreadScalingRunner StripedScalingBenchmark}
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StripedScalingBenchmark
+{
+    @Param({"false", "true"})
+    public boolean striped;
+
+    @Param({"channel", "mmap"})
+    public String appender;
+
+    @Param({"batch"})
+    public String flush;
+
+    private LoggerFixture fixture;
+    private final Integer argument = 42;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = new LoggerFixture(true, "log.appender", appender, "log.striped", String.valueOf(striped),
+                "log.flush", flush);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public void logInfo() {
+        fixture.logger.logInfo(StripedScalingBenchmark.class, "request {} served", argument);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.benchmarks;
+
+import java.io.File;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks matching a regular expression, {@link LoggerBenchmark}
+ * by default, with 1, 2, 4, 8, 16, 32 and 64 threads and the GC profiler. The
+ * result of every thread count is stored as JSON in {@code target/results},
+ * so that runs of different commits can be compared.
+ * <p>
+ * Usage: {@code ThreadScalingRunner [benchmark regexp] [param=value ...]}
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+public final class ThreadScalingRunner
+{
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    private ThreadScalingRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : LoggerBenchmark.class.getSimpleName();
+        File results = new File("target/results");
+        results.mkdirs();
+        for (int threads : THREADS) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(results, "threads-" + threads + ".json").getPath());
+            for (int i = 1; i < args.length; i++) {
+                int equals = args[i].indexOf('=');
+                if (equals > 0)
+                    options.param(args[i].substring(0, equals), args[i].substring(equals + 1).split(","));
+            }
+            new Runner(options.build()).run();
+        }
+    }
+}
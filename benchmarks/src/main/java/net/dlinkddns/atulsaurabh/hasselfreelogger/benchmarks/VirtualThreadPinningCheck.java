@@ -0,0 +1,112 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import net.dlinkddns.atulsaurabh.hasselfreelogger.impl.HasselFreeLogger;
+
+/**
+ * Logs from 100,000 virtual threads at the same time and reports whether a
+ * virtual thread was pinned to its carrier. It needs Java 21 and the pinned
+ * threads have to be traced:
+ * <pre>
+ * java -Djdk.tracePinnedThreads=full -cp target/benchmarks.jar \
+ *      net.dlinkddns.atulsaurabh.hasselfreelogger.benchmarks.VirtualThreadPinningCheck [channel|mmap|log4j]
+ * </pre>
+ * The JVM prints a stack trace for every pinning; the check collects that
+ * output and exits with 1 if there was any. The JVM traces only a virtual
+ * thread parking while it holds a monitor, not one blocked entering a monitor
+ * or writing to a file under it, which is what the log4j appenders do. So the
+ * check also exits with 1 if the logger warned that a virtual thread reached
+ * the log4j appenders. The virtual threads are created by reflection so that
+ * the module still compiles for Java 8.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+public final class VirtualThreadPinningCheck
+{
+    private static final int THREADS = 100_000;
+
+    private VirtualThreadPinningCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Method perTask;
+        try {
+            perTask = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            System.err.println("Virtual threads need Java 21 or later");
+            System.exit(2);
+            return;
+        }
+        if (System.getProperty("jdk.tracePinnedThreads") == null)
+            System.err.println("Warning: run with -Djdk.tracePinnedThreads=full to detect pinning");
+        String appender = args.length > 0 ? args[0] : "channel";
+        PrintStream out = System.out;
+        ByteArrayOutputStream traces = new ByteArrayOutputStream();
+        long pinned;
+        AtomicInteger warnings = new AtomicInteger();
+        java.util.logging.Logger warner = java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName());
+        Handler counter = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (record.getMessage() != null && record.getMessage().startsWith("Virtual Thread"))
+                    warnings.incrementAndGet();
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        warner.addHandler(counter);
+        try (LoggerFixture fixture = new LoggerFixture(true, "log.appender", appender)) {
+            System.setOut(new PrintStream(traces, true));
+            ExecutorService executor = (ExecutorService) perTask.invoke(null);
+            RuntimeException failure = new RuntimeException("failure");
+            for (int i = 0; i < THREADS; i++) {
+                final int request = i;
+                executor.execute(() -> {
+                    fixture.logger.logInfo(VirtualThreadPinningCheck.class, "request {} started", request);
+                    if (request % 100 == 0)
+                        fixture.logger.logError(VirtualThreadPinningCheck.class, "request failed", failure);
+                    fixture.logger.logDebug(VirtualThreadPinningCheck.class, "request {} finished", request);
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.MINUTES);
+            fixture.logger.flush();
+        } finally {
+            System.setOut(out);
+            warner.removeHandler(counter);
+        }
+        String output = traces.toString();
+        pinned = output.split("monitors:", -1).length - 1;
+        if (pinned > 0) {
+            out.println(output);
+            out.println(appender + ": " + pinned + " pinned frames while " + THREADS + " virtual threads logged");
+            System.exit(1);
+        }
+        if (warnings.get() > 0) {
+            out.println(appender + ": virtual threads blocked their carriers in the log4j appenders while "
+                    + THREADS + " virtual threads logged");
+            System.exit(1);
+        }
+        out.println(appender + ": no pinning while " + THREADS + " virtual threads logged");
+    }
+}
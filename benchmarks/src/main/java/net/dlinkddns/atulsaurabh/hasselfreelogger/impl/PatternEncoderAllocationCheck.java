@@ -0,0 +1,73 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.lang.management.ManagementFactory;
+import org.apache.log4j.Level;
+
+/**
+ * Encodes plain and parameterized events with a warmed up
+ * {@link PatternEncoder} and counts the bytes the thread allocated meanwhile:
+ * <pre>
+ * java -cp target/benchmarks.jar \
+ *      net.dlinkddns.atulsaurabh.hasselfreelogger.impl.PatternEncoderAllocationCheck
+ * </pre>
+ * The date is formatted again once a second, which may allocate a few bytes,
+ * so the check exits with 1 only if an encoding allocates a byte or more on
+ * average. It needs a virtual machine which counts the allocated bytes per
+ * thread, like HotSpot does.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+public final class PatternEncoderAllocationCheck
+{
+    private static final int WARMUP = 200_000;
+    private static final int EVENTS = 1_000_000;
+
+    private PatternEncoderAllocationCheck() {
+    }
+
+    public static void main(String[] args) {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            System.err.println("The allocated bytes of a thread are not counted by this virtual machine");
+            System.exit(2);
+            return;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        long thread = Thread.currentThread().getId();
+        PatternEncoder encoder = PatternEncoderBenchmark.newEncoder();
+        LogEvent event = new LogEvent();
+        String message = "order 4711 paid by customer 42";
+        Integer argument = 42;
+
+        long length = 0L;
+        for (int i = 0; i < WARMUP; i++)
+            length += encode(encoder, event, message, argument, i);
+        long before = allocations.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < EVENTS; i++)
+            length += encode(encoder, event, message, argument, i);
+        long allocated = allocations.getThreadAllocatedBytes(thread) - before;
+
+        double perEvent = (double) allocated / EVENTS;
+        System.out.println(String.format("%d bytes allocated by %d events, %.4f bytes per event (%d bytes encoded)",
+                allocated, EVENTS, perEvent, length));
+        if (perEvent >= 1.0)
+            System.exit(1);
+    }
+
+    private static int encode(PatternEncoder encoder, LogEvent event, String message, Integer argument, int i) {
+        if ((i & 1) == 0)
+            event.set(PatternEncoderAllocationCheck.class, Level.INFO, System.currentTimeMillis(), "main",
+                    message, 0, null, null, null, null, null, null);
+        else
+            event.set(PatternEncoderAllocationCheck.class, Level.WARN, System.currentTimeMillis(), "main",
+                    "{} {}", 2, message, argument, null, null, null, null);
+        return encoder.encode(event).remaining();
+    }
+}
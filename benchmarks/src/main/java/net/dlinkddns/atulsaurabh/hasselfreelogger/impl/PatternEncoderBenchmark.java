@@ -0,0 +1,81 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Level;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link PatternEncoder#encode(LogEvent)} alone, without a file, for
+ * a plain and a parameterized message. The encoder is package private, so the
+ * benchmark lives in its package. Run it with the GC profiler, the
+ * {@code gc.alloc.rate.norm} of both benchmarks is expected to be 0 bytes:
+ * <pre>
+ * java -jar target/benchmarks.jar PatternEncoderBenchmark -prof gc
+ * </pre>
+ * {@link PatternEncoderAllocationCheck} asserts the same without JMH.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatternEncoderBenchmark
+{
+    static final String PATTERN = "[%p] %d %c [%t] - %m%n";
+
+    @Param({"16", "256", "4096"})
+    public int messageSize;
+
+    private PatternEncoder encoder;
+    private final LogEvent event = new LogEvent();
+    private String message;
+    private final Integer argument = 42;
+
+    @Setup
+    public void setUp() {
+        encoder = newEncoder();
+        StringBuilder text = new StringBuilder(messageSize);
+        for (int i = 0; i < messageSize; i++)
+            text.append((char) ('a' + i % 26));
+        message = text.toString();
+    }
+
+    static PatternEncoder newEncoder() {
+        return new PatternEncoder(new CompiledPattern(PATTERN), Charset.defaultCharset(), ThrowableRenderer.PLAIN);
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        event.set(PatternEncoderBenchmark.class, Level.INFO, System.currentTimeMillis(), "main", message,
+                0, null, null, null, null, null, null);
+        return encoder.encode(event);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeParameterized() {
+        event.set(PatternEncoderBenchmark.class, Level.INFO, System.currentTimeMillis(), "main", "{} {}",
+                2, message, argument, null, null, null, null);
+        return encoder.encode(event);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.api;
+
+/**
+ * The builder returned by the default {@code at} methods of {@link Logger}.
+ * The key value pairs are appended to the message as {@code key=value}, the
+ * way {@code HasselFreeLogger} prints them in a text file, and the message is
+ * passed to the methods of version 1.0. Unlike the pooled builders of
+ * {@code HasselFreeLogger} a new one is created for every enabled event; a
+ * disabled one gets {@link #IGNORED}, which keeps nothing.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class DefaultEventBuilder implements LogEventBuilder
+{
+    static final int FATAL = 0;
+    static final int ALL = 1;
+    static final int ERROR = 2;
+    static final int WARNING = 3;
+    static final int INFO = 4;
+    static final int DEBUG = 5;
+
+    static final DefaultEventBuilder IGNORED = new DefaultEventBuilder(null, DEBUG, null);
+
+    private final Logger logger;
+    private final int level;
+    private final Class category;
+    private final StringBuilder fields = new StringBuilder();
+    private Throwable throwable;
+
+    DefaultEventBuilder(Logger logger, int level, Class category) {
+        this.logger = logger;
+        this.level = level;
+        this.category = category;
+    }
+
+    @Override
+    public LogEventBuilder with(String key, Object value) {
+        if (logger != null)
+            fields.append(' ').append(key).append('=').append(DefaultMessages.format("{}", new Object[] {value}));
+        return this;
+    }
+
+    @Override
+    public LogEventBuilder with(String key, long value) {
+        if (logger != null)
+            fields.append(' ').append(key).append('=').append(value);
+        return this;
+    }
+
+    @Override
+    public LogEventBuilder with(String key, double value) {
+        if (logger != null)
+            fields.append(' ').append(key).append('=').append(value);
+        return this;
+    }
+
+    @Override
+    public LogEventBuilder with(String key, boolean value) {
+        if (logger != null)
+            fields.append(' ').append(key).append('=').append(value);
+        return this;
+    }
+
+    @Override
+    public LogEventBuilder withThrowable(Throwable throwable) {
+        if (logger != null)
+            this.throwable = throwable;
+        return this;
+    }
+
+    @Override
+    public void log(String message) {
+        record(message, null);
+    }
+
+    @Override
+    public void log(String pattern, Object argument) {
+        log(pattern, new Object[] {argument});
+    }
+
+    @Override
+    public void log(String pattern, Object first, Object second) {
+        log(pattern, new Object[] {first, second});
+    }
+
+    @Override
+    public void log(String pattern, Object... arguments) {
+        if (logger != null)
+            record(DefaultMessages.format(pattern, arguments), DefaultMessages.trailingThrowable(pattern, arguments));
+    }
+
+    private void record(String message, Throwable trailing) {
+        if (logger == null)
+            return;
+        String text = message + fields;
+        Throwable recorded = throwable != null ? throwable : trailing;
+        switch (level) {
+            case FATAL:
+                if (recorded == null)
+                    logger.logFatal(category, text);
+                else
+                    logger.logFatal(category, text, recorded);
+                break;
+            case ALL:
+                if (recorded == null)
+                    logger.logAll(category, text);
+                else
+                    logger.logAll(category, text, recorded);
+                break;
+            case ERROR:
+                if (recorded == null)
+                    logger.logError(category, text);
+                else
+                    logger.logError(category, text, recorded);
+                break;
+            case WARNING:
+                if (recorded == null)
+                    logger.logWarning(category, text);
+                else
+                    logger.logWarning(category, text, recorded);
+                break;
+            case INFO:
+                if (recorded == null)
+                    logger.logInfo(category, text);
+                else
+                    logger.logInfo(category, text, recorded);
+                break;
+            default:
+                if (recorded == null)
+                    logger.logDebug(category, text);
+                else
+                    logger.logDebug(category, text, recorded);
+                break;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.api;
+
+import java.util.Arrays;
+
+/**
+ * Formats the message patterns for the default methods of {@link Logger}, by
+ * the same rules as {@code HasselFreeLogger}: every {@code {}} place holder
+ * is replaced by the next argument, a place holder preceded by a back slash is
+ * printed as it is and an array is printed with its elements.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class DefaultMessages
+{
+    private DefaultMessages() {
+    }
+
+    /**
+     * @return the pattern with its place holders replaced by the arguments
+     * @since 1.1
+     */
+    static String format(String pattern, Object[] arguments) {
+        int count = arguments == null ? 0 : arguments.length;
+        if (pattern == null || count == 0)
+            return pattern;
+        StringBuilder buffer = new StringBuilder(pattern.length() + 16 * count);
+        int used = 0;
+        int start = 0;
+        int length = pattern.length();
+        for (int i = 0; i < length - 1; i++) {
+            if (pattern.charAt(i) != '{' || pattern.charAt(i + 1) != '}')
+                continue;
+            if (i > 0 && pattern.charAt(i - 1) == '\\') {
+                buffer.append(pattern, start, i - 1).append("{}");
+            } else if (used < count) {
+                buffer.append(pattern, start, i).append(render(arguments[used++]));
+            } else {
+                continue;
+            }
+            start = i + 2;
+            i++;
+        }
+        return buffer.append(pattern, start, length).toString();
+    }
+
+    /**
+     * @return the {@link Throwable} passed as the last argument and not
+     *         consumed by a place holder, or {@code null}
+     * @since 1.1
+     */
+    static Throwable trailingThrowable(String pattern, Object[] arguments) {
+        if (arguments == null || arguments.length == 0)
+            return null;
+        Object last = arguments[arguments.length - 1];
+        if (!(last instanceof Throwable) || placeHolders(pattern) >= arguments.length)
+            return null;
+        return (Throwable) last;
+    }
+
+    private static int placeHolders(String pattern) {
+        if (pattern == null)
+            return 0;
+        int found = 0;
+        for (int i = pattern.indexOf("{}"); i >= 0; i = pattern.indexOf("{}", i + 2))
+            if (i == 0 || pattern.charAt(i - 1) != '\\')
+                found++;
+        return found;
+    }
+
+    /*
+        deepToString prints the elements of an array of any component type;
+        the brackets of the wrapping array are cut off again.
+    */
+    private static String render(Object argument) {
+        if (argument == null || !argument.getClass().isArray())
+            return String.valueOf(argument);
+        String rendered = Arrays.deepToString(new Object[] {argument});
+        return rendered.substring(1, rendered.length() - 1);
+    }
+}
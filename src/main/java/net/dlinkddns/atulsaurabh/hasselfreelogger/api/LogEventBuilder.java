@@ -0,0 +1,62 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.api;
+
+/**
+ * Builds a structured event of key value pairs, e.g.
+ * <pre>
+ * logger.atInfo(Checkout.class)
+ *       .with("orderId", orderId)
+ *       .with("amount", amount)
+ *       .log("order {} paid", orderId);
+ * </pre>
+ * A builder is returned by the {@code at} methods of {@link Logger} and is
+ * used until one of the {@code log} methods is called. It must not be kept or
+ * shared with another thread: the builders are pooled and the same instance
+ * is handed out again by the next call on the thread. If the level is not
+ * recorded, the builder ignores everything, so nothing is built for nothing.
+ * <p>
+ * The primitive values are kept without boxing them.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+public interface LogEventBuilder
+{
+    /**
+     * @param key the name of the field
+     * @param value the value, rendered like a message argument
+     * @return this builder
+     * @since 1.1
+     */
+    public LogEventBuilder with(String key, Object value);
+
+    public LogEventBuilder with(String key, long value);
+
+    public LogEventBuilder with(String key, double value);
+
+    public LogEventBuilder with(String key, boolean value);
+
+    /**
+     * @param throwable the exception of the event
+     * @return this builder
+     * @since 1.1
+     */
+    public LogEventBuilder withThrowable(Throwable throwable);
+
+    /**
+     * Records the event and releases the builder.
+     * @param message the message of the event
+     * @since 1.1
+     */
+    public void log(String message);
+
+    public void log(String pattern, Object argument);
+
+    public void log(String pattern, Object first, Object second);
+
+    public void log(String pattern, Object... arguments);
+}
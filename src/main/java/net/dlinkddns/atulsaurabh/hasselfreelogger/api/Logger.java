@@ -5,7 +5,9 @@
  */
 package net.dlinkddns.atulsaurabh.hasselfreelogger.api;
 
+import java.util.Collections;
 import java.util.Properties;
+import java.util.function.Supplier;
 
 /**
  *
@@ -101,4 +103,276 @@ public interface Logger
    public void logError(Class errorClass,String message,Throwable throwable);
    
     public void setConfiguration(Properties properties);
+    
+    /*
+       The following methods take a message pattern with {} place holders. The
+       pattern is formatted only if the level is recorded, so the caller does not
+       build the message for nothing. In HasselFreeLogger the one and two
+       argument forms do not allocate an array for the arguments. A Throwable passed as the last
+       argument and not consumed by a place holder is the exception of the
+       message. The Lazy methods call the supplier only if the level is
+       recorded; they are named apart so that a call passing null as the
+       message still compiles.
+
+       They are default methods, so an implementation written against version
+       1.0 keeps compiling; the defaults format the message and pass it to the
+       methods of 1.0.
+    */
+   public default void logFatal(Class errorClass,String pattern,Object argument) {
+       logFatal(errorClass, pattern, new Object[] {argument});
+   }
+   public default void logFatal(Class errorClass,String pattern,Object first,Object second) {
+       logFatal(errorClass, pattern, new Object[] {first, second});
+   }
+   public default void logFatal(Class errorClass,String pattern,Object... arguments) {
+       if (!isFatalEnabled())
+           return;
+       Throwable throwable = DefaultMessages.trailingThrowable(pattern, arguments);
+       if (throwable == null)
+           logFatal(errorClass, DefaultMessages.format(pattern, arguments));
+       else
+           logFatal(errorClass, DefaultMessages.format(pattern, arguments), throwable);
+   }
+   public default void logFatalLazy(Class errorClass,Supplier<String> message) {
+       if (isFatalEnabled())
+           logFatal(errorClass, message.get());
+   }
+   
+   public default void logAll(Class errorClass,String pattern,Object argument) {
+       logAll(errorClass, pattern, new Object[] {argument});
+   }
+   public default void logAll(Class errorClass,String pattern,Object first,Object second) {
+       logAll(errorClass, pattern, new Object[] {first, second});
+   }
+   public default void logAll(Class errorClass,String pattern,Object... arguments) {
+       if (!isFatalEnabled())
+           return;
+       Throwable throwable = DefaultMessages.trailingThrowable(pattern, arguments);
+       if (throwable == null)
+           logAll(errorClass, DefaultMessages.format(pattern, arguments));
+       else
+           logAll(errorClass, DefaultMessages.format(pattern, arguments), throwable);
+   }
+   public default void logAllLazy(Class errorClass,Supplier<String> message) {
+       if (isFatalEnabled())
+           logAll(errorClass, message.get());
+   }
+   
+   public default void logWarning(Class warningClass,String pattern,Object argument) {
+       logWarning(warningClass, pattern, new Object[] {argument});
+   }
+   public default void logWarning(Class warningClass,String pattern,Object first,Object second) {
+       logWarning(warningClass, pattern, new Object[] {first, second});
+   }
+   public default void logWarning(Class warningClass,String pattern,Object... arguments) {
+       if (!isWarningEnabled())
+           return;
+       Throwable throwable = DefaultMessages.trailingThrowable(pattern, arguments);
+       if (throwable == null)
+           logWarning(warningClass, DefaultMessages.format(pattern, arguments));
+       else
+           logWarning(warningClass, DefaultMessages.format(pattern, arguments), throwable);
+   }
+   public default void logWarningLazy(Class warningClass,Supplier<String> message) {
+       if (isWarningEnabled())
+           logWarning(warningClass, message.get());
+   }
+   
+   public default void logInfo(Class infoClass,String pattern,Object argument) {
+       logInfo(infoClass, pattern, new Object[] {argument});
+   }
+   public default void logInfo(Class infoClass,String pattern,Object first,Object second) {
+       logInfo(infoClass, pattern, new Object[] {first, second});
+   }
+   public default void logInfo(Class infoClass,String pattern,Object... arguments) {
+       if (!isInfoEnabled())
+           return;
+       Throwable throwable = DefaultMessages.trailingThrowable(pattern, arguments);
+       if (throwable == null)
+           logInfo(infoClass, DefaultMessages.format(pattern, arguments));
+       else
+           logInfo(infoClass, DefaultMessages.format(pattern, arguments), throwable);
+   }
+   public default void logInfoLazy(Class infoClass,Supplier<String> message) {
+       if (isInfoEnabled())
+           logInfo(infoClass, message.get());
+   }
+   
+   public default void logDebug(Class debugClass,String pattern,Object argument) {
+       logDebug(debugClass, pattern, new Object[] {argument});
+   }
+   public default void logDebug(Class debugClass,String pattern,Object first,Object second) {
+       logDebug(debugClass, pattern, new Object[] {first, second});
+   }
+   public default void logDebug(Class debugClass,String pattern,Object... arguments) {
+       if (!isDebugEnabled())
+           return;
+       Throwable throwable = DefaultMessages.trailingThrowable(pattern, arguments);
+       if (throwable == null)
+           logDebug(debugClass, DefaultMessages.format(pattern, arguments));
+       else
+           logDebug(debugClass, DefaultMessages.format(pattern, arguments), throwable);
+   }
+   public default void logDebugLazy(Class debugClass,Supplier<String> message) {
+       if (isDebugEnabled())
+           logDebug(debugClass, message.get());
+   }
+   
+   public default void logError(Class errorClass,String pattern,Object argument) {
+       logError(errorClass, pattern, new Object[] {argument});
+   }
+   public default void logError(Class errorClass,String pattern,Object first,Object second) {
+       logError(errorClass, pattern, new Object[] {first, second});
+   }
+   public default void logError(Class errorClass,String pattern,Object... arguments) {
+       if (!isErrorEnabled())
+           return;
+       Throwable throwable = DefaultMessages.trailingThrowable(pattern, arguments);
+       if (throwable == null)
+           logError(errorClass, DefaultMessages.format(pattern, arguments));
+       else
+           logError(errorClass, DefaultMessages.format(pattern, arguments), throwable);
+   }
+   public default void logErrorLazy(Class errorClass,Supplier<String> message) {
+       if (isErrorEnabled())
+           logError(errorClass, message.get());
+   }
+   
+    
+    /**
+     * 
+     * @param threshold The lowest level to be recorded i.e. one of ALL, DEBUG,
+     *                  INFO, WARN, ERROR, FATAL or OFF. Calls below this level
+     *                  are ignored.
+     * @throws UnsupportedOperationException by default, for an implementation
+     *                  without a threshold
+     * @since 1.1
+     */
+    public default void setThreshold(String threshold) {
+        throw new UnsupportedOperationException("setThreshold");
+    }
+    /**
+     * 
+     * @return The lowest level which is recorded, ALL by default.
+     * @since 1.1
+     */
+    public default String getThreshold() {
+        return "ALL";
+    }
+    
+    /**
+     * 
+     * @return true if fatal messages are recorded. A message passed to
+     *         {@link #logAll(java.lang.String)} is recorded whenever this is true.
+     *         By default every level is recorded.
+     * @since 1.1
+     */
+    public default boolean isFatalEnabled() {
+        return true;
+    }
+    /**
+     * 
+     * @return true if error messages are recorded
+     *         By default every level is recorded.
+     * @since 1.1
+     */
+    public default boolean isErrorEnabled() {
+        return true;
+    }
+    /**
+     * 
+     * @return true if warning messages are recorded
+     *         By default every level is recorded.
+     * @since 1.1
+     */
+    public default boolean isWarningEnabled() {
+        return true;
+    }
+    /**
+     * 
+     * @return true if information messages are recorded
+     *         By default every level is recorded.
+     * @since 1.1
+     */
+    public default boolean isInfoEnabled() {
+        return true;
+    }
+    /**
+     * 
+     * @return true if debug messages are recorded
+     *         By default every level is recorded.
+     * @since 1.1
+     */
+    public default boolean isDebugEnabled() {
+        return true;
+    }
+    
+    /**
+     * Starts a structured event of {@link org.apache.log4j.Level#FATAL}. The
+     * returned builder collects key value pairs until one of its
+     * {@code log} methods records the event, e.g.
+     * {@code logger.atInfo(Shop.class).with("order", id).log("paid")}.
+     * 
+     * <p>
+     * By default the pairs are appended to the message as {@code key=value}
+     * and the message is logged by the methods of version 1.0.
+     * 
+     * @param errorClass The class generating the event
+     * @return A builder which must be used by the calling thread only and not
+     *         be kept after the event is logged
+     * @since 1.1
+     */
+    public default LogEventBuilder atFatal(Class errorClass) {
+        return isFatalEnabled() ? new DefaultEventBuilder(this, DefaultEventBuilder.FATAL, errorClass)
+                : DefaultEventBuilder.IGNORED;
+    }
+    public default LogEventBuilder atAll(Class errorClass) {
+        return isFatalEnabled() ? new DefaultEventBuilder(this, DefaultEventBuilder.ALL, errorClass)
+                : DefaultEventBuilder.IGNORED;
+    }
+    public default LogEventBuilder atError(Class errorClass) {
+        return isErrorEnabled() ? new DefaultEventBuilder(this, DefaultEventBuilder.ERROR, errorClass)
+                : DefaultEventBuilder.IGNORED;
+    }
+    public default LogEventBuilder atWarning(Class warningClass) {
+        return isWarningEnabled() ? new DefaultEventBuilder(this, DefaultEventBuilder.WARNING, warningClass)
+                : DefaultEventBuilder.IGNORED;
+    }
+    public default LogEventBuilder atInfo(Class infoClass) {
+        return isInfoEnabled() ? new DefaultEventBuilder(this, DefaultEventBuilder.INFO, infoClass)
+                : DefaultEventBuilder.IGNORED;
+    }
+    public default LogEventBuilder atDebug(Class debugClass) {
+        return isDebugEnabled() ? new DefaultEventBuilder(this, DefaultEventBuilder.DEBUG, debugClass)
+                : DefaultEventBuilder.IGNORED;
+    }
+    
+    /**
+     * Writes every message logged so far into the log files, including the
+     * ones still collected in memory. By default nothing is kept in memory.
+     * @since 1.1
+     */
+    public default void flush() {
+    }
+    
+    /**
+     * Closes every log file opened by the logger. By default there is nothing
+     * to close.
+     * @since 1.1
+     */
+    public default void shutdown() {
+    }
+    
+    /**
+     * 
+     * @return A snapshot of the events recorded so far and of the time it took
+     *         to record them. By default nothing is counted and the
+     *         snapshot is empty.
+     * @since 1.1
+     */
+    public default LoggerStats getStats() {
+        LoggerStats.Latency none = new LoggerStats.Latency(0L, 0L, 0L, new long[0], new long[0]);
+        return new LoggerStats(Collections.<String, Long>emptyMap(),
+                Collections.<String, Long>emptyMap(), 0L, 0L, none, none, none);
+    }
 }
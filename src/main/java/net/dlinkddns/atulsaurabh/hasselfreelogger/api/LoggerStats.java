@@ -0,0 +1,185 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.api;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A snapshot of what a {@link Logger} has recorded so far and how long it
+ * took. All the latencies are in nanoseconds.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+public final class LoggerStats
+{
+    /**
+     * The distribution of a latency. The values are kept in buckets whose
+     * width grows with the value, so a percentile is exact to about six
+     * percent.
+     * @since 1.1
+     */
+    public static final class Latency
+    {
+        private final long count;
+        private final long total;
+        private final long max;
+        private final long[] values;
+        private final long[] counts;
+
+        /**
+         * @param count number of recorded values
+         * @param total sum of the recorded values
+         * @param max largest recorded value
+         * @param values highest value of every non empty bucket, ascending
+         * @param counts number of values in every non empty bucket
+         * @since 1.1
+         */
+        public Latency(long count, long total, long max, long[] values, long[] counts) {
+            this.count = count;
+            this.total = total;
+            this.max = max;
+            this.values = values.clone();
+            this.counts = counts.clone();
+        }
+
+        /**
+         * @return the number of recorded values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the mean of the recorded values or 0 if there are none
+         */
+        public double getMean() {
+            return count == 0 ? 0.0 : (double) total / count;
+        }
+
+        /**
+         * @return the largest recorded value
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @param percentile e.g. 99.9
+         * @return the value below or at which the given percentage of the
+         *         recorded values lies, 0 if there are none
+         */
+        public long getPercentile(double percentile) {
+            long total = 0L;
+            for (long bucket : counts)
+                total += bucket;
+            if (total == 0)
+                return 0L;
+            long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * total));
+            long seen = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return Math.min(values[i], max);
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + (long) getMean() + ", p50=" + getPercentile(50.0)
+                    + ", p99=" + getPercentile(99.0) + ", p99.9=" + getPercentile(99.9) + ", max=" + max;
+        }
+    }
+
+    private final Map<String, Long> events;
+    private final Map<String, Long> bytesWritten;
+    private final long queueDepth;
+    private final long droppedEvents;
+    private final Latency enqueueLatency;
+    private final Latency writeLatency;
+    private final Latency rollDuration;
+
+    /**
+     * @param events number of recorded events by level
+     * @param bytesWritten number of bytes written by file
+     * @param queueDepth events waiting for the asynchronous writer
+     * @param droppedEvents events dropped because the queue was full
+     * @param enqueueLatency time a log call took to hand an event over to a
+     *                       writer thread
+     * @param writeLatency time to write an event into a file
+     * @param rollDuration time a roll of a file blocked its writers
+     * @since 1.1
+     */
+    public LoggerStats(Map<String, Long> events, Map<String, Long> bytesWritten, long queueDepth,
+            long droppedEvents, Latency enqueueLatency, Latency writeLatency, Latency rollDuration) {
+        this.events = Collections.unmodifiableMap(events);
+        this.bytesWritten = Collections.unmodifiableMap(bytesWritten);
+        this.queueDepth = queueDepth;
+        this.droppedEvents = droppedEvents;
+        this.enqueueLatency = enqueueLatency;
+        this.writeLatency = writeLatency;
+        this.rollDuration = rollDuration;
+    }
+
+    /**
+     * @return the number of recorded events by level, e.g. {@code INFO}
+     */
+    public Map<String, Long> getEvents() {
+        return events;
+    }
+
+    /**
+     * @return the number of bytes written by the full name of the file
+     */
+    public Map<String, Long> getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return the number of events waiting for the asynchronous writer
+     */
+    public long getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return the number of events dropped because the queue was full
+     */
+    public long getDroppedEvents() {
+        return droppedEvents;
+    }
+
+    /**
+     * @return the time a log call took to hand an event over to a writer
+     *         thread
+     */
+    public Latency getEnqueueLatency() {
+        return enqueueLatency;
+    }
+
+    /**
+     * @return the time to write an event into a file
+     */
+    public Latency getWriteLatency() {
+        return writeLatency;
+    }
+
+    /**
+     * @return the time a roll of a file blocked its writers
+     */
+    public Latency getRollDuration() {
+        return rollDuration;
+    }
+
+    @Override
+    public String toString() {
+        return "LoggerStats{events=" + events + ", bytesWritten=" + bytesWritten + ", queueDepth=" + queueDepth
+                + ", droppedEvents=" + droppedEvents + ", enqueueLatency={" + enqueueLatency
+                + "}, writeLatency={" + writeLatency + "}, rollDuration={" + rollDuration + "}}";
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.log4j.Appender;
+import org.apache.log4j.DailyRollingFileAppender;
+import org.apache.log4j.Level;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * The registry keeps exactly one {@link DailyRollingFileAppender} for every
+ * resolved log file and the appenders of every {@link Level}. An appender is
+ * opened and activated the first time it is requested and afterwards it is
+ * shared by all the levels and classes which record into that file.
+ * <p>
+ * The appenders are not attached to the log4j loggers. The events of a level
+ * are handed straight to the appenders bound to that level, so an event is
+ * written exactly once into every file of its level.
+ * <p>
+ * An appender closed while the logger is reconfigured refuses the events
+ * still on their way to it instead of dropping them, see
+ * {@link #append(Appender[], Appender[], LoggingEvent)}.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class AppenderRegistry
+{
+    /*
+        Checks whether it is closed under the monitor log4j appends with, so an
+        event is either written or refused.
+    */
+    private static final class LevelFileAppender extends DailyRollingFileAppender
+    {
+        synchronized boolean offer(LoggingEvent event) {
+            if (closed)
+                return false;
+            doAppend(event);
+            return true;
+        }
+    }
+
+    private final Map<String, LevelFileAppender> appenders = new ConcurrentHashMap<>();
+    private final Map<Level, Appender[]> byLevel = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The generation of the files the appenders are bound for, {@code null}
+     * until the first reconfiguration.
+     */
+    private Object generation;
+
+    /**
+     * @param level the level of the event
+     * @return the appenders bound to that level or {@code null}
+     * @since 1.1
+     */
+    Appender[] get(Level level) {
+        return byLevel.get(level);
+    }
+
+    /**
+     * Returns the appenders recording {@code level} into {@code files} and
+     * binds them to the level. An appender is created and activated only on
+     * the first request for its file.
+     *
+     * @param level the level recorded by the appenders
+     * @param files the fully resolved log files
+     * @param conversionPattern the pattern used by the appender layout
+     * @param datePattern the pattern used to roll the file
+     * @param generation the generation of the files, see
+     *                   {@link #retain(Set, Object)}
+     * @return the shared appenders or {@code null} if the files belong to a
+     *         replaced generation and the caller has to read the
+     *         configuration again
+     * @since 1.1
+     */
+    Appender[] acquire(Level level, String[] files, String conversionPattern, String datePattern,
+            Object generation) {
+        lock.lock();
+        try {
+            if (this.generation != null && this.generation != generation)
+                return null;
+            Set<Appender> bound = new LinkedHashSet<>();
+            for (String file : files) {
+                LevelFileAppender appender = appenders.get(file);
+                if (appender == null) {
+                    PatternLayout layout = new PatternLayout();
+                    layout.setConversionPattern(conversionPattern);
+                    appender = new LevelFileAppender();
+                    appender.setFile(file);
+                    appender.setDatePattern("'.'" + datePattern);
+                    appender.setLayout(layout);
+                    appender.activateOptions();
+                    appenders.put(file, appender);
+                }
+                bound.add(appender);
+            }
+            return bind(level, bound.toArray(new Appender[bound.size()]));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Binds appenders to a level, e.g. a console appender if the files of the
+     * level can not be opened.
+     *
+     * @return the appenders bound to the level
+     * @since 1.1
+     */
+    Appender[] bind(Level level, Appender... levelAppenders) {
+        Appender[] bound = byLevel.putIfAbsent(level, levelAppenders);
+        return bound == null ? levelAppenders : bound;
+    }
+
+    /**
+     * Hands the event to every appender which did not get it yet.
+     *
+     * @param levelAppenders the appenders of the level of the event
+     * @param delivered the appenders which were refused the event before or
+     *                  {@code null}; the ones still open already have it
+     * @return {@code false} if an appender was closed by a reconfiguration and
+     *         the event has to be handed to the new appenders of its level
+     * @since 1.1
+     */
+    static boolean append(Appender[] levelAppenders, Appender[] delivered, LoggingEvent event) {
+        boolean written = true;
+        for (Appender appender : levelAppenders) {
+            if (contains(delivered, appender))
+                continue;
+            if (appender instanceof LevelFileAppender)
+                written &= ((LevelFileAppender) appender).offer(event);
+            else
+                appender.doAppend(event);
+        }
+        return written;
+    }
+
+    private static boolean contains(Appender[] delivered, Appender appender) {
+        if (delivered == null)
+            return false;
+        for (Appender candidate : delivered)
+            if (candidate == appender)
+                return true;
+        return false;
+    }
+
+    /**
+     * Closes every appender. The registry is empty afterwards and can be used
+     * again.
+     * @since 1.1
+     */
+    void closeAll() {
+        lock.lock();
+        try {
+            retain(Collections.<String>emptySet(), generation);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Unbinds the appenders of every level and closes the appenders of the
+     * files which are not kept. The levels are bound again by their next
+     * event and share the kept appenders.
+     *
+     * @param files the fully resolved files whose appenders stay open
+     * @param generation the generation of the files of the new configuration
+     * @since 1.1
+     */
+    void retain(Set<String> files, Object generation) {
+        lock.lock();
+        try {
+            this.generation = generation;
+            for (Level level : byLevel.keySet()) {
+                Appender[] levelAppenders = byLevel.remove(level);
+                if (levelAppenders != null)
+                    for (Appender appender : levelAppenders)
+                        if (!(appender instanceof LevelFileAppender))
+                            appender.close();
+            }
+            for (String file : appenders.keySet()) {
+                if (files.contains(file))
+                    continue;
+                LevelFileAppender appender = appenders.remove(file);
+                if (appender != null)
+                    appender.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
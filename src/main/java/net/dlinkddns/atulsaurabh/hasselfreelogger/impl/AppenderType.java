@@ -0,0 +1,48 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+/**
+ * Decides how the level files are written while the rolling is on. It is
+ * configured with the key <b><i>log.appender</i></b>.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+enum AppenderType
+{
+    /**
+     * The files are written by log4j {@link org.apache.log4j.DailyRollingFileAppender}.
+     * This is the default.
+     */
+    LOG4J,
+
+    /**
+     * The files are written by {@link ChannelFileSink}, which encodes events
+     * into reusable buffers and writes them to a {@link java.nio.channels.FileChannel}.
+     */
+    CHANNEL,
+
+    /**
+     * The files are written by {@link MappedFileSink} into memory mapped
+     * regions of the files.
+     */
+    MMAP;
+
+    /**
+     * @param name the configured value, may be {@code null}
+     * @return the matching type or {@link #LOG4J} if nothing matches
+     */
+    static AppenderType of(String name) {
+        if (name != null) {
+            String normalized = name.trim().replace('-', '_').toUpperCase();
+            for (AppenderType type : values())
+                if (type.name().equals(normalized))
+                    return type;
+        }
+        return LOG4J;
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.apache.log4j.Level;
+import org.apache.log4j.spi.LocationInfo;
+
+/**
+ * Records log events on a single writer thread. Logging threads publish their
+ * events into a bounded ring buffer of preallocated {@link LogEvent} slots and
+ * return immediately; the writer thread hands every event to the synchronous
+ * recording path of {@link HasselFreeLogger}.
+ * <p>
+ * Logging threads claim a slot by a compare and set on the {@code tail}
+ * sequence. The writer thread consumes the slot at the {@code head} sequence
+ * once its published sequence matches, and releases it by a compare and set on
+ * {@code head}. The same compare and set is used by a logging thread to discard
+ * the oldest event under {@link OverflowPolicy#DROP_OLDEST}, so an event is
+ * either recorded or counted as dropped, never both.
+ * <p>
+ * Whenever the writer thread runs out of events it calls the idle action,
+ * which writes the events collected by batching sinks. So a burst of events
+ * ends up in one write, while a single event is still written at once.
+ * <p>
+ * Closing the dispatcher marks the {@code tail} sequence, so no slot can be
+ * claimed afterwards, and waits until every claimed slot has been recorded.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class AsyncDispatcher
+{
+    /**
+     * Bit of the {@code tail} sequence marking a closed dispatcher.
+     */
+    private static final long CLOSED = 1L << 62;
+
+    private final LogEvent[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final int capacity;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private final WaitStrategy waitStrategy;
+    private final OverflowPolicy overflowPolicy;
+    private final int discardLevel;
+
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Every sequence below this one has been recorded or dropped.
+     */
+    private volatile long recorded;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private volatile boolean writerWaiting;
+
+    private final Consumer<LogEvent> recorder;
+    private final Runnable idleAction;
+    private final Thread writer;
+    private final Thread shutdownHook;
+
+    /**
+     * @param bufferSize number of slots, rounded up to a power of two
+     * @param waitStrategy what the writer thread does while the buffer is empty
+     * @param overflowPolicy what a logging thread does while the buffer is full
+     * @param discardLevel events at or below this level are discarded by
+     *                     {@link OverflowPolicy#DROP_BELOW_LEVEL}
+     * @param recorder records an event synchronously on the writer thread
+     * @param idleAction called on the writer thread whenever the buffer became empty
+     * @since 1.1
+     */
+    AsyncDispatcher(int bufferSize, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy,
+            Level discardLevel, Consumer<LogEvent> recorder, Runnable idleAction) {
+        int size = Integer.highestOneBit(Math.max(2, bufferSize) - 1) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.slots = new LogEvent[size];
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new LogEvent();
+            published.set(i, -1L);
+        }
+        this.waitStrategy = waitStrategy;
+        this.overflowPolicy = overflowPolicy;
+        this.discardLevel = discardLevel.toInt();
+        this.recorder = recorder;
+        this.idleAction = idleAction;
+        this.writer = new Thread(this::drain, "HasselFreeLogger-AsyncWriter");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        /*
+            The writer thread is a daemon so it never keeps the JVM alive. The
+            hook makes sure the events still waiting in the buffer reach the files
+            when the JVM exits without calling shutdown().
+        */
+        this.shutdownHook = new Thread(this::closeFromHook, "HasselFreeLogger-AsyncShutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Publishes an event into the ring buffer. The message is not formatted
+     * here, the writer thread formats it.
+     *
+     * @param context true to keep the NDC and MDC of the calling thread with
+     *                the event
+     * @return {@code false} if the dispatcher is closed and the caller should
+     *         record the event itself, {@code true} otherwise even if the event
+     *         was dropped
+     * @since 1.1
+     */
+    boolean publish(Class category, Level level, String message, int argumentCount,
+            Object argument0, Object argument1, Object[] arguments, Supplier<String> supplier,
+            Throwable throwable, LocationInfo location, KeyValues keyValues, boolean context) {
+        long sequence = claim(level);
+        if (sequence == -1L)
+            return true;
+        if (sequence == -2L)
+            return false;
+        slots[(int) sequence & mask].set(category, level, System.currentTimeMillis(),
+                Thread.currentThread().getName(), message, argumentCount, argument0, argument1, arguments,
+                supplier, throwable, location);
+        slots[(int) sequence & mask].copyKeyValues(keyValues);
+        if (context)
+            slots[(int) sequence & mask].captureContext();
+        published.lazySet((int) sequence & mask, sequence);
+        if (writerWaiting)
+            signalWriter();
+        return true;
+    }
+
+    /**
+     * @return the claimed sequence, -1 if the event was dropped or -2 if the
+     *         dispatcher is closed
+     */
+    private long claim(Level level) {
+        int idle = 0;
+        while (true) {
+            long current = tail.get();
+            if ((current & CLOSED) != 0)
+                return -2L;
+            long first = head.get();
+            if (current - first < capacity) {
+                if (tail.compareAndSet(current, current + 1))
+                    return current;
+                continue;
+            }
+            switch (overflowPolicy) {
+                case DROP_OLDEST:
+                    /*
+                        Only a published slot may be discarded, otherwise its
+                        producer and the producer of the next lap would write into
+                        the same slot at the same time.
+                    */
+                    if (published.get((int) first & mask) == first && head.compareAndSet(first, first + 1)) {
+                        dropped.increment();
+                        continue;
+                    }
+                    break;
+                case DROP_BELOW_LEVEL:
+                    if (level.toInt() <= discardLevel) {
+                        dropped.increment();
+                        return -1L;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            idle = backOff(idle);
+        }
+    }
+
+    private static int backOff(int idle) {
+        if (idle < 100)
+            return idle + 1;
+        if (idle < 200) {
+            Thread.yield();
+            return idle + 1;
+        }
+        LockSupport.parkNanos(10_000L);
+        return idle;
+    }
+
+    private void signalWriter() {
+        lock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Body of the writer thread.
+     */
+    private void drain() {
+        LogEvent event = new LogEvent();
+        int idle = 0;
+        boolean busy = false;
+        while (true) {
+            long first = head.get();
+            long last = tail.get();
+            boolean closed = (last & CLOSED) != 0;
+            if (first >= (last & ~CLOSED)) {
+                if (busy) {
+                    busy = false;
+                    runIdleAction();
+                }
+                recorded = first;
+                if (closed)
+                    return;
+                idle = waitForEvents(idle, first);
+                continue;
+            }
+            int index = (int) first & mask;
+            if (published.get(index) != first) {
+                /*
+                    The slot is claimed but its producer is still filling it.
+                */
+                idle = backOff(idle);
+                continue;
+            }
+            event.copyFrom(slots[index]);
+            if (!head.compareAndSet(first, first + 1))
+                continue;
+            idle = 0;
+            busy = true;
+            try {
+                recorder.accept(event);
+            } catch (RuntimeException e) {
+                java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(
+                        java.util.logging.Level.SEVERE, "Unable To Record Log Event", e);
+            }
+            event.clear();
+            recorded = first + 1;
+        }
+    }
+
+    private void runIdleAction() {
+        try {
+            idleAction.run();
+        } catch (RuntimeException e) {
+            java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(
+                    java.util.logging.Level.SEVERE, "Unable To Flush LOG FILE", e);
+        }
+    }
+
+    /**
+     * Waits until every event published before this call has been recorded
+     * or dropped.
+     * @since 1.1
+     */
+    void awaitRecorded() {
+        long target = tail.get() & ~CLOSED;
+        while (recorded < target && writer.isAlive() && Thread.currentThread() != writer)
+            LockSupport.parkNanos(100_000L);
+    }
+
+    private int waitForEvents(int idle, long first) {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                return idle;
+            case YIELDING:
+                Thread.yield();
+                return idle;
+            case BLOCKING:
+                lock.lock();
+                try {
+                    writerWaiting = true;
+                    if (head.get() == first && (tail.get() & ~CLOSED) <= first)
+                        notEmpty.await(1, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    writerWaiting = false;
+                    lock.unlock();
+                }
+                return idle;
+            default:
+                return backOff(idle);
+        }
+    }
+
+    /**
+     * @return the number of events discarded because the buffer was full
+     * @since 1.1
+     */
+    long getDroppedEvents() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return the number of events waiting to be recorded
+     * @since 1.1
+     */
+    long getPendingEvents() {
+        return (tail.get() & ~CLOSED) - head.get();
+    }
+
+    /**
+     * @return the number of slots of the ring buffer
+     * @since 1.1
+     */
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Stops accepting events and waits until every event already published has
+     * been recorded.
+     * @since 1.1
+     */
+    void close() {
+        closeFromHook();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            /*
+                The JVM is already shutting down, the hook is running anyway.
+            */
+        }
+    }
+
+    private void closeFromHook() {
+        long current;
+        do {
+            current = tail.get();
+        } while ((current & CLOSED) == 0 && !tail.compareAndSet(current, current | CLOSED));
+        if (writerWaiting)
+            signalWriter();
+        if (Thread.currentThread() == writer)
+            return;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.log4j.Level;
+import org.apache.log4j.spi.LocationInfo;
+
+/**
+ * Encodes the events of {@link LogFormat#BINARY}. Nothing is formatted while
+ * logging: an event keeps its message pattern and its arguments, which are
+ * rendered by {@link BinaryLogDecoder} when the file is read.
+ * <p>
+ * A file is a sequence of records. Every record starts with its tag and ends
+ * with {@link #END}, so a record never ends with a zero byte and the zero
+ * bytes behind the content of a mapped file can be told apart from it.
+ * <ul>
+ *     <li> {@link #SESSION}: the magic {@code HFLB}, the version, the base
+ *          timestamp and the conversion pattern. It starts every file and
+ *          empties the dictionary.
+ *     <li> {@link #STRING}: adds a string to the dictionary of the file. It
+ *          is written right before the first event using it.
+ *     <li> {@link #EVENT}: the difference of the timestamp to the previous
+ *          event, the level, the flags, the category, the thread, the
+ *          message pattern, the arguments with their type and, depending on
+ *          the flags, the stack trace, the NDC, the location and the key
+ *          value pairs of a structured event.
+ * </ul>
+ * Numbers are unsigned LEB128 varints, signed ones zigzag encoded. A string
+ * is referred to by a varint: {@code 0} for {@code null}, {@code 1} for a
+ * string following inline and any other value for an id of the dictionary.
+ * Categories, threads, message patterns with arguments and locations are
+ * interned, messages without arguments and rendered arguments are not. Once
+ * the dictionary holds {@value #DICTIONARY_SIZE} strings, new strings are
+ * written inline.
+ * <p>
+ * The encoder keeps the dictionary of the file it writes into, so it is owned
+ * by exactly one sink.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class BinaryEncoder implements EventEncoder
+{
+    static final byte[] MAGIC = {'H', 'F', 'L', 'B'};
+    static final int VERSION = 1;
+
+    static final int SESSION = 1;
+    static final int STRING = 2;
+    static final int EVENT = 3;
+    static final int END = '\n';
+
+    static final int FLAG_THROWABLE = 1;
+    static final int FLAG_NDC = 2;
+    static final int FLAG_LOCATION = 4;
+    static final int FLAG_KEY_VALUES = 8;
+
+    static final int NULL_REF = 0;
+    static final int INLINE_REF = 1;
+    static final int FIRST_ID = 2;
+
+    static final int TYPE_NULL = 0;
+    static final int TYPE_STRING = 1;
+    static final int TYPE_INT = 2;
+    static final int TYPE_LONG = 3;
+    static final int TYPE_DOUBLE = 4;
+    static final int TYPE_FLOAT = 5;
+    static final int TYPE_BOOLEAN = 6;
+    static final int TYPE_CHAR = 7;
+    static final int TYPE_RENDERED = 8;
+
+    static final int DICTIONARY_SIZE = 4096;
+
+    private final CompiledPattern pattern;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private boolean sessionWritten;
+    private long lastTimestamp;
+
+    private ByteBuffer bytes = ByteBuffer.allocate(1024);
+    private int[] keyRefs = new int[8];
+
+    private final ThrowableRenderer throwables;
+
+    /**
+     * @param pattern the conversion pattern recorded in the session header and
+     *                used by the decoder
+     * @param throwables renders the stack traces
+     * @since 1.1
+     */
+    BinaryEncoder(CompiledPattern pattern, ThrowableRenderer throwables) {
+        this.pattern = pattern;
+        this.throwables = throwables;
+    }
+
+    @Override
+    public void fileOpened() {
+        sessionWritten = false;
+    }
+
+    @Override
+    public ByteBuffer encode(LogEvent event) {
+        bytes.clear();
+        if (!sessionWritten) {
+            dictionary.clear();
+            lastTimestamp = event.timestamp;
+            put(SESSION);
+            for (byte magic : MAGIC)
+                put(magic);
+            put(VERSION);
+            putLong(event.timestamp);
+            putString(pattern.getPattern());
+            put(END);
+            sessionWritten = true;
+        }
+        String category = event.category == null ? HasselFreeLogger.class.getName() : event.category.getName();
+        boolean interned = event.supplier == null && event.argumentCount > 0;
+        String message = event.supplier != null ? event.supplier.get() : event.message;
+        Throwable throwable = event.renderThrowable();
+        String stackTrace = throwable == null ? null : throwables.render(event);
+        String ndc = event.ndc();
+        LocationInfo location = event.location;
+
+        /*
+            The strings new to the dictionary have to precede the event.
+        */
+        int categoryRef = define(category);
+        int threadRef = define(event.threadName);
+        int messageRef = interned ? define(message) : message == null ? NULL_REF : INLINE_REF;
+        int classRef = 0;
+        int fileRef = 0;
+        int methodRef = 0;
+        if (location != null) {
+            classRef = define(location.getClassName());
+            fileRef = define(location.getFileName());
+            methodRef = define(location.getMethodName());
+        }
+        KeyValues keyValues = event.keyValues;
+        int pairs = keyValues == null ? 0 : keyValues.size();
+        if (keyRefs.length < pairs)
+            keyRefs = new int[pairs];
+        for (int i = 0; i < pairs; i++)
+            keyRefs[i] = define(keyValues.key(i));
+
+        put(EVENT);
+        putLong(event.timestamp - lastTimestamp);
+        lastTimestamp = event.timestamp;
+        put(levelCode(event.level));
+        put((stackTrace != null ? FLAG_THROWABLE : 0) | (ndc != null ? FLAG_NDC : 0)
+                | (location != null ? FLAG_LOCATION : 0) | (pairs > 0 ? FLAG_KEY_VALUES : 0));
+        putRef(categoryRef, category);
+        putRef(threadRef, event.threadName);
+        putRef(messageRef, message);
+        int count = event.supplier == null ? event.argumentCount : 0;
+        putVarint(count);
+        for (int i = 0; i < count; i++) {
+            Object argument = event.arguments != null ? event.arguments[i]
+                    : i == 0 ? event.argument0 : event.argument1;
+            putArgument(argument == throwable && i == count - 1 ? null : argument);
+        }
+        if (stackTrace != null)
+            putString(stackTrace);
+        if (ndc != null)
+            putString(ndc);
+        if (location != null) {
+            putRef(classRef, location.getClassName());
+            putRef(fileRef, location.getFileName());
+            putRef(methodRef, location.getMethodName());
+            putLong(lineNumber(location));
+        }
+        if (pairs > 0) {
+            putVarint(pairs);
+            for (int i = 0; i < pairs; i++) {
+                putRef(keyRefs[i], keyValues.key(i));
+                putKeyValue(keyValues, i);
+            }
+        }
+        put(END);
+        bytes.flip();
+        return bytes;
+    }
+
+    /*
+        Returns the reference of a string, writing a STRING record if it is new
+        to the dictionary.
+    */
+    private int define(String value) {
+        if (value == null)
+            return NULL_REF;
+        Integer id = dictionary.get(value);
+        if (id != null)
+            return id;
+        if (dictionary.size() >= DICTIONARY_SIZE)
+            return INLINE_REF;
+        int created = FIRST_ID + dictionary.size();
+        dictionary.put(value, created);
+        put(STRING);
+        putVarint(created);
+        putString(value);
+        put(END);
+        return created;
+    }
+
+    private void putRef(int ref, String value) {
+        putVarint(ref);
+        if (ref == INLINE_REF)
+            putString(value);
+    }
+
+    private void putArgument(Object argument) {
+        if (argument == null) {
+            put(TYPE_NULL);
+        } else if (argument instanceof String) {
+            put(TYPE_STRING);
+            putString((String) argument);
+        } else if (argument instanceof Integer || argument instanceof Short || argument instanceof Byte) {
+            put(TYPE_INT);
+            putLong(((Number) argument).intValue());
+        } else if (argument instanceof Long) {
+            put(TYPE_LONG);
+            putLong((Long) argument);
+        } else if (argument instanceof Double) {
+            put(TYPE_DOUBLE);
+            ensure(8);
+            bytes.putDouble((Double) argument);
+        } else if (argument instanceof Float) {
+            put(TYPE_FLOAT);
+            ensure(4);
+            bytes.putFloat((Float) argument);
+        } else if (argument instanceof Boolean) {
+            put(TYPE_BOOLEAN);
+            put((Boolean) argument ? 1 : 0);
+        } else if (argument instanceof Character) {
+            put(TYPE_CHAR);
+            putVarint((Character) argument);
+        } else {
+            put(TYPE_RENDERED);
+            putString(MessageFormatter.render(argument));
+        }
+    }
+
+    private void putKeyValue(KeyValues keyValues, int index) {
+        switch (keyValues.kind(index)) {
+            case KeyValues.LONG:
+                put(TYPE_LONG);
+                putLong(keyValues.longAt(index));
+                break;
+            case KeyValues.DOUBLE:
+                put(TYPE_DOUBLE);
+                ensure(8);
+                bytes.putDouble(keyValues.doubleAt(index));
+                break;
+            case KeyValues.BOOLEAN:
+                put(TYPE_BOOLEAN);
+                put(keyValues.booleanAt(index) ? 1 : 0);
+                break;
+            default:
+                putArgument(keyValues.objectAt(index));
+                break;
+        }
+    }
+
+    private static long lineNumber(LocationInfo location) {
+        try {
+            return Long.parseLong(location.getLineNumber());
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * @return the byte identifying {@code level} in a binary file
+     * @since 1.1
+     */
+    static int levelCode(Level level) {
+        switch (level.toInt()) {
+            case Level.FATAL_INT:
+                return 5;
+            case Level.ERROR_INT:
+                return 4;
+            case Level.WARN_INT:
+                return 3;
+            case Level.INFO_INT:
+                return 2;
+            case Level.DEBUG_INT:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return the level identified by {@code code} in a binary file
+     * @since 1.1
+     */
+    static Level levelOf(int code) {
+        switch (code) {
+            case 5:
+                return Level.FATAL;
+            case 4:
+                return Level.ERROR;
+            case 3:
+                return Level.WARN;
+            case 2:
+                return Level.INFO;
+            case 1:
+                return Level.DEBUG;
+            default:
+                return Level.ALL;
+        }
+    }
+
+    private void putString(String value) {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        putVarint(encoded.length);
+        ensure(encoded.length);
+        bytes.put(encoded);
+    }
+
+    private void putLong(long value) {
+        putVarint((value << 1) ^ (value >> 63));
+    }
+
+    private void putVarint(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            bytes.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        bytes.put((byte) value);
+    }
+
+    private void put(int value) {
+        ensure(1);
+        bytes.put((byte) value);
+    }
+
+    private void ensure(int length) {
+        if (bytes.remaining() >= length)
+            return;
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(bytes.capacity() * 2, bytes.position() + length));
+        bytes.flip();
+        larger.put(bytes);
+        bytes = larger;
+    }
+}
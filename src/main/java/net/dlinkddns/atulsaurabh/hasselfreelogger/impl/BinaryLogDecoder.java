@@ -0,0 +1,278 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.apache.log4j.NDC;
+import org.apache.log4j.spi.LocationInfo;
+
+/**
+ * Renders the files written with {@link LogFormat#BINARY} as text, using the
+ * conversion pattern recorded in the file or the one given on the command
+ * line:
+ * <pre>
+ * java -cp HasselFreeLogger.jar:log4j.jar \
+ *      net.dlinkddns.atulsaurabh.hasselfreelogger.impl.BinaryLogDecoder \
+ *      [--pattern "%d %-5p %c - %m%n"] all.log [all.log.2024-01-01.1.gz ...]
+ * </pre>
+ * Rolled files compressed with gzip are read as they are. Without a file the
+ * standard input is decoded. The dates are rendered in the time zone of the
+ * decoder and the MDC, which is not recorded, is rendered empty.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+public final class BinaryLogDecoder
+{
+    private final CompiledPattern override;
+    private final PrintStream out;
+
+    private CompiledPattern pattern;
+    private final List<String> dictionary = new ArrayList<>();
+    private long lastTimestamp;
+
+    private final LogEvent event = new LogEvent();
+    private final StringBuilder text = new StringBuilder(256);
+    private Object[] arguments = new Object[8];
+    private final KeyValues keyValues = new KeyValues();
+
+    /**
+     * @param pattern the conversion pattern rendering the events or
+     *                {@code null} to use the one recorded in the file
+     * @param out receives the rendered events
+     * @since 1.1
+     */
+    BinaryLogDecoder(String pattern, PrintStream out) {
+        this.override = pattern == null ? null : new CompiledPattern(pattern);
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String pattern = null;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("--pattern".equals(args[i]) && i + 1 < args.length)
+                pattern = args[++i];
+            else
+                files.add(args[i]);
+        }
+        BinaryLogDecoder decoder = new BinaryLogDecoder(pattern, System.out);
+        if (files.isEmpty()) {
+            decoder.decode(System.in);
+        } else {
+            for (String file : files) {
+                try (InputStream in = Files.newInputStream(Paths.get(file))) {
+                    decoder.decode(file.endsWith(".gz") ? new GZIPInputStream(in, 65536) : in);
+                }
+            }
+        }
+        System.out.flush();
+    }
+
+    /**
+     * Renders every event of a binary file.
+     *
+     * @throws IOException if the stream can not be read or is not a binary
+     *                     log file
+     * @since 1.1
+     */
+    void decode(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 65536));
+        while (true) {
+            int tag = in.read();
+            switch (tag) {
+                case -1:
+                    return;
+                case 0:
+                    /*
+                        Zero bytes left behind by a mapped file after a crash.
+                    */
+                    continue;
+                case BinaryEncoder.SESSION:
+                    readSession(in);
+                    break;
+                case BinaryEncoder.STRING:
+                    readString(in);
+                    break;
+                case BinaryEncoder.EVENT:
+                    readEvent(in);
+                    break;
+                default:
+                    throw new IOException("Not A Binary LOG FILE, unknown record " + tag);
+            }
+            if (in.read() != BinaryEncoder.END)
+                throw new IOException("Corrupt Binary LOG FILE");
+        }
+    }
+
+    private void readSession(DataInputStream in) throws IOException {
+        byte[] magic = new byte[BinaryEncoder.MAGIC.length];
+        in.readFully(magic);
+        for (int i = 0; i < magic.length; i++)
+            if (magic[i] != BinaryEncoder.MAGIC[i])
+                throw new IOException("Not A Binary LOG FILE");
+        int version = in.read();
+        if (version != BinaryEncoder.VERSION)
+            throw new IOException("Unsupported Binary LOG FILE version " + version);
+        lastTimestamp = readLong(in);
+        String recorded = readText(in);
+        pattern = override != null ? override : new CompiledPattern(recorded);
+        dictionary.clear();
+    }
+
+    private void readString(DataInputStream in) throws IOException {
+        int id = (int) readVarint(in) - BinaryEncoder.FIRST_ID;
+        String value = readText(in);
+        while (dictionary.size() <= id)
+            dictionary.add(null);
+        dictionary.set(id, value);
+    }
+
+    private void readEvent(DataInputStream in) throws IOException {
+        if (pattern == null)
+            throw new IOException("Binary LOG FILE without session header");
+        long timestamp = lastTimestamp + readLong(in);
+        lastTimestamp = timestamp;
+        int level = in.read();
+        int flags = in.read();
+        String category = readRef(in);
+        String thread = readRef(in);
+        String message = readRef(in);
+        int count = (int) readVarint(in);
+        if (arguments.length < count)
+            arguments = new Object[count];
+        for (int i = 0; i < count; i++)
+            arguments[i] = readArgument(in);
+        String stackTrace = (flags & BinaryEncoder.FLAG_THROWABLE) != 0 ? readText(in) : null;
+        String ndc = (flags & BinaryEncoder.FLAG_NDC) != 0 ? readText(in) : null;
+        LocationInfo location = null;
+        if ((flags & BinaryEncoder.FLAG_LOCATION) != 0) {
+            String className = readRef(in);
+            String fileName = readRef(in);
+            String methodName = readRef(in);
+            long line = readLong(in);
+            location = new LocationInfo(fileName, className, methodName,
+                    line < 0 ? LocationInfo.NA : Long.toString(line));
+        }
+
+        keyValues.clear();
+        if ((flags & BinaryEncoder.FLAG_KEY_VALUES) != 0) {
+            int pairs = (int) readVarint(in);
+            for (int i = 0; i < pairs; i++)
+                readKeyValue(in, readRef(in));
+        }
+
+        event.set(null, BinaryEncoder.levelOf(level), timestamp, thread, message, count,
+                null, null, arguments, null, null, location);
+        event.categoryName = category;
+        event.keyValues = keyValues.size() == 0 ? null : keyValues;
+        text.setLength(0);
+        if (ndc != null)
+            NDC.push(ndc);
+        try {
+            pattern.format(text, event);
+        } finally {
+            if (ndc != null)
+                NDC.remove();
+        }
+        if (stackTrace != null)
+            text.append(stackTrace);
+        out.print(text);
+    }
+
+    private void readKeyValue(DataInputStream in, String key) throws IOException {
+        int type = in.read();
+        switch (type) {
+            case BinaryEncoder.TYPE_LONG:
+                keyValues.add(key, readLong(in));
+                break;
+            case BinaryEncoder.TYPE_DOUBLE:
+                keyValues.add(key, in.readDouble());
+                break;
+            case BinaryEncoder.TYPE_BOOLEAN:
+                keyValues.add(key, in.read() != 0);
+                break;
+            default:
+                keyValues.add(key, readArgument(in, type));
+                break;
+        }
+    }
+
+    private Object readArgument(DataInputStream in) throws IOException {
+        return readArgument(in, in.read());
+    }
+
+    private Object readArgument(DataInputStream in, int type) throws IOException {
+        switch (type) {
+            case BinaryEncoder.TYPE_NULL:
+                return null;
+            case BinaryEncoder.TYPE_INT:
+                return (int) readLong(in);
+            case BinaryEncoder.TYPE_LONG:
+                return readLong(in);
+            case BinaryEncoder.TYPE_DOUBLE:
+                return in.readDouble();
+            case BinaryEncoder.TYPE_FLOAT:
+                return in.readFloat();
+            case BinaryEncoder.TYPE_BOOLEAN:
+                return in.read() != 0;
+            case BinaryEncoder.TYPE_CHAR:
+                return (char) readVarint(in);
+            case BinaryEncoder.TYPE_STRING:
+            case BinaryEncoder.TYPE_RENDERED:
+                return readText(in);
+            default:
+                throw new IOException("Corrupt Binary LOG FILE, unknown argument type " + type);
+        }
+    }
+
+    private String readRef(DataInputStream in) throws IOException {
+        int ref = (int) readVarint(in);
+        if (ref == BinaryEncoder.NULL_REF)
+            return null;
+        if (ref == BinaryEncoder.INLINE_REF)
+            return readText(in);
+        int id = ref - BinaryEncoder.FIRST_ID;
+        if (id >= dictionary.size() || dictionary.get(id) == null)
+            throw new IOException("Corrupt Binary LOG FILE, unknown string " + ref);
+        return dictionary.get(id);
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        byte[] encoded = new byte[(int) readVarint(in)];
+        in.readFully(encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+
+    private static long readLong(DataInputStream in) throws IOException {
+        long value = readVarint(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int next = in.read();
+            if (next < 0)
+                throw new EOFException();
+            value |= (long) (next & 0x7F) << shift;
+            if ((next & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Corrupt Binary LOG FILE, varint too long");
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import org.apache.log4j.spi.LocationInfo;
+
+/**
+ * Finds the caller of a log method, i.e. the first frame on the stack outside
+ * the {@code api} and {@code impl} packages of the library, for the location
+ * converters %C, %F, %l, %L and %M.
+ * <p>
+ * log4j finds the caller by filling in the stack trace of a new
+ * {@link Throwable} and converting every frame to a
+ * {@link StackTraceElement}. On Java 9 and later the stack is walked lazily
+ * with {@code java.lang.StackWalker} instead, which stops at the caller. The
+ * line number and the file name are the expensive part of a frame, so they
+ * are resolved only once per call site: the locations are cached per class by
+ * the method name, the method descriptor, which tells overloads apart, and
+ * the bytecode index of the call. A repeated call from the same line returns
+ * the cached {@link LocationInfo} and allocates neither frames nor keys. On
+ * Java 9, whose frames have no descriptor, the locations are not cached.
+ * <p>
+ * On Java 8 the stack trace of a {@link Throwable} is still filled in, but
+ * only the frames up to the caller are converted, through
+ * {@code sun.misc.JavaLangAccess} if it is accessible. The locations are
+ * cached by their {@link StackTraceElement}.
+ * <p>
+ * The library is compiled for Java 8, so the walker is reached through
+ * {@link MethodHandle}s found once when the class is loaded.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class CallerLocator
+{
+    private static final String API_PACKAGE = "net.dlinkddns.atulsaurabh.hasselfreelogger.api.";
+    private static final String IMPL_PACKAGE = "net.dlinkddns.atulsaurabh.hasselfreelogger.impl.";
+
+    /**
+     * Number of call sites cached per class, and of frames cached on Java 8.
+     * A cache is emptied when it is full.
+     */
+    private static final int CACHE_SIZE = 1024;
+
+    /*
+        StackWalker.walk of a walker retaining the class references, and the
+        accessors of StackWalker.StackFrame. Null before Java 9.
+    */
+    private static final MethodHandle WALK;
+    private static final MethodHandle DECLARING_CLASS;
+    private static final MethodHandle METHOD_NAME;
+    private static final MethodHandle BYTE_CODE_INDEX;
+    private static final MethodHandle TO_STACK_TRACE_ELEMENT;
+
+    /*
+        StackWalker.StackFrame.getDescriptor, null before Java 10.
+    */
+    private static final MethodHandle DESCRIPTOR;
+
+    /*
+        JavaLangAccess.getStackTraceDepth and getStackTraceElement on Java 8.
+    */
+    private static final MethodHandle STACK_TRACE_DEPTH;
+    private static final MethodHandle STACK_TRACE_ELEMENT;
+
+    static {
+        MethodHandle walk = null;
+        MethodHandle declaringClass = null;
+        MethodHandle methodName = null;
+        MethodHandle byteCodeIndex = null;
+        MethodHandle toStackTraceElement = null;
+        MethodHandle descriptor = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+            Class<?> optionClass = Class.forName("java.lang.StackWalker$Option");
+            Class<?> frameClass = Class.forName("java.lang.StackWalker$StackFrame");
+            Object retainClassReference = optionClass.getField("RETAIN_CLASS_REFERENCE").get(null);
+            Object walker = walkerClass.getMethod("getInstance", optionClass).invoke(null, retainClassReference);
+            walk = lookup.findVirtual(walkerClass, "walk", MethodType.methodType(Object.class, Function.class))
+                    .bindTo(walker);
+            declaringClass = lookup.findVirtual(frameClass, "getDeclaringClass", MethodType.methodType(Class.class))
+                    .asType(MethodType.methodType(Class.class, Object.class));
+            methodName = lookup.findVirtual(frameClass, "getMethodName", MethodType.methodType(String.class))
+                    .asType(MethodType.methodType(String.class, Object.class));
+            byteCodeIndex = lookup.findVirtual(frameClass, "getByteCodeIndex", MethodType.methodType(int.class))
+                    .asType(MethodType.methodType(int.class, Object.class));
+            toStackTraceElement = lookup.findVirtual(frameClass, "toStackTraceElement",
+                    MethodType.methodType(StackTraceElement.class))
+                    .asType(MethodType.methodType(StackTraceElement.class, Object.class));
+            try {
+                descriptor = lookup.findVirtual(frameClass, "getDescriptor", MethodType.methodType(String.class))
+                        .asType(MethodType.methodType(String.class, Object.class));
+            } catch (NoSuchMethodException e) {
+                descriptor = null;
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            walk = null;
+        }
+        WALK = walk;
+        DECLARING_CLASS = declaringClass;
+        METHOD_NAME = methodName;
+        BYTE_CODE_INDEX = byteCodeIndex;
+        TO_STACK_TRACE_ELEMENT = toStackTraceElement;
+        DESCRIPTOR = descriptor;
+
+        MethodHandle stackTraceDepth = null;
+        MethodHandle stackTraceElement = null;
+        if (walk == null) {
+            try {
+                Class<?> access = Class.forName("sun.misc.JavaLangAccess");
+                Object javaLangAccess = Class.forName("sun.misc.SharedSecrets")
+                        .getMethod("getJavaLangAccess").invoke(null);
+                Method depth = access.getMethod("getStackTraceDepth", Throwable.class);
+                Method element = access.getMethod("getStackTraceElement", Throwable.class, int.class);
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                stackTraceDepth = lookup.unreflect(depth).bindTo(javaLangAccess);
+                stackTraceElement = lookup.unreflect(element).bindTo(javaLangAccess);
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                stackTraceDepth = null;
+                stackTraceElement = null;
+            }
+        }
+        STACK_TRACE_DEPTH = stackTraceDepth;
+        STACK_TRACE_ELEMENT = stackTraceElement;
+    }
+
+    /**
+     * The locations of the call sites of every class.
+     */
+    private static final ClassValue<CallSites> CALL_SITES = new ClassValue<CallSites>() {
+        @Override
+        protected CallSites computeValue(Class<?> type) {
+            return new CallSites();
+        }
+    };
+
+    private static final Map<StackTraceElement, LocationInfo> FRAMES = new ConcurrentHashMap<>();
+
+    private static final Function<Stream<Object>, Object> FIND_CALLER = CallerLocator::findCaller;
+
+    private CallerLocator() {
+    }
+
+    /**
+     * @return the location of the caller of the library or {@code null} if the
+     *         whole stack belongs to the library
+     * @since 1.1
+     */
+    static LocationInfo locate() {
+        if (WALK != null) {
+            try {
+                return (LocationInfo) (Object) WALK.invokeExact(FIND_CALLER);
+            } catch (Throwable e) {
+                /*
+                    Not expected; the stack trace still tells the caller.
+                */
+            }
+        }
+        return locateByThrowable(new Throwable());
+    }
+
+    private static Object findCaller(Stream<Object> frames) {
+        try {
+            Iterator<Object> iterator = frames.iterator();
+            while (iterator.hasNext()) {
+                Object frame = iterator.next();
+                Class<?> type = (Class<?>) DECLARING_CLASS.invokeExact(frame);
+                if (isLibrary(type.getName()))
+                    continue;
+                if (DESCRIPTOR == null)
+                    return toLocation((StackTraceElement) TO_STACK_TRACE_ELEMENT.invokeExact(frame));
+                String method = (String) METHOD_NAME.invokeExact(frame);
+                String descriptor = (String) DESCRIPTOR.invokeExact(frame);
+                int index = (int) BYTE_CODE_INDEX.invokeExact(frame);
+                CallSites callSites = CALL_SITES.get(type);
+                LocationInfo location = callSites.get(method, descriptor, index);
+                if (location == null) {
+                    location = toLocation((StackTraceElement) TO_STACK_TRACE_ELEMENT.invokeExact(frame));
+                    callSites.put(method, descriptor, index, location);
+                }
+                return location;
+            }
+            return null;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static LocationInfo locateByThrowable(Throwable throwable) {
+        StackTraceElement caller = null;
+        if (STACK_TRACE_ELEMENT != null) {
+            try {
+                int depth = (int) STACK_TRACE_DEPTH.invokeExact(throwable);
+                for (int i = 0; i < depth && caller == null; i++) {
+                    StackTraceElement frame = (StackTraceElement) STACK_TRACE_ELEMENT.invokeExact(throwable, i);
+                    if (!isLibrary(frame.getClassName()))
+                        caller = frame;
+                }
+                if (caller == null)
+                    return null;
+            } catch (Throwable e) {
+                caller = null;
+            }
+        }
+        if (caller == null) {
+            for (StackTraceElement frame : throwable.getStackTrace()) {
+                if (!isLibrary(frame.getClassName())) {
+                    caller = frame;
+                    break;
+                }
+            }
+            if (caller == null)
+                return null;
+        }
+        LocationInfo location = FRAMES.get(caller);
+        if (location == null) {
+            if (FRAMES.size() >= CACHE_SIZE)
+                FRAMES.clear();
+            location = toLocation(caller);
+            FRAMES.put(caller, location);
+        }
+        return location;
+    }
+
+    private static boolean isLibrary(String className) {
+        return className.startsWith(IMPL_PACKAGE) || className.startsWith(API_PACKAGE);
+    }
+
+    private static final class CallSite
+    {
+        final String method;
+        final String descriptor;
+        final int index;
+        final LocationInfo location;
+
+        CallSite(String method, String descriptor, int index, LocationInfo location) {
+            this.method = method;
+            this.descriptor = descriptor;
+            this.index = index;
+            this.location = location;
+        }
+    }
+
+    /**
+     * The call sites of one class in an open addressing table, so a lookup
+     * boxes no key. A call site is found by the hash of its method and
+     * bytecode index and confirmed by comparing them. The table is read
+     * without a lock; a call site is immutable, so a reader sees it complete
+     * or not at all. The rare insertions take the lock, the table grows up to
+     * twice {@link #CACHE_SIZE} slots and is emptied when it is half full.
+     */
+    private static final class CallSites
+    {
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile CallSite[] table = new CallSite[16];
+        private int size;
+
+        private static int hash(String method, String descriptor, int index) {
+            int hash = (method.hashCode() * 31 + descriptor.hashCode()) * 31 + index;
+            return hash ^ hash >>> 16;
+        }
+
+        LocationInfo get(String method, String descriptor, int index) {
+            CallSite[] slots = table;
+            int mask = slots.length - 1;
+            for (int i = hash(method, descriptor, index) & mask; ; i = i + 1 & mask) {
+                CallSite site = slots[i];
+                if (site == null)
+                    return null;
+                if (site.index == index && site.method.equals(method) && site.descriptor.equals(descriptor))
+                    return site.location;
+            }
+        }
+
+        void put(String method, String descriptor, int index, LocationInfo location) {
+            lock.lock();
+            try {
+                if (get(method, descriptor, index) != null)
+                    return;
+                CallSite[] slots = table;
+                if (size >= CACHE_SIZE) {
+                    slots = new CallSite[16];
+                    size = 0;
+                } else if ((size + 1) * 2 > slots.length) {
+                    CallSite[] larger = new CallSite[slots.length * 2];
+                    for (CallSite site : slots)
+                        if (site != null)
+                            insert(larger, site);
+                    slots = larger;
+                }
+                insert(slots, new CallSite(method, descriptor, index, location));
+                size++;
+                table = slots;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private static void insert(CallSite[] slots, CallSite site) {
+            int mask = slots.length - 1;
+            int i = hash(site.method, site.descriptor, site.index) & mask;
+            while (slots[i] != null)
+                i = i + 1 & mask;
+            slots[i] = site;
+        }
+    }
+
+    private static LocationInfo toLocation(StackTraceElement frame) {
+        String file = frame.getFileName();
+        int line = frame.getLineNumber();
+        return new LocationInfo(file == null ? LocationInfo.NA : file, frame.getClassName(),
+                frame.getMethodName(), line < 0 ? LocationInfo.NA : Integer.toString(line));
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+/**
+ * The log4j logger of a class, resolved once and cached on the class itself by
+ * a {@link ClassValue}. Looking it up costs a field read instead of building
+ * the class name and searching the synchronized table of the log4j hierarchy
+ * on every log call.
+ * <p>
+ * A handle is immutable. The level of the log4j logger is never changed by
+ * this library; which events are recorded is decided by the threshold of
+ * {@link HasselFreeLogger} before the handle is looked up.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class CategoryHandle
+{
+    private static final ClassValue<CategoryHandle> HANDLES = new ClassValue<CategoryHandle>() {
+        @Override
+        protected CategoryHandle computeValue(Class<?> type) {
+            return new CategoryHandle(type.getName());
+        }
+    };
+
+    final String name;
+    final org.apache.log4j.Logger logger;
+
+    private CategoryHandle(String name) {
+        this.name = name;
+        this.logger = org.apache.log4j.Logger.getLogger(name);
+    }
+
+    /**
+     * @param type the class generating the events
+     * @return the handle of the class
+     * @since 1.1
+     */
+    static CategoryHandle of(Class<?> type) {
+        return HANDLES.get(type);
+    }
+}
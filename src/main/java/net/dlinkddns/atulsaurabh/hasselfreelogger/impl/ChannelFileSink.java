@@ -0,0 +1,172 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import org.apache.log4j.Level;
+
+/**
+ * Writes the events of one log file through a {@link FileChannel}. The encoded
+ * bytes are handed to the channel as they are, without a {@link java.io.Writer}
+ * in between.
+ * <p>
+ * With {@link FlushPolicy#EVERY_EVENT} every event is written at once. With the
+ * other policies the events are copied into a batch of reusable direct chunks
+ * and the whole batch is written by one gathering write when it is flushed:
+ * when the batch size is reached, when the oldest event waited too long, when
+ * an error or fatal event arrives (unless disabled) and when the sink is
+ * flushed explicitly, rolled or closed.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class ChannelFileSink extends FileSink
+{
+    private static final int CHUNK_SIZE = 16 << 10;
+
+    private final FlushPolicy flushPolicy;
+    private final long batchSize;
+    private final long maxDelay;
+    private final boolean flushOnError;
+
+    private final ByteBuffer[] chunks;
+    private int current;
+    private long pending;
+    private long firstPending;
+
+    private FileChannel channel;
+
+    /**
+     * Opens the file for appending, creating its directory if required. Every
+     * event is written at once.
+     *
+     * @param file the full name of the log file
+     * @param pattern the pattern used to render the events
+     * @param datePattern the pattern deciding the period of the file
+     * @throws IOException if the file can not be opened
+     * @since 1.1
+     */
+    ChannelFileSink(String file, CompiledPattern pattern, String datePattern) throws IOException {
+        this(file, pattern, LogFormat.TEXT, ThrowableRenderer.PLAIN, datePattern, RollingPolicy.DAILY,
+                FlushPolicy.EVERY_EVENT, 0L, 0L, true);
+    }
+
+    /**
+     * Opens the file for appending, creating its directory if required.
+     *
+     * @param file the full name of the log file
+     * @param pattern the pattern used to render the events
+     * @param format the format of the file
+     * @param throwables renders the stack traces
+     * @param datePattern the pattern deciding the period of the file
+     * @param rollingPolicy decides when else the file is rolled
+     * @param flushPolicy decides when collected events are written
+     * @param batchSize bytes collected before they are written
+     * @param maxDelay milliseconds an event may wait before it is written
+     * @param flushOnError if true an error or fatal event is written at once
+     *                     together with every event collected before it
+     * @throws IOException if the file can not be opened
+     * @since 1.1
+     */
+    ChannelFileSink(String file, CompiledPattern pattern, LogFormat format, ThrowableRenderer throwables,
+            String datePattern, RollingPolicy rollingPolicy, FlushPolicy flushPolicy, long batchSize,
+            long maxDelay, boolean flushOnError) throws IOException {
+        super(file, pattern, format, throwables, datePattern, rollingPolicy);
+        this.flushPolicy = flushPolicy;
+        this.batchSize = Math.max(CHUNK_SIZE, batchSize);
+        this.maxDelay = maxDelay;
+        this.flushOnError = flushOnError;
+        if (flushPolicy == FlushPolicy.EVERY_EVENT) {
+            this.chunks = null;
+        } else {
+            this.chunks = new ByteBuffer[(int) ((this.batchSize + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+            for (int i = 0; i < chunks.length; i++)
+                chunks[i] = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        }
+        start();
+    }
+
+    @Override
+    protected void openFile() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    @Override
+    protected void writeBytes(ByteBuffer bytes) throws IOException {
+        if (chunks == null) {
+            while (bytes.hasRemaining())
+                channel.write(bytes);
+            return;
+        }
+        if (pending == 0)
+            firstPending = System.currentTimeMillis();
+        pending += bytes.remaining();
+        while (bytes.hasRemaining()) {
+            ByteBuffer chunk = chunks[current];
+            if (!chunk.hasRemaining()) {
+                if (current == chunks.length - 1) {
+                    flushBuffers();
+                    firstPending = System.currentTimeMillis();
+                    pending = bytes.remaining();
+                } else {
+                    current++;
+                }
+                continue;
+            }
+            if (bytes.remaining() <= chunk.remaining()) {
+                chunk.put(bytes);
+            } else {
+                int limit = bytes.limit();
+                bytes.limit(bytes.position() + chunk.remaining());
+                chunk.put(bytes);
+                bytes.limit(limit);
+            }
+        }
+    }
+
+    @Override
+    protected void eventWritten(LogEvent event) throws IOException {
+        if (pending == 0)
+            return;
+        if (pending >= batchSize
+                || (flushOnError && HasselFreeLogger.priority(event.level).isGreaterOrEqual(Level.ERROR))
+                || (flushPolicy == FlushPolicy.BATCH && event.timestamp - firstPending >= maxDelay))
+            flushBuffers();
+    }
+
+    /*
+        The chunks filled so far are written by one gathering write.
+    */
+    @Override
+    protected void flushBuffers() throws IOException {
+        if (chunks == null || pending == 0)
+            return;
+        for (int i = 0; i <= current; i++)
+            chunks[i].flip();
+        try {
+            while (chunks[current].hasRemaining())
+                channel.write(chunks, 0, current + 1);
+        } finally {
+            for (int i = 0; i <= current; i++)
+                chunks[i].clear();
+            current = 0;
+            pending = 0;
+        }
+    }
+
+    @Override
+    protected void closeFile() throws IOException {
+        try {
+            flushBuffers();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,510 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.log4j.spi.LocationInfo;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * A log4j conversion pattern, e.g. the default {@code [%p] %d %c %M - %m%n},
+ * parsed once into an array of specialized converters. Rendering an event only
+ * walks the array; the pattern string is never looked at again.
+ * <p>
+ * A compiled pattern is immutable and thread safe, so one instance is shared by
+ * every {@link PatternEncoder} until the conversion pattern is changed.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class CompiledPattern
+{
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private final String pattern;
+    private final Converter[] converters;
+    private final boolean locationRequired;
+    private final boolean contextRequired;
+
+    /**
+     * @param pattern a log4j conversion pattern
+     * @since 1.1
+     */
+    CompiledPattern(String pattern) {
+        this.pattern = pattern;
+        this.converters = parse(pattern);
+        boolean location = false;
+        boolean context = false;
+        for (Converter converter : converters) {
+            location |= converter instanceof LocationConverter;
+            context |= converter instanceof NdcConverter || converter instanceof MdcConverter;
+        }
+        this.locationRequired = location;
+        this.contextRequired = context;
+    }
+
+    /**
+     * @return the source of this pattern
+     * @since 1.1
+     */
+    String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return true if the pattern prints the caller location, i.e. contains one
+     *         of %C, %F, %l, %L or %M. The location is expensive to find, so it
+     *         is captured only in that case.
+     * @since 1.1
+     */
+    boolean isLocationRequired() {
+        return locationRequired;
+    }
+
+    /**
+     * @return true if the pattern prints the NDC or the MDC, i.e. contains %x
+     *         or %X, so an event rendered by another thread has to carry the
+     *         ones of the logging thread
+     * @since 1.1
+     */
+    boolean isContextRequired() {
+        return contextRequired;
+    }
+
+    /**
+     * Renders an event without its exception.
+     * @since 1.1
+     */
+    void format(StringBuilder buffer, LogEvent event) {
+        for (Converter converter : converters)
+            converter.render(buffer, event);
+    }
+
+    /*
+        The parser follows the syntax of log4j PatternLayout: a conversion starts
+        with %, followed by an optional format modifier (- for left alignment,
+        minimum width and .maximum width), the conversion character and an
+        optional option inside braces.
+    */
+    private static Converter[] parse(String pattern) {
+        List<Converter> parsed = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        int length = pattern.length();
+        while (i < length) {
+            char c = pattern.charAt(i++);
+            if (c != '%' || i == length) {
+                literal.append(c);
+                continue;
+            }
+            if (pattern.charAt(i) == '%') {
+                literal.append('%');
+                i++;
+                continue;
+            }
+            int conversionStart = i - 1;
+            boolean leftAlign = false;
+            int min = -1;
+            int max = Integer.MAX_VALUE;
+            if (pattern.charAt(i) == '-') {
+                leftAlign = true;
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isDigit(pattern.charAt(i)))
+                i++;
+            if (i > start)
+                min = Integer.parseInt(pattern.substring(start, i));
+            if (i < length && pattern.charAt(i) == '.') {
+                start = ++i;
+                while (i < length && Character.isDigit(pattern.charAt(i)))
+                    i++;
+                if (i > start)
+                    max = Integer.parseInt(pattern.substring(start, i));
+            }
+            if (i == length) {
+                literal.append(pattern, conversionStart, length);
+                break;
+            }
+            char conversion = pattern.charAt(i++);
+            String option = null;
+            if (i < length && pattern.charAt(i) == '{') {
+                int end = pattern.indexOf('}', i);
+                if (end > 0) {
+                    option = pattern.substring(i + 1, end);
+                    i = end + 1;
+                }
+            }
+            Converter converter = converter(conversion, option);
+            if (converter == null) {
+                literal.append('%').append(conversion);
+                continue;
+            }
+            if (literal.length() > 0) {
+                parsed.add(new LiteralConverter(literal.toString()));
+                literal.setLength(0);
+            }
+            converter.leftAlign = leftAlign;
+            converter.min = min;
+            converter.max = max;
+            parsed.add(converter);
+        }
+        if (literal.length() > 0)
+            parsed.add(new LiteralConverter(literal.toString()));
+        return parsed.toArray(new Converter[0]);
+    }
+
+    private static Converter converter(char conversion, String option) {
+        switch (conversion) {
+            case 'c':
+                return new CategoryConverter(precision(option));
+            case 'C':
+                return new LocationConverter(conversion, precision(option));
+            case 'd':
+                return new DateConverter(option);
+            case 'F':
+            case 'l':
+            case 'L':
+            case 'M':
+                return new LocationConverter(conversion, 0);
+            case 'm':
+                return new MessageConverter();
+            case 'n':
+                return new LiteralConverter(LINE_SEPARATOR);
+            case 'p':
+                return new LevelConverter();
+            case 'r':
+                return new RelativeTimeConverter();
+            case 't':
+                return new ThreadConverter();
+            case 'x':
+                return new NdcConverter();
+            case 'X':
+                return new MdcConverter(option);
+            default:
+                return null;
+        }
+    }
+
+    private static int precision(String option) {
+        if (option == null)
+            return 0;
+        try {
+            return Math.max(0, Integer.parseInt(option.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Renders one part of the pattern.
+     */
+    private abstract static class Converter
+    {
+        boolean leftAlign;
+        int min = -1;
+        int max = Integer.MAX_VALUE;
+
+        final void render(StringBuilder buffer, LogEvent event) {
+            int start = buffer.length();
+            append(buffer, event);
+            int written = buffer.length() - start;
+            if (written > max) {
+                buffer.delete(start, start + written - max);
+            } else if (written < min) {
+                if (leftAlign) {
+                    for (int i = written; i < min; i++)
+                        buffer.append(' ');
+                } else {
+                    for (int i = written; i < min; i++)
+                        buffer.insert(start, ' ');
+                }
+            }
+        }
+
+        abstract void append(StringBuilder buffer, LogEvent event);
+    }
+
+    private static final class LiteralConverter extends Converter
+    {
+        private final String literal;
+
+        LiteralConverter(String literal) {
+            this.literal = literal;
+        }
+
+        @Override
+        void append(StringBuilder buffer, LogEvent event) {
+            buffer.append(literal);
+        }
+    }
+
+    private static final class LevelConverter extends Converter
+    {
+        @Override
+        void append(StringBuilder buffer, LogEvent event) {
+            buffer.append(HasselFreeLogger.priority(event.level).toString());
+        }
+    }
+
+    private static final class MessageConverter extends Converter
+    {
+        @Override
+        void append(StringBuilder buffer, LogEvent event) {
+            if (event.supplier != null)
+                buffer.append(event.supplier.get());
+            else if (event.argumentCount == 0)
+                buffer.append(event.message);
+            else
+                MessageFormatter.formatTo(buffer, event.message, event.argumentCount,
+                        event.argument0, event.argument1, event.arguments);
+            if (event.keyValues != null)
+                event.keyValues.appendTo(buffer);
+        }
+    }
+
+    private static final class ThreadConverter extends Converter
+    {
+        @Override
+        void append(StringBuilder buffer, LogEvent event) {
+            buffer.append(event.threadName);
+        }
+    }
+
+    private static final class RelativeTimeConverter extends Converter
+    {
+        @Override
+        void append(StringBuilder buffer, LogEvent event) {
+            buffer.append(event.timestamp - LoggingEvent.getStartTime());
+        }
+    }
+
+    private static final class NdcConverter extends Converter
+    {
+        @Override
+        void append(StringBuilder buffer, LogEvent event) {
+            String ndc = event.ndc();
+            if (ndc != null)
+                buffer.append(ndc);
+        }
+    }
+
+    private static final class MdcConverter extends Converter
+    {
+        private final String key;
+
+        MdcConverter(String key) {
+            this.key = key;
+        }
+
+        @Override
+        void append(StringBuilder buffer, LogEvent event) {
+            Object value = key == null ? null : event.mdc().get(key);
+            if (value != null)
+                buffer.append(value);
+        }
+    }
+
+    /**
+     * Renders a dot separated name, keeping only the last {@code precision}
+     * elements if a precision is given.
+     */
+    private static void appendName(StringBuilder buffer, String name, int precision) {
+        if (name == null)
+            return;
+        int start = 0;
+        if (precision > 0) {
+            int end = name.length() - 1;
+            for (int i = precision; i > 0; i--) {
+                end = name.lastIndexOf('.', end - 1);
+                if (end < 0)
+                    break;
+            }
+            start = end + 1;
+        }
+        buffer.append(name, start, name.length());
+    }
+
+    private static final class CategoryConverter extends Converter
+    {
+        private final int precision;
+
+        CategoryConverter(int precision) {
+            this.precision = precision;
+        }
+
+        @Override
+        void append(StringBuilder buffer, LogEvent event) {
+            String name = event.categoryName != null ? event.categoryName
+                    : event.category == null ? HasselFreeLogger.class.getName() : event.category.getName();
+            appendName(buffer, name, precision);
+        }
+    }
+
+    private static final class LocationConverter extends Converter
+    {
+        private final char conversion;
+        private final int precision;
+
+        LocationConverter(char conversion, int precision) {
+            this.conversion = conversion;
+            this.precision = precision;
+        }
+
+        @Override
+        void append(StringBuilder buffer, LogEvent event) {
+            LocationInfo location = event.location;
+            if (location == null) {
+                buffer.append(LocationInfo.NA);
+                return;
+            }
+            switch (conversion) {
+                case 'C':
+                    appendName(buffer, location.getClassName(), precision);
+                    break;
+                case 'F':
+                    buffer.append(location.getFileName());
+                    break;
+                case 'l':
+                    buffer.append(location.fullInfo);
+                    break;
+                case 'L':
+                    buffer.append(location.getLineNumber());
+                    break;
+                default:
+                    buffer.append(location.getMethodName());
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Renders the timestamp. The names ISO8601, ABSOLUTE and DATE of log4j are
+     * understood, any other option is a {@link SimpleDateFormat} pattern.
+     * <p>
+     * The date formatter runs at most once per second. If the pattern shows
+     * milliseconds as {@code SSS}, the text before and after them is cached for
+     * the current second and only the three digits are rendered per event.
+     * Without milliseconds the whole text is cached for the second. Any other
+     * use of milliseconds is cached per millisecond.
+     */
+    private static final class DateConverter extends Converter
+    {
+        /**
+         * The text of one second or millisecond. Instances are immutable, so
+         * they can be read without a lock.
+         */
+        private static final class CachedDate
+        {
+            final long from;
+            final long until;
+            final String prefix;
+            final String suffix;
+
+            CachedDate(long from, long until, String prefix, String suffix) {
+                this.from = from;
+                this.until = until;
+                this.prefix = prefix;
+                this.suffix = suffix;
+            }
+        }
+
+        private final SimpleDateFormat prefixFormat;
+        private final SimpleDateFormat suffixFormat;
+        private final boolean millisSplit;
+        private final boolean perSecond;
+        private final Date date = new Date(0L);
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile CachedDate cached = new CachedDate(0L, 0L, "", "");
+
+        DateConverter(String option) {
+            String datePattern;
+            if (option == null || option.equals("ISO8601"))
+                datePattern = "yyyy-MM-dd HH:mm:ss,SSS";
+            else if (option.equals("ABSOLUTE"))
+                datePattern = "HH:mm:ss,SSS";
+            else if (option.equals("DATE"))
+                datePattern = "dd MMM yyyy HH:mm:ss,SSS";
+            else
+                datePattern = option;
+            try {
+                new SimpleDateFormat(datePattern);
+            } catch (IllegalArgumentException e) {
+                datePattern = "yyyy-MM-dd HH:mm:ss,SSS";
+            }
+            int millis = millisPosition(datePattern);
+            this.millisSplit = millis >= 0;
+            this.perSecond = millisSplit || datePattern.indexOf('S') < 0;
+            if (millisSplit) {
+                this.prefixFormat = formatOrNull(datePattern.substring(0, millis));
+                this.suffixFormat = formatOrNull(datePattern.substring(millis + 3));
+            } else {
+                this.prefixFormat = new SimpleDateFormat(datePattern);
+                this.suffixFormat = null;
+            }
+        }
+
+        /*
+            The position of the only SSS of the pattern outside quotes, or -1 if
+            milliseconds are not shown exactly that way.
+        */
+        private static int millisPosition(String datePattern) {
+            int position = datePattern.indexOf("SSS");
+            if (position < 0 || datePattern.indexOf('S', position + 3) >= 0
+                    || datePattern.indexOf('S') != position)
+                return -1;
+            int quotes = 0;
+            for (int i = 0; i < position; i++)
+                if (datePattern.charAt(i) == '\'')
+                    quotes++;
+            return quotes % 2 == 0 ? position : -1;
+        }
+
+        private static SimpleDateFormat formatOrNull(String datePattern) {
+            return datePattern.isEmpty() ? null : new SimpleDateFormat(datePattern);
+        }
+
+        @Override
+        void append(StringBuilder buffer, LogEvent event) {
+            long timestamp = event.timestamp;
+            CachedDate current = cached;
+            if (timestamp < current.from || timestamp >= current.until)
+                current = refresh(timestamp);
+            buffer.append(current.prefix);
+            if (millisSplit) {
+                int millis = (int) (timestamp - current.from);
+                if (millis < 100)
+                    buffer.append('0');
+                if (millis < 10)
+                    buffer.append('0');
+                buffer.append(millis).append(current.suffix);
+            }
+        }
+
+        private CachedDate refresh(long timestamp) {
+            long from = perSecond ? timestamp - Math.floorMod(timestamp, 1000L) : timestamp;
+            long until = perSecond ? from + 1000L : from + 1L;
+            lock.lock();
+            try {
+                CachedDate current = cached;
+                if (current.from == from && current.until == until)
+                    return current;
+                date.setTime(from);
+                String prefix = prefixFormat == null ? "" : prefixFormat.format(date);
+                String suffix = suffixFormat == null ? "" : suffixFormat.format(date);
+                current = new CachedDate(from, until, prefix, suffix);
+                cached = current;
+                return current;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches a properties file with a {@link WatchService} and hands its content
+ * to the logger whenever the file is written, created or replaced, e.g. by an
+ * editor saving a copy and renaming it. The directory of the file is watched
+ * on a daemon thread.
+ * <p>
+ * An editor may write a file in several steps, so the file is read only once
+ * no further change arrived for {@value #SETTLE_MILLIS} milliseconds. A file
+ * which can not be read is reported and the configuration in use is kept.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class ConfigWatcher
+{
+    private static final long SETTLE_MILLIS = 100L;
+
+    private final Path file;
+    private final Consumer<Properties> reload;
+    private final WatchService watchService;
+    private final Thread watcher;
+
+    /**
+     * @param file the properties file
+     * @param reload receives the content of the file after every change
+     * @throws IOException if the directory of the file can not be watched
+     * @since 1.1
+     */
+    ConfigWatcher(Path file, Consumer<Properties> reload) throws IOException {
+        this.file = file.toAbsolutePath().normalize();
+        this.reload = reload;
+        this.watchService = this.file.getFileSystem().newWatchService();
+        try {
+            this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | RuntimeException e) {
+            watchService.close();
+            throw e;
+        }
+        this.watcher = new Thread(this::run, "HasselFreeLogger-ConfigWatcher");
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+    }
+
+    /**
+     * @return the content of the properties file
+     * @throws IOException if the file can not be read
+     * @since 1.1
+     */
+    static Properties load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = concernsFile(key);
+                /*
+                    Collects the changes following within the settle time.
+                */
+                while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null)
+                    changed |= concernsFile(key);
+                if (changed)
+                    reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            /*
+                Closed by close().
+            */
+        }
+    }
+
+    private boolean concernsFile(WatchKey key) {
+        boolean concerned = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || context instanceof Path && file.getFileName().equals(context))
+                concerned = true;
+        }
+        key.reset();
+        return concerned;
+    }
+
+    private void reload() {
+        if (!Files.exists(file))
+            return;
+        try {
+            reload.accept(load(file));
+        } catch (IOException | RuntimeException e) {
+            java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(
+                    java.util.logging.Level.SEVERE, "Unable To Reload Configuration FILE " + file, e);
+        }
+    }
+
+    /**
+     * Stops watching the file.
+     * @since 1.1
+     */
+    void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            /*
+                Nothing is watched any more anyway.
+            */
+        }
+        if (Thread.currentThread() != watcher) {
+            try {
+                watcher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
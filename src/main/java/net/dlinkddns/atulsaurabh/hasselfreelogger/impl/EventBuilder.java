@@ -0,0 +1,123 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import net.dlinkddns.atulsaurabh.hasselfreelogger.api.LogEventBuilder;
+import org.apache.log4j.Level;
+
+/**
+ * The pooled {@link LogEventBuilder} of {@link HasselFreeLogger}. Every
+ * thread reuses one builder, together with its {@link KeyValues}, for all
+ * its structured events. A builder started while the one of the thread is
+ * still in use, e.g. by a value logging while it is rendered, is created for
+ * that event only.
+ * <p>
+ * {@link #DISABLED} is returned for a level which is not recorded. It has no
+ * logger and ignores every call, so it can be shared by all threads.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class EventBuilder implements LogEventBuilder
+{
+    static final EventBuilder DISABLED = new EventBuilder(null);
+
+    private final HasselFreeLogger logger;
+    private final KeyValues keyValues = new KeyValues();
+    private Class category;
+    private Level level;
+    private Throwable throwable;
+    private boolean inUse;
+
+    EventBuilder(HasselFreeLogger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * @return this builder prepared for a new event or {@code null} if it is
+     *         still in use
+     * @since 1.1
+     */
+    EventBuilder start(Class category, Level level) {
+        if (inUse)
+            return null;
+        inUse = true;
+        this.category = category;
+        this.level = level;
+        return this;
+    }
+
+    @Override
+    public LogEventBuilder with(String key, Object value) {
+        if (logger != null)
+            keyValues.add(key, value);
+        return this;
+    }
+
+    @Override
+    public LogEventBuilder with(String key, long value) {
+        if (logger != null)
+            keyValues.add(key, value);
+        return this;
+    }
+
+    @Override
+    public LogEventBuilder with(String key, double value) {
+        if (logger != null)
+            keyValues.add(key, value);
+        return this;
+    }
+
+    @Override
+    public LogEventBuilder with(String key, boolean value) {
+        if (logger != null)
+            keyValues.add(key, value);
+        return this;
+    }
+
+    @Override
+    public LogEventBuilder withThrowable(Throwable throwable) {
+        if (logger != null)
+            this.throwable = throwable;
+        return this;
+    }
+
+    @Override
+    public void log(String message) {
+        log(message, 0, null, null, null);
+    }
+
+    @Override
+    public void log(String pattern, Object argument) {
+        log(pattern, 1, argument, null, null);
+    }
+
+    @Override
+    public void log(String pattern, Object first, Object second) {
+        log(pattern, 2, first, second, null);
+    }
+
+    @Override
+    public void log(String pattern, Object... arguments) {
+        log(pattern, arguments == null ? 0 : arguments.length, null, null, arguments);
+    }
+
+    private void log(String message, int argumentCount, Object argument0, Object argument1,
+            Object[] arguments) {
+        if (logger == null)
+            return;
+        try {
+            logger.record(category, level, message, argumentCount, argument0, argument1, arguments,
+                    null, throwable, keyValues.size() == 0 ? null : keyValues);
+        } finally {
+            keyValues.clear();
+            category = null;
+            level = null;
+            throwable = null;
+            inUse = false;
+        }
+    }
+}
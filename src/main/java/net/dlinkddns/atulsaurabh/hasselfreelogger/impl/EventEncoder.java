@@ -0,0 +1,38 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes events into the bytes written into a log file.
+ * <p>
+ * An encoder is not thread safe. Every sink owns its encoder and uses it under
+ * its own lock.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+interface EventEncoder
+{
+    /**
+     * Renders and encodes an event. The returned buffer is owned by the
+     * encoder and is valid until the next call.
+     *
+     * @param event the event to encode
+     * @return the encoded bytes, ready to be read
+     * @since 1.1
+     */
+    ByteBuffer encode(LogEvent event);
+
+    /**
+     * Called whenever the sink opened a new file, so that an encoder keeping
+     * state per file can start over.
+     * @since 1.1
+     */
+    default void fileOpened() {
+    }
+}
@@ -0,0 +1,397 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Base of the sinks writing the events of one log file. Every event is encoded
+ * by the {@link EventEncoder} of the {@link LogFormat} of the file into its
+ * reusable buffer, which is handed to {@link #writeBytes(ByteBuffer)} of the
+ * concrete sink. A text event written into several files is encoded once by
+ * its {@link SinkRoute} and the encoded bytes are handed to every sink.
+ * <p>
+ * Like {@link org.apache.log4j.DailyRollingFileAppender}, the file is renamed
+ * by appending the date of its period when the period described by the date
+ * pattern is over. The period is checked once a minute. With a maximum size in
+ * the {@link RollingPolicy} the file is also renamed, with an index behind the
+ * period, before an event would make it larger. A roll only closes, renames
+ * and reopens the file; compression and retention are left to the
+ * {@link RollingArchiver}.
+ * <p>
+ * A text or JSON file can keep a {@link TimeIndex} next to it, which maps the
+ * time of the events to their offsets in the file and is rolled with it.
+ * <p>
+ * All the methods of the concrete sink are called while holding the lock of
+ * the sink.
+ * <p>
+ * A sink closed while the logger is reconfigured refuses the events still
+ * on their way to it, so the callers can hand them to the sinks of the new
+ * configuration instead of losing them.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+abstract class FileSink implements Closeable
+{
+    private static final long CHECK_INTERVAL = 60_000L;
+
+    protected final Path file;
+    private final CompiledPattern pattern;
+    private final LogFormat format;
+    private final ThrowableRenderer throwables;
+    private EventEncoder encoder;
+    private final SimpleDateFormat periodFormat;
+    private final RollingPolicy rollingPolicy;
+    private final Date date = new Date(0L);
+    protected final ReentrantLock lock = new ReentrantLock();
+
+    private String period;
+    private long nextCheck;
+    private long size;
+    private int index = 1;
+    private boolean failureReported;
+    private boolean closed;
+
+    private LoggerMetrics metrics;
+    private LongAdder bytesWritten;
+    private TimeIndex timeIndex;
+
+    /**
+     * @param file the full name of the log file
+     * @param pattern the pattern used to render the events
+     * @param format the format of the file
+     * @param throwables renders the stack traces
+     * @param datePattern the pattern deciding the period of the file
+     * @param rollingPolicy decides when else the file is rolled and what
+     *                      happens to the rolled files
+     * @since 1.1
+     */
+    FileSink(String file, CompiledPattern pattern, LogFormat format, ThrowableRenderer throwables,
+            String datePattern, RollingPolicy rollingPolicy) {
+        this.file = Paths.get(file);
+        this.pattern = pattern;
+        this.format = format;
+        this.throwables = throwables;
+        this.periodFormat = new SimpleDateFormat("'.'" + datePattern);
+        this.rollingPolicy = rollingPolicy;
+    }
+
+    /**
+     * Opens the file for the first time. It is called by the constructor of
+     * the concrete sink once its own fields are set.
+     *
+     * @throws IOException if the file can not be opened
+     * @since 1.1
+     */
+    protected final void start() throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null)
+            Files.createDirectories(directory);
+        long now = System.currentTimeMillis();
+        this.period = format(Files.exists(file) && Files.size(file) > 0
+                ? Files.getLastModifiedTime(file).toMillis() : now);
+        this.nextCheck = now - now % CHECK_INTERVAL + CHECK_INTERVAL;
+        openFile();
+        size = fileLength();
+    }
+
+    private String format(long timestamp) {
+        date.setTime(timestamp);
+        return periodFormat.format(date);
+    }
+
+    /**
+     * Encodes and writes one event.
+     *
+     * @return {@code false} if the sink is closed and the event was not
+     *         written
+     * @since 1.1
+     */
+    final boolean append(LogEvent event) {
+        lock.lock();
+        try {
+            if (closed)
+                return false;
+            if (encoder == null)
+                encoder = newEncoder();
+            ByteBuffer bytes = encoder.encode(event);
+            if (rollIfDue(event.timestamp, bytes.remaining()) && !format.isShareable())
+                bytes = encoder.encode(event);
+            write(bytes, event);
+        } catch (IOException e) {
+            reportFailure(e);
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * @return a new encoder of the format of this sink
+     * @since 1.1
+     */
+    final EventEncoder newEncoder() {
+        return format.newEncoder(pattern, throwables);
+    }
+
+    /**
+     * @return true if the bytes encoded for this sink can be copied into
+     *         another sink of the same format
+     * @since 1.1
+     */
+    final boolean isShareable() {
+        return format.isShareable();
+    }
+
+    /**
+     * Writes an event already encoded by the caller. All the remaining bytes
+     * of the buffer are consumed.
+     *
+     * @param bytes the encoded event
+     * @param event the event, which decides about rolling and flushing
+     * @return {@code false} if the sink is closed and the bytes were not
+     *         written
+     * @since 1.1
+     */
+    final boolean append(ByteBuffer bytes, LogEvent event) {
+        lock.lock();
+        try {
+            if (closed)
+                return false;
+            rollIfDue(event.timestamp, bytes.remaining());
+            write(bytes, event);
+        } catch (IOException e) {
+            reportFailure(e);
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Counts the bytes and measures the writes of this sink. It is called
+     * before the sink is shared.
+     * @since 1.1
+     */
+    void setMetrics(LoggerMetrics metrics) {
+        this.metrics = metrics;
+        this.bytesWritten = metrics.bytesOf(file.toString());
+    }
+
+    /**
+     * Keeps a {@link TimeIndex} of the file with one entry per block of
+     * events. A binary file can only be decoded from its start, so it is not
+     * indexed. It is called before the sink is shared.
+     *
+     * @param blockEvents events per block, 0 for no limit
+     * @param blockBytes bytes per block, 0 for no limit
+     * @since 1.1
+     */
+    void setIndex(long blockEvents, long blockBytes) {
+        if (format != LogFormat.BINARY && (blockEvents > 0 || blockBytes > 0))
+            this.timeIndex = new TimeIndex(file, blockEvents, blockBytes);
+    }
+
+    /*
+        Rolls the file if the period is over or the event would make it too
+        large. An encoder keeping state per file has to encode the event again
+        if the file was rolled.
+    */
+    private boolean rollIfDue(long timestamp, int length) throws IOException {
+        if (rollOver(timestamp))
+            return true;
+        if (rollingPolicy.isSizeBased() && size > 0 && size + length > rollingPolicy.getMaxSize()) {
+            roll(period);
+            return true;
+        }
+        return false;
+    }
+
+    private void write(ByteBuffer bytes, LogEvent event) throws IOException {
+        long start = metrics != null && metrics.isTimed() ? System.nanoTime() : 0L;
+        int length = bytes.remaining();
+        writeBytes(bytes);
+        if (timeIndex != null)
+            timeIndex.eventWritten(size, length, event.timestamp);
+        size += length;
+        eventWritten(event);
+        if (metrics != null) {
+            bytesWritten.add(length);
+            if (start != 0L)
+                metrics.write.record(System.nanoTime() - start);
+        }
+    }
+
+    private boolean rollOver(long timestamp) throws IOException {
+        if (timestamp < nextCheck)
+            return false;
+        nextCheck = timestamp - timestamp % CHECK_INTERVAL + CHECK_INTERVAL;
+        String current = format(timestamp);
+        if (current.equals(period))
+            return false;
+        roll(current);
+        return true;
+    }
+
+    /*
+        Renames the file of the current period and opens a new one for the
+        given period, which is the current one if the file is rolled by size.
+    */
+    private void roll(String next) throws IOException {
+        long start = metrics != null ? System.nanoTime() : 0L;
+        closeRolledFile();
+        Path target;
+        if (rollingPolicy.isSizeBased()) {
+            target = indexed();
+            index = next.equals(period) ? index + 1 : 1;
+        } else {
+            target = file.resolveSibling(file.getFileName() + period);
+        }
+        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+        if (timeIndex != null)
+            timeIndex.rolled(target);
+        period = next;
+        openFile();
+        size = fileLength();
+        if (encoder != null)
+            encoder.fileOpened();
+        if (metrics != null)
+            metrics.roll.record(System.nanoTime() - start);
+        if (rollingPolicy.isArchiving())
+            RollingArchiver.archive(target, file, rollingPolicy);
+    }
+
+    /*
+        Skips the indexes already used in this period, e.g. before a restart.
+    */
+    private Path indexed() {
+        String prefix = file.getFileName() + period + ".";
+        while (true) {
+            Path target = file.resolveSibling(prefix + index);
+            if (!Files.exists(target) && !Files.exists(target.resolveSibling(target.getFileName() + ".gz")))
+                return target;
+            index++;
+        }
+    }
+
+    /**
+     * Hands every event collected by the sink to the operating system.
+     * @since 1.1
+     */
+    final void flush() {
+        lock.lock();
+        try {
+            if (!closed)
+                flushBuffers();
+        } catch (IOException e) {
+            reportFailure(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces the written events to the disk. Sinks writing through the
+     * operating system on every flush have nothing to do.
+     * @since 1.1
+     */
+    void force() {
+    }
+
+    protected final void reportFailure(IOException e) {
+        if (failureReported)
+            return;
+        failureReported = true;
+        java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(
+                java.util.logging.Level.SEVERE, "Unable To Write LOG FILE " + file, e);
+    }
+
+    /**
+     * Opens {@link #file} for appending.
+     * @since 1.1
+     */
+    protected abstract void openFile() throws IOException;
+
+    /**
+     * @return the number of bytes written into the open file so far
+     * @since 1.1
+     */
+    protected long fileLength() throws IOException {
+        return Files.size(file);
+    }
+
+    /**
+     * Writes all the remaining bytes of the buffer.
+     * @since 1.1
+     */
+    protected abstract void writeBytes(ByteBuffer bytes) throws IOException;
+
+    /**
+     * Called after the bytes of an event were handed to
+     * {@link #writeBytes(ByteBuffer)}. A sink collecting events decides here
+     * whether to flush them.
+     * @since 1.1
+     */
+    protected void eventWritten(LogEvent event) throws IOException {
+    }
+
+    /**
+     * Writes the events collected by the sink. Sinks which do not collect
+     * events have nothing to do.
+     * @since 1.1
+     */
+    protected void flushBuffers() throws IOException {
+    }
+
+    /**
+     * Closes {@link #file} so that it can be renamed. Collected events have to
+     * be written first.
+     * @since 1.1
+     */
+    protected abstract void closeFile() throws IOException;
+
+    /**
+     * Closes {@link #file} before it is rolled. A sink may leave the slow
+     * part of closing the file to the {@link RollingArchiver}, which handles
+     * the rolled file only afterwards.
+     * @since 1.1
+     */
+    protected void closeRolledFile() throws IOException {
+        closeFile();
+    }
+
+    /**
+     * Closes the file. Events appended afterwards are refused.
+     * @since 1.1
+     */
+    @Override
+    public final void close() {
+        lock.lock();
+        try {
+            if (closed)
+                return;
+            closed = true;
+            if (timeIndex != null)
+                timeIndex.close();
+            closeFile();
+        } catch (IOException e) {
+            reportFailure(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.apache.log4j.Level;
+
+/**
+ * Keeps the latest debug and info events below the threshold of every thread
+ * in memory, so that they can be written as the context of an error. The
+ * events are kept as they were logged: the message pattern, the arguments
+ * and the supplier are only referred to, nothing is formatted and nothing is
+ * written while the thread logs without an error.
+ * <p>
+ * Every thread has a ring of its own holding its last events, so recording
+ * an event takes no lock and no compare and set, it only overwrites the
+ * oldest slot. A slot is allocated on its first use and reused afterwards.
+ * When the thread logs an error or fatal event, {@link #dump(Consumer)} hands
+ * the events of the ring to the logger, oldest first, and empties it.
+ * <p>
+ * The ring keeps the arguments of the events reachable until they are
+ * overwritten or dumped, and an argument changed meanwhile is rendered with
+ * its current state. The caller location is not captured for the events
+ * kept in memory.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class FlightRecorder
+{
+    private final int size;
+
+    private static final class Ring
+    {
+        final LogEvent[] events;
+        long next;
+        boolean dumping;
+
+        Ring(int size) {
+            this.events = new LogEvent[size];
+        }
+    }
+
+    private final ThreadLocal<Ring> rings;
+
+    /**
+     * @param size number of events kept per thread
+     * @since 1.1
+     */
+    FlightRecorder(int size) {
+        this.size = Math.max(1, size);
+        this.rings = ThreadLocal.withInitial(() -> new Ring(this.size));
+    }
+
+    /**
+     * @return true if events of {@code level} are kept while they are below
+     *         the threshold
+     * @since 1.1
+     */
+    static boolean isRecorded(Level level) {
+        return level == Level.DEBUG || level == Level.INFO;
+    }
+
+    /**
+     * Keeps an event of the calling thread, overwriting its oldest one if the
+     * ring is full. The key value pairs are copied, the rest is referred to.
+     * The NDC and MDC are kept if {@code context} is true.
+     * @since 1.1
+     */
+    void record(Class category, Level level, String message, int argumentCount,
+            Object argument0, Object argument1, Object[] arguments, Supplier<String> supplier,
+            Throwable throwable, KeyValues keyValues, boolean context) {
+        Ring ring = rings.get();
+        /*
+            An argument logging while the ring is dumped.
+        */
+        if (ring.dumping)
+            return;
+        int slot = (int) (ring.next++ % size);
+        LogEvent event = ring.events[slot];
+        if (event == null)
+            event = ring.events[slot] = new LogEvent();
+        event.set(category, level, System.currentTimeMillis(), Thread.currentThread().getName(), message,
+                argumentCount, argument0, argument1, arguments, supplier, throwable, null);
+        event.copyKeyValues(keyValues);
+        if (context)
+            event.captureContext();
+    }
+
+    /**
+     * Hands the events kept for the calling thread to {@code out}, oldest
+     * first, and forgets them.
+     * @since 1.1
+     */
+    void dump(Consumer<LogEvent> out) {
+        Ring ring = rings.get();
+        if (ring.next == 0L || ring.dumping)
+            return;
+        ring.dumping = true;
+        try {
+            for (long i = Math.max(0L, ring.next - size); i < ring.next; i++)
+                out.accept(ring.events[(int) (i % size)]);
+        } finally {
+            for (LogEvent event : ring.events)
+                if (event != null)
+                    event.clear();
+            ring.next = 0L;
+            ring.dumping = false;
+        }
+    }
+}
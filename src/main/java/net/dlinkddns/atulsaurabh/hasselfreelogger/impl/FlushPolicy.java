@@ -0,0 +1,93 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+/**
+ * Decides when the events collected by a {@link ChannelFileSink} are written
+ * to its file. It is configured with the key <b><i>log.flush</i></b>, whose
+ * value is {@code every-event}, {@code batch}, {@code interval:Nms} or
+ * {@code interval:Ns}.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+enum FlushPolicy
+{
+    /**
+     * Every event is written by its own system call. This is the default.
+     */
+    EVERY_EVENT,
+
+    /**
+     * Events are collected until <b><i>log.flush.batchsize</i></b> bytes are
+     * pending or the oldest of them waited <b><i>log.flush.maxdelay</i></b>
+     * milliseconds.
+     */
+    BATCH,
+
+    /**
+     * Events are collected and written every N milliseconds, or earlier if the
+     * batch buffer is full.
+     */
+    INTERVAL;
+
+    /**
+     * An unknown value is reported and written event by event.
+     *
+     * @param value the configured value, may be {@code null}
+     * @return the matching policy or {@link #EVERY_EVENT} if nothing matches
+     */
+    static FlushPolicy of(String value) {
+        if (value == null || value.trim().isEmpty())
+            return EVERY_EVENT;
+        String normalized = value.trim().toLowerCase().replace('_', '-');
+        if (normalized.equals("every-event"))
+            return EVERY_EVENT;
+        if (normalized.equals("batch"))
+            return BATCH;
+        if (normalized.equals("interval") || normalized.startsWith("interval:"))
+            return INTERVAL;
+        java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(java.util.logging.Level.SEVERE,
+                "Unknown log.flush Value " + value + ", Every Event Is Written At Once");
+        return EVERY_EVENT;
+    }
+
+    /**
+     * Reads the interval in milliseconds ({@code ms}, the default unit) or
+     * seconds ({@code s}). An invalid interval is reported and replaced by the
+     * default.
+     *
+     * @param value the configured value, e.g. {@code interval:250ms} or
+     *              {@code interval:5s}
+     * @param defaultInterval returned if the value has no valid interval
+     * @return the interval in milliseconds
+     */
+    static long intervalOf(String value, long defaultInterval) {
+        if (value == null)
+            return defaultInterval;
+        int colon = value.indexOf(':');
+        if (colon < 0)
+            return defaultInterval;
+        String interval = value.substring(colon + 1).trim().toLowerCase();
+        long unit = 1L;
+        if (interval.endsWith("ms")) {
+            interval = interval.substring(0, interval.length() - 2).trim();
+        } else if (interval.endsWith("s")) {
+            interval = interval.substring(0, interval.length() - 1).trim();
+            unit = 1000L;
+        }
+        try {
+            long parsed = Long.parseLong(interval);
+            if (parsed > 0L && parsed <= Long.MAX_VALUE / unit)
+                return parsed * unit;
+        } catch (NumberFormatException e) {
+            /* reported below */
+        }
+        java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(java.util.logging.Level.SEVERE,
+                "Invalid log.flush Interval " + value + ", " + defaultInterval + "ms Are Used");
+        return defaultInterval;
+    }
+}
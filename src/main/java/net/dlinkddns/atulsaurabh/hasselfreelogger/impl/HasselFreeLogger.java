@@ -5,16 +5,29 @@
  */
 package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
 
-import java.net.URI;
-import java.net.URISyntaxException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Properties;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import net.dlinkddns.atulsaurabh.hasselfreelogger.api.LogEventBuilder;
 import net.dlinkddns.atulsaurabh.hasselfreelogger.api.Logger;
+import net.dlinkddns.atulsaurabh.hasselfreelogger.api.LoggerStats;
+import org.apache.log4j.Appender;
 import org.apache.log4j.ConsoleAppender;
-import org.apache.log4j.DailyRollingFileAppender;
 import org.apache.log4j.Level;
+import org.apache.log4j.MDC;
+import org.apache.log4j.NDC;
 import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.LocationInfo;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.ThrowableInformation;
 
 
 
@@ -37,8 +50,8 @@ import org.apache.log4j.PatternLayout;
  * <p>
  * Purpose of this class is to provide a hassle free logging technique. 
  * The implementation supports rolling based logging as well as non rolling
- * based logging mechanism. The rolling option can be activated by setting 
- * {@link #rollingOn} field.
+ * based logging mechanism. The rolling option can be activated by
+ * {@link #setRollingOn(boolean)} or the key <b><i>log.rolling</i></b>.
  * 
  *<p>
  * Using this class following level of log can be recorded
@@ -63,9 +76,81 @@ import org.apache.log4j.PatternLayout;
  *     <li> log.warn        : To log {@link org.apache.log4j.Level#WARN}
  *     <li> log.datepattern : To configure the pattern of date of logging
  *     <li> log.rolling     : To set the rolling on or off
+ *     <li> log.async       : To record the log on a background writer thread
+ *     <li> log.threshold   : Lowest level which is recorded, e.g. INFO
+ *     <li> log.appender    : How the files are written, log4j (default), channel or mmap
+ *     <li> log.mmap.regionsize    : Size of one mapped region of a file, e.g. 64MB (32MB by default)
+ *     <li> log.mmap.forceinterval : Milliseconds between two forces of a mapped region to the
+ *                                   disk, 1000 by default, 0 to leave it to the operating system
+ *     <li> log.flush              : When the channel appender writes, every-event (default),
+ *                                   batch, interval:Nms or interval:Ns; an unknown
+ *                                   value is reported and writes every event
+ *     <li> log.flush.batchsize    : Bytes collected before they are written, 64KB by default
+ *     <li> log.flush.maxdelay     : Milliseconds an event may wait in a batch, 1000 by default
+ *     <li> log.flush.onerror      : Write error and fatal events at once, true by default
+ *     <li> log.conversionpattern : The pattern used to record the message
+ *     <li> log.format             : text (default), json or binary
+ *     <li> log.throwable.window   : Milliseconds during which a repeated stack trace is written
+ *                                   as a reference to the first one, 0 (default) to write all
+ *     <li> log.throwable.maxdepth : Frames written per exception, all by default
+ *     <li> log.throwable.maxcauses: Causes written per exception, all by default
  * </ul>
+ * The channel and mmap appenders can additionally roll a file by its size and
+ * archive the rolled files in the background:
+ * <ul>
+ *     <li> log.rolling.maxSize      : Size after which a file is rolled, e.g. 256MB. The
+ *                                     rolled files get an index behind the date
+ *     <li> log.rolling.compress     : gzip to compress the rolled files
+ *     <li> log.rolling.maxFiles     : Number of rolled files kept for every level file
+ *     <li> log.rolling.maxTotalSize : Size all the rolled files of a level file may use
+ *     <li> log.index                : Keep a time index next to every text or json file,
+ *                                     true by default
+ *     <li> log.index.events         : Events per entry of the index, 1024 by default
+ *     <li> log.index.bytes          : Bytes per entry of the index, 64KB by default
+ * </ul>
+ * The index of a file, e.g. {@code error.log.idx}, is rolled with the file and
+ * maps the time of the events to their offsets. {@link LogQuery} uses it to
+ * read the events of a time range without reading the files from the start.
+ * <p>
+ * An event is recorded into the file of its level and into the file of
+ * {@link org.apache.log4j.Level#ALL}, which so holds every event. The files of
+ * a level can be replaced by the key <b><i>log.route.&lt;level&gt;</i></b>, a
+ * comma separated list of files, e.g. {@code log.route.debug=debug.log}.
+ * An event recorded into several files by the channel or mmap appender is
+ * formatted only once.
+ * <p>
+ * With <b><i>log.format</i></b>=binary the events are not formatted at all.
+ * Every file holds compact records of the timestamp, the level, the ids of
+ * the category and the message pattern and the raw arguments, and every
+ * string is written only once per file. {@link BinaryLogDecoder} renders the
+ * files with the conversion pattern. The binary files are written by the
+ * channel or mmap appender, the channel appender replacing log4j.
+ * <p>
+ * With <b><i>log.format</i></b>=json every file holds one JSON object per
+ * event and line, so the files can be read by log pipelines without parsing
+ * the text of the conversion pattern. Structured events are built by
+ * {@link #atInfo(Class)} and the other {@code at} methods; their key value
+ * pairs become fields of the JSON object and are appended to the message as
+ * {@code key=value} in the text format.
+ * <p>
  * Along with the files, the director for log repository can also be configured
  * by setting the key <b><i>log.directory</i></b> in {@link Properties} file.
+ * An absolute directory is used as it is. A relative one is resolved against
+ * <b><i>log.directory.base</i></b> or the system property
+ * {@code hasselfreelogger.log.base} if set, otherwise against the class path
+ * root or, inside a jar, the working directory. The system property
+ * {@code hasselfreelogger.log.directory} overrides the key. The directory is
+ * created if it is missing.
+ * <p>
+ * A key which is missing takes its default value. The configuration can be
+ * replaced while the logger is used, by
+ * {@link #setConfiguration(java.util.Properties)} or by
+ * {@link #watchConfiguration(java.lang.String)}, which reloads a properties
+ * file whenever it changes. Only what the changed keys affect is rebuilt: a
+ * new threshold or rate limit opens no file, a new file of a level leaves the
+ * other files open and the writer threads are only restarted if their own
+ * settings or the settings of the files change. No log call waits for a
+ * reconfiguration and no event is lost by it.
  * <h3>Features</h3>
  * <p>
  * The rolling based logging mechanism provides a way to log the message on the 
@@ -73,7 +158,100 @@ import org.apache.log4j.PatternLayout;
  * The format can be decided using {@link #setDatePattern(java.lang.String)} method. 
  * <p>
  * The format of content is also configurable. This format can be modified using
- * {@link #setConversionPattern(java.lang.String)} method.
+ * {@link #setConversionPattern(java.lang.String)} method. The caller location
+ * printed by %C, %F, %l, %L and %M is found only if the pattern contains one
+ * of them. It is found by walking the stack up to the caller and its line and
+ * file are resolved once per call site and cached.
+ * <p>
+ * The stack traces are rendered once per place they are thrown from and
+ * message and cached. With <b><i>log.throwable.window</i></b> the same
+ * exception logged again within the window is written as a single line like
+ * {@code java.io.IOException: reset (same as #12, x500)}, so an error storm
+ * does not flood the disk with identical traces.
+ * <p>
+ * A class logging in a tight loop can be limited by the key
+ * <b><i>log.ratelimit.&lt;class&gt;</i></b>, a number of events per second,
+ * minute or hour, e.g. {@code log.ratelimit.com.shop.Cart=1000/s}. A limit
+ * of one level is set by appending the level to the key, e.g.
+ * {@code log.ratelimit.com.shop.Cart.warn=50/s}, and
+ * {@code log.ratelimit.*} limits every class without a limit of its own.
+ * Every class and level has a token bucket holding the events of one second.
+ * The events beyond the limit are counted and reported as one warning line
+ * every <b><i>log.ratelimit.summaryinterval</i></b> milliseconds, 60000 by
+ * default. Checking a limit takes no lock and allocates nothing.
+ * <p>
+ * With <b><i>log.flightrecorder</i></b>=true the debug and info events below
+ * the threshold are not dropped but kept in memory, unformatted, the last
+ * <b><i>log.flightrecorder.size</i></b> events of every thread, 256 by
+ * default. When a thread logs an error or fatal event, its kept events are
+ * written into the files of the debug level, {@code debug.log} and
+ * {@code all.log} by default, right before the error. So with
+ * {@code log.threshold=WARN} the debug context of every error is at hand
+ * while debug events cost no I/O otherwise.
+ * <p>
+ * With <b><i>log.network</i></b>=host:port every recorded event is also
+ * shipped to a log collector, besides the files. A log call only encodes the
+ * event and appends it to a spool file mapped into memory; a background
+ * thread sends the spooled events in batches through a non blocking channel
+ * and connects again after a growing delay while the collector is down. The
+ * events logged meanwhile wait in the spool, also across a restart, so a log
+ * call never waits for the network. The network sink is tuned by the
+ * following keys:
+ * <ul>
+ *     <li> log.network.protocol    : tcp (default) or udp
+ *     <li> log.network.format      : syslog (default), RFC 5424 messages framed by their
+ *                                    length over TCP, or json, one JSON object per line
+ *     <li> log.network.facility    : The syslog facility, 1 (user) by default
+ *     <li> log.network.appname     : The syslog application name, HasselFreeLogger by default
+ *     <li> log.network.threshold   : Lowest level shipped, all recorded events by default
+ *     <li> log.network.spool       : The spool file in the log directory, network.spool by default
+ *     <li> log.network.spoolsize   : Bytes the spool holds, 64MB by default. An event logged
+ *                                    while it is full is dropped and counted
+ *     <li> log.network.batchsize   : Bytes sent at once over TCP, 64KB by default
+ *     <li> log.network.backoff     : Milliseconds before the first new connection attempt,
+ *                                    100 by default, doubled with every failure
+ *     <li> log.network.backoff.max : The longest delay between two attempts, 30000 by default
+ * </ul>
+ * <p>
+ * If <b><i>log.async</i></b> is true, a log call only publishes the event into a
+ * bounded ring buffer and returns. A single writer thread records the events
+ * into the files. The asynchronous mode is tuned by the following keys:
+ * <ul>
+ *     <li> log.async.buffersize    : Number of events the buffer can hold, 8192 by default
+ *     <li> log.async.waitstrategy  : What the writer does while the buffer is empty, one of
+ *                                    blocking, sleeping (default), yielding or busy-spin
+ *     <li> log.async.overflow      : What a log call does while the buffer is full, one of
+ *                                    block (default), drop-oldest or drop-below-level
+ *     <li> log.async.discardlevel  : Highest level dropped by drop-below-level, INFO by default
+ * </ul>
+ * The events still waiting in the buffer are recorded on {@link #shutdown()},
+ * on reconfiguration and when the JVM exits.
+ * <p>
+ * The logger counts the recorded events by level and the bytes written by
+ * file and measures how long handing an event to a writer thread, writing it
+ * and rolling a file take. The metrics are returned by {@link #getStats()} and
+ * published through JMX as {@link HasselFreeLoggerMXBean} if
+ * <b><i>log.metrics.jmx</i></b>=true. The bean is named by
+ * <b><i>log.metrics.jmx.name</i></b>, e.g. the name of the application, or
+ * numbered if no name is configured. The key
+ * <b><i>log.metrics.latency</i></b>=false stops measuring the latencies.
+ * <p>
+ * Virtual threads: with rolling on and the channel or mmap appender no log
+ * call holds a monitor while it waits for a lock or for the disk, so a virtual
+ * thread is never pinned to its carrier. These paths only use
+ * {@link java.util.concurrent.locks.ReentrantLock} and lock free hand offs.
+ * The log4j appenders synchronize on every event, so a virtual thread writing
+ * through them blocks its carrier until the event is on the disk. The first
+ * time a virtual thread reaches them the logger reports a WARNING through
+ * {@code java.util.logging}. With <b><i>log.async</i></b>=true the events are
+ * written by the writer thread instead.
+ * <p>
+ * If <b><i>log.striped</i></b> is true and the asynchronous logging is off,
+ * the channel and mmap appenders writing text or JSON do not make the logging threads wait for
+ * each other. Every thread formats its events into a buffer of its own and a
+ * single writer thread merges the buffers into the files in the order the
+ * events were logged. <b><i>log.striped.buffersize</i></b> is the number of
+ * events the buffer of a thread can hold, 1024 by default.
  * 
  * @see #setRollingOn(boolean)
  * @see #setDatePattern(java.lang.String) 
@@ -87,67 +265,130 @@ import org.apache.log4j.PatternLayout;
 public class HasselFreeLogger implements Logger
 {
   
-    /**
-     * This field stores the directory where the log file will be generated.
-     * @since 1.0
-     * 
-     */
-   private String log_directory_name;
+   /**
+    * This field stores every setting of the logger, e.g. the log directory,
+    * the files of the levels, the patterns and the appender. The settings
+    * are never changed in place: a new configuration replaces the old one as
+    * a whole, see {@link #setConfiguration(java.util.Properties)}.
+    * @since 1.1
+    */
+   private volatile LoggerConfig config=LoggerConfig.DEFAULT;
    
    /**
-    * This field stores the name of the log file where {@link Level#FATAL} is recorded.
-    * @since 1.0
+    * This field makes the reconfigurations wait for each other. The log calls
+    * never take it.
+    * @since 1.1
     */
-   private String fatal_log_file_name;
+   private final ReentrantLock reconfigureLock = new ReentrantLock();
    
-  /**
-    * This field stores the name of the log file where {@link Level#DEBUG} is recorded.
-    * @since 1.0
+   /**
+    * Reloads the configuration when its file changes. It is {@code null}
+    * unless {@link #watchConfiguration(java.lang.String)} was called.
+    * @since 1.1
     */
-   private String debug_log_file_name;
+   private ConfigWatcher configWatcher;
    
    /**
-    * This field stores the name of the log file where {@link Level#INFO} is recorded.
-    * @since 1.0
+    * This field keeps one activated appender for every level and log file, so
+    * that a log file is opened only once and shared by all category loggers.
+    * @since 1.1
     */
-   private String info_log_file_name;
+   private final AppenderRegistry appenderRegistry = new AppenderRegistry();
    
    /**
-    * This field stores the name of the log file where {@link Level#ERROR} is recorded.
-    * @since 1.0
+    * This field keeps the open file of every level if the appender of the
+    * configuration is not {@link AppenderType#LOG4J}.
+    * @since 1.1
     */
-   private String error_log_file_name;
+   private final SinkRegistry sinkRegistry = new SinkRegistry();
    
    /**
-    * This field stores the name of the log file where {@link Level#WARN} is recorded.
-    * @since 1.0
+    * Flushes the batches of the sinks while the events are collected, or
+    * forces the regions of the mmap appender to the disk. It is {@code null}
+    * if neither is needed.
+    * @since 1.1
     */
-   private String warn_log_file_name;
+   private PeriodicFlusher flusher;
    
    /**
-    * This field stores the name of the log file where {@link Level#ALL} is recorded.
-    * @since 1.0
+    * Logs the summary of the suppressed events periodically. It is
+    * {@code null} if no limit is configured.
+    * @since 1.1
     */
-   private String all_log_file_name;
+   private PeriodicFlusher rateLimitReporter;
    
    /**
-    * This field stores the pattern used to record the log message.
-    * @since 1.0
+    * The event reused by the calling thread while it records an event itself.
+    * @since 1.1
+    */
+   private static final ThreadLocal<LogEvent> SCRATCH_EVENT = ThreadLocal.withInitial(LogEvent::new);
+   
+   /**
+    * The builder of structured events reused by the calling thread.
+    * @since 1.1
     */
+   private final ThreadLocal<EventBuilder> builders = ThreadLocal.withInitial(() -> new EventBuilder(this));
    
-   private String conversionPattern;
+   /**
+    * Name of this class. Log4j uses it to find the caller of a log method
+    * while printing location information.
+    * @since 1.1
+    */
+   private static final String FQCN = HasselFreeLogger.class.getName();
    
    /**
-   * The field is required to make rolling on feature on or off.
-   * @since 1.0
-   */
-   private boolean rollingOn=false;
-  
+    * The location of an event recorded without one.
+    * @since 1.1
+    */
+   private static final LocationInfo UNKNOWN_LOCATION = new LocationInfo(null, null);
+   
    /**
-    * This field stores pattern used in recording the log.
-    * @since 1.0
+    * The levels which have files of their own.
+    * @since 1.1
     */
-   private String datePattern;
+   private static final Level[] LEVELS = {Level.FATAL, Level.ERROR, Level.WARN, Level.INFO, Level.DEBUG, Level.ALL};
+   
+   /**
+    * The writer of the asynchronous logging. It is {@code null} while the
+    * asynchronous logging is off.
+    * @since 1.1
+    */
+   private volatile AsyncDispatcher asyncDispatcher;
+   
+   /**
+    * The writer draining the buffers of the logging threads. It is
+    * {@code null} while the striped writing is off.
+    * @since 1.1
+    */
+   private volatile StripedWriter stripedWriter;
+   
+   /**
+    * Ships the events to a log collector. It is {@code null} while no
+    * collector is configured.
+    * @since 1.1
+    */
+   private volatile NetworkSink networkSink;
+   
+   /**
+    * This field counts the events and bytes and measures the latencies of
+    * this logger.
+    * @since 1.1
+    */
+   private final LoggerMetrics metrics = new LoggerMetrics();
+   
+   /**
+    * Publishes {@link #metrics} through JMX, or {@code null} if the
+    * configuration does not publish them.
+    * @since 1.1
+    */
+   private volatile MetricsBean metricsBean;
+   
+   /**
+    * Set once a virtual thread handed an event to the log4j appenders and
+    * was warned about, see {@link #log(Level, LoggingEvent)}.
+    * @since 1.1
+    */
+   private volatile boolean virtualThreadWarned;
    
    /**
     * This is a default constructor. It provides the default configuration for the 
@@ -158,15 +399,6 @@ public class HasselFreeLogger implements Logger
     */
     public HasselFreeLogger() 
     {
-        this.log_directory_name="log";
-        this.all_log_file_name="all.log";
-        this.debug_log_file_name="debug.log";
-        this.error_log_file_name="error.log";
-        this.info_log_file_name="info.log";
-        this.warn_log_file_name="warn.log";
-        this.fatal_log_file_name="fatal.log";
-        this.datePattern="dd-MM-yyyy";
-        this.rollingOn=false;
     }
 
     /**
@@ -176,40 +408,149 @@ public class HasselFreeLogger implements Logger
      *                   inside a {@link  java.util.Properties} file.  Inside properties
      *                   file, the information is stored in form of <b>key=value</b>
      *                   pair. The keys are already decided. The value may be any user defined
-     *                   value. The system consider project root as the root directory. So all
-     *                   the values must be relative to the project root only.
+     *                   value. The log directory may be absolute or relative, see
+     *                   <b><i>log.directory</i></b> above.
      * @since 1.0
      */
     public HasselFreeLogger(Properties properties) {
-        setOptions(properties);
+        this.config=LoggerConfig.of(properties, null);
+        metrics.setTimed(config.metricsTimed);
+        startAsyncDispatcher();
+        startRateLimitReporter();
+        startNetworkSink();
+        publishMetrics(config);
     }
     
+    /**
+     * Closes the files of the log4j appenders and of the sinks.
+     * @since 1.1
+     */
+    private void closeFiles()
+    {
+        appenderRegistry.closeAll();
+        sinkRegistry.closeAll();
+    }
     
     /**
-     * This is a {@literal private} method. This method reads all the external 
-     * configuration and stores inside corresponding fields. This method is called 
-     * from two major points viz {@link #HasselFreeLogger(java.util.Properties)} and
-     * {@link #setConfiguration(java.util.Properties)}.
-     * This means that user has two choices:
-     * <ul>
-     * <li> Create the instance using {@link #HasselFreeLogger() } and override settings
-     *      using {@link #setConfiguration(java.util.Properties) }
-     * <li> Create instance using {@link #HasselFreeLogger(java.util.Properties) }
-     * </ul>
-     * @param properties used for external configuration.
-     * @since 1.0
+     * Starts the writer thread if the asynchronous logging or the striped
+     * writing is on and the flusher thread if the channel appender collects
+     * events or the mmap appender forces its regions.
+     * @since 1.1
+     */
+    private void startAsyncDispatcher()
+    {
+        LoggerConfig started = config;
+        if(started.flushPolicy != FlushPolicy.EVERY_EVENT && started.appenderType == AppenderType.CHANNEL)
+            flusher = new PeriodicFlusher(started.flushMaxDelay, sinkRegistry::flushAll);
+        else if(started.appenderType == AppenderType.MMAP && started.rollingOn && started.mmapForceInterval > 0)
+            flusher = new PeriodicFlusher("HasselFreeLogger-Force", started.mmapForceInterval,
+                    sinkRegistry::forceAll);
+        if(started.asyncOn)
+            asyncDispatcher = new AsyncDispatcher(started.asyncBufferSize, started.asyncWaitStrategy,
+                    started.asyncOverflowPolicy, started.asyncDiscardLevel, event -> record(event, event.level),
+                    sinkRegistry::flushAll);
+        else if(started.stripedOn && started.rollingOn && started.appenderType != AppenderType.LOG4J
+                && started.logFormat.isShareable())
+            stripedWriter = new StripedWriter(started.stripedBufferSize, this::getCompiledPattern,
+                    pattern -> started.logFormat.newEncoder(pattern, started.throwableRenderer), this::routeOf,
+                    sinkRegistry::flushAll);
+    }
+    
+    /**
+     * Records every event waiting in the buffer and stops the writer thread
+     * and the flusher thread.
+     * @since 1.1
+     */
+    private void stopAsyncDispatcher()
+    {
+        AsyncDispatcher dispatcher = asyncDispatcher;
+        asyncDispatcher = null;
+        if(dispatcher != null)
+            dispatcher.close();
+        StripedWriter striped = stripedWriter;
+        stripedWriter = null;
+        if(striped != null)
+            striped.close();
+        if(flusher != null)
+        {
+            flusher.close();
+            flusher = null;
+        }
+    }
+    
+    /**
+     * Starts the thread reporting the suppressed events if a rate limit is
+     * configured.
+     * @since 1.1
      */
-    private void setOptions(Properties properties)
+    private void startRateLimitReporter()
     {
-        this.log_directory_name=properties.getProperty("log.directory");      
-         this.fatal_log_file_name = properties.getProperty("log.fatal");
-         this.debug_log_file_name= properties.getProperty("log.debug");
-         this.error_log_file_name=properties.getProperty("log.error");
-         this.info_log_file_name=properties.getProperty("log.info");
-         this.warn_log_file_name=properties.getProperty("log.warn");
-         this.all_log_file_name=properties.getProperty("log.all");
-         this.datePattern=properties.getProperty("log.datepattern");
-         this.rollingOn=Boolean.valueOf(properties.getProperty("log.rolling"));
+        LoggerConfig started = config;
+        if(started.rateLimiter != null)
+            rateLimitReporter = new PeriodicFlusher("HasselFreeLogger-RateLimit",
+                    started.rateLimitSummaryInterval, this::reportSuppressed);
+    }
+    
+    /**
+     * Opens the spool and starts the sender thread if a collector is
+     * configured.
+     * @since 1.1
+     */
+    private void startNetworkSink()
+    {
+        LoggerConfig started = config;
+        if(started.networkAddress == null)
+            return;
+        try {
+            networkSink = new NetworkSink(started.networkAddress, started.networkUdp, started.networkFormat,
+                    started.networkFormat.newEncoder(started.throwableRenderer, started.networkFacility,
+                    started.networkAppName), started.networkThreshold,
+                    started.logDirectory.resolve(started.networkSpoolName), started.networkSpoolSize,
+                    started.networkBatchSize, started.networkBackoff, started.networkMaxBackoff);
+        } catch (IOException e) {
+            java.util.logging.Logger.getLogger(this.getClass().getName()).log(java.util.logging.Level.SEVERE,
+                    "Log Directory Can Not Be Created", e);
+        }
+    }
+    
+    /**
+     * Stops the sender thread once it sent the spooled events or a moment
+     * passed, and closes the spool.
+     * @since 1.1
+     */
+    private void stopNetworkSink()
+    {
+        NetworkSink network = networkSink;
+        networkSink = null;
+        if(network != null)
+            network.close();
+    }
+    
+    /**
+     * Stops the reporting thread and reports the events suppressed so far.
+     * @since 1.1
+     */
+    private void stopRateLimitReporter()
+    {
+        if(rateLimitReporter != null)
+        {
+            rateLimitReporter.close();
+            rateLimitReporter = null;
+            reportSuppressed();
+        }
+    }
+    
+    /**
+     * Logs one warning counting the events suppressed by the rate limits since
+     * the last report, if there were any.
+     * @since 1.1
+     */
+    private void reportSuppressed()
+    {
+        RateLimiter limiter = config.rateLimiter;
+        String summary = limiter == null ? null : limiter.summary();
+        if(summary != null)
+            record(RateLimiter.class, Level.WARN, summary, null);
     }
     
     
@@ -217,13 +558,224 @@ public class HasselFreeLogger implements Logger
      * If the user has created an instance using {@link #HasselFreeLogger() } constructor 
      * and still want to use external configuration, it can use this method to override 
      * the settings.
+     * <p>
+     * The properties replace the whole configuration: a key which is missing
+     * takes its default value. Only what the changed keys affect is rebuilt,
+     * see {@link #reconfigure(LoggerConfig)}, so the files whose settings did
+     * not change stay open and no event is lost or waits for the change.
      * @param properties externally configured information. 
      * @since 1.0
      */
 
     public void setConfiguration(Properties properties) 
     {
-        setOptions(properties);
+        reconfigureLock.lock();
+        try {
+            reconfigure(LoggerConfig.of(properties, config));
+        } finally {
+            reconfigureLock.unlock();
+        }
+    }
+    
+    /**
+     * Reads the configuration from a properties file and reloads it whenever
+     * the file changes, until {@link #shutdown()}. A file which can not be read
+     * later on is reported and the configuration in use is kept.
+     * @param file the properties file
+     * @throws IOException if the file can not be read or watched
+     * @since 1.1
+     */
+    public void watchConfiguration(String file) throws IOException
+    {
+        Path path = Paths.get(file);
+        setConfiguration(ConfigWatcher.load(path));
+        closeConfigWatcher(new ConfigWatcher(path, this::setConfiguration));
+    }
+    
+    /*
+        The watcher thread may be waiting for the reconfiguration lock, so it is
+        joined without holding the lock.
+    */
+    private void closeConfigWatcher(ConfigWatcher replacement)
+    {
+        ConfigWatcher replaced;
+        reconfigureLock.lock();
+        try {
+            replaced = configWatcher;
+            configWatcher = replacement;
+        } finally {
+            reconfigureLock.unlock();
+        }
+        if(replaced != null)
+            replaced.close();
+    }
+    
+    /*
+        Changes one key of the configuration, e.g. for setRollingOn.
+    */
+    private void reconfigure(String key, String value)
+    {
+        reconfigureLock.lock();
+        try {
+            reconfigure(config.with(key, value));
+        } finally {
+            reconfigureLock.unlock();
+        }
+    }
+    
+    /**
+     * Replaces the configuration. The caller holds {@link #reconfigureLock}.
+     * <ul>
+     * <li> The writer threads are restarted only if the asynchronous or striped
+     *      settings or the settings of the files changed. A stopped writer
+     *      records the events it holds with the old configuration first;
+     *      meanwhile the log calls record their events themselves.
+     * <li> The configuration is swapped with a single write, so every log
+     *      call sees either the old or the new one.
+     * <li> If only the files of some levels changed, the files which are
+     *      still used stay open. Otherwise every file is closed and opened
+     *      again by its next event. An event meeting a file closed meanwhile
+     *      is handed to the files of the new configuration.
+     * </ul>
+     * @param next the new configuration
+     * @since 1.1
+     */
+    private void reconfigure(LoggerConfig next)
+    {
+        LoggerConfig previous = config;
+        Set<String> changed = previous.changedKeys(next);
+        if(!LoggerConfig.changesAnything(changed))
+            return;
+        boolean dispatch = LoggerConfig.changesDispatch(changed);
+        boolean rateLimits = LoggerConfig.changesRateLimits(changed);
+        boolean network = LoggerConfig.changesNetwork(changed);
+        if(rateLimits)
+            stopRateLimitReporter();
+        if(network)
+            stopNetworkSink();
+        if(dispatch)
+            stopAsyncDispatcher();
+        config = next;
+        metrics.setTimed(next.metricsTimed);
+        publishMetrics(next);
+        if(LoggerConfig.changesSinks(changed) || LoggerConfig.changesFiles(changed))
+            retainFiles(next, !LoggerConfig.changesSinks(changed));
+        if(dispatch)
+            startAsyncDispatcher();
+        if(rateLimits)
+            startRateLimitReporter();
+        if(network)
+            startNetworkSink();
+    }
+    
+    /*
+        Keeps the files every level of the new configuration is recorded into
+        open, if their settings did not change, and closes the others. The
+        levels open their routes again for the new generation of files.
+    */
+    private void retainFiles(LoggerConfig next, boolean keep)
+    {
+        Set<String> files = new HashSet<>();
+        try {
+            for(Level level : LEVELS)
+                if(keep)
+                    Collections.addAll(files, getLogFileNames(next, level));
+        } catch (IOException e) {
+            java.util.logging.Logger.getLogger(this.getClass().getName()).log(java.util.logging.Level.SEVERE,
+                    "Log Directory Can Not Be Created", e);
+            files.clear();
+        }
+        appenderRegistry.retain(files, next.fileGeneration);
+        sinkRegistry.retain(files, next.fileGeneration);
+    }
+    
+    /**
+     * Records every event still waiting for the asynchronous writer, then
+     * detaches and closes every log file opened by this logger. Later log calls
+     * are recorded synchronously and open the files again.
+     * @since 1.1
+     */
+    @Override
+    public void shutdown()
+    {
+        closeConfigWatcher(null);
+        reconfigureLock.lock();
+        try {
+            stopRateLimitReporter();
+            stopAsyncDispatcher();
+            stopNetworkSink();
+            closeFiles();
+        } finally {
+            reconfigureLock.unlock();
+        }
+        MetricsBean published = metricsBean;
+        metricsBean = null;
+        if(published != null)
+            published.unregister();
+    }
+    
+    /*
+        Registers the metrics bean if the configuration publishes the metrics
+        and unregisters it if it does not or the name changed.
+    */
+    private void publishMetrics(LoggerConfig next)
+    {
+        MetricsBean published = metricsBean;
+        if(published != null && (!next.metricsJmx || !published.isNamed(next.metricsJmxName)))
+        {
+            published.unregister();
+            published = null;
+        }
+        if(next.metricsJmx && published == null)
+        {
+            published = new MetricsBean(this, metrics, next.metricsJmxName);
+            published.register();
+        }
+        metricsBean = published;
+    }
+    
+    /**
+     * Writes every event recorded so far into the files. In the asynchronous
+     * mode it first waits until the writer has recorded the events published
+     * before this call.
+     * @since 1.1
+     */
+    @Override
+    public void flush()
+    {
+        AsyncDispatcher dispatcher = asyncDispatcher;
+        if(dispatcher != null)
+            dispatcher.awaitRecorded();
+        StripedWriter striped = stripedWriter;
+        if(striped != null)
+            striped.awaitWritten();
+        sinkRegistry.flushAll();
+    }
+    
+    /**
+     * @return the number of events dropped because the buffer of the
+     *         asynchronous logging was full
+     * @since 1.1
+     */
+    public long getDroppedEventCount()
+    {
+        AsyncDispatcher dispatcher = asyncDispatcher;
+        return dispatcher == null ? 0L : dispatcher.getDroppedEvents();
+    }
+    
+    /**
+     * The snapshot is also published through JMX with {@code log.metrics.jmx}, see
+     * {@link HasselFreeLoggerMXBean}. The number of bytes is only counted for
+     * the files written by the channel and mmap appenders.
+     * @return the metrics of this logger
+     * @since 1.1
+     */
+    @Override
+    public LoggerStats getStats()
+    {
+        AsyncDispatcher dispatcher = asyncDispatcher;
+        return metrics.snapshot(dispatcher == null ? 0L : dispatcher.getPendingEvents(),
+                dispatcher == null ? 0L : dispatcher.getDroppedEvents());
     }
    
     /**
@@ -234,8 +786,7 @@ public class HasselFreeLogger implements Logger
     @Override
     public void logFatal(String message)
     {
-      org.apache.log4j.Logger logger=log(null, Level.FATAL);
-      logger.fatal(message);
+      record(null, Level.FATAL, message, null);
     }
 
     /**
@@ -246,8 +797,7 @@ public class HasselFreeLogger implements Logger
      */
     @Override
     public void logFatal(Class errorClass, String message) {
-        org.apache.log4j.Logger logger=log(errorClass, Level.FATAL);
-        logger.fatal(message);
+        record(errorClass, Level.FATAL, message, null);
     }
     
     /**
@@ -260,8 +810,7 @@ public class HasselFreeLogger implements Logger
 
     @Override
     public void logFatal(Class errorClass, String message, Throwable throwable) {
-      org.apache.log4j.Logger logger=log(errorClass, Level.FATAL);
-        logger.fatal(message,throwable);  
+      record(errorClass, Level.FATAL, message, throwable);
     }
     
     /**
@@ -273,8 +822,7 @@ public class HasselFreeLogger implements Logger
 
     @Override
     public void logAll(String message) {
-      org.apache.log4j.Logger logger=log(null, Level.ALL);
-      logger.fatal(message);
+      record(null, Level.ALL, message, null);
     }
     
     
@@ -288,8 +836,7 @@ public class HasselFreeLogger implements Logger
 
     @Override
     public void logAll(Class errorClass, String message) {
-        org.apache.log4j.Logger logger=log(errorClass, Level.ALL);
-        logger.fatal(message);
+        record(errorClass, Level.ALL, message, null);
     }
 
     
@@ -303,95 +850,388 @@ public class HasselFreeLogger implements Logger
      */
     @Override
     public void logAll(Class errorClass, String message, Throwable throwable) {
-        org.apache.log4j.Logger logger=log(errorClass, Level.ALL);
-        logger.fatal(message,throwable);
+        record(errorClass, Level.ALL, message, throwable);
+    }
+    
+    
+    /*
+        Every log method ends here. If the asynchronous logging is on, the event
+        is handed over to the writer thread. Otherwise, or if the writer is
+        already closed, the event is recorded by the calling thread.
+    */
+    private void record(Class category, Level level, String message, Throwable throwable)
+    {
+        record(category, level, message, 0, null, null, null, null, throwable);
+    }
+    
+    private void record(Class category, Level level, String message, int argumentCount,
+            Object argument0, Object argument1, Object[] arguments, Supplier<String> supplier,
+            Throwable throwable)
+    {
+        record(category, level, message, argumentCount, argument0, argument1, arguments, supplier,
+                throwable, null);
+    }
+    
+    /*
+        The message is formatted only after the level check has passed. In the
+        asynchronous mode it is formatted by the writer thread. The key value
+        pairs of a structured event belong to its builder and are copied if the
+        event is handed over to the writer thread.
+    */
+    void record(Class category, Level level, String message, int argumentCount,
+            Object argument0, Object argument1, Object[] arguments, Supplier<String> supplier,
+            Throwable throwable, KeyValues keyValues)
+    {
+        LoggerConfig current = config;
+        if(priority(level).toInt() < current.threshold)
+        {
+            FlightRecorder recorder = current.flightRecorder;
+            if(recorder != null && FlightRecorder.isRecorded(level))
+                recorder.record(category, level, message, argumentCount, argument0, argument1, arguments,
+                        supplier, throwable, keyValues, current.contextRequired);
+            return;
+        }
+        RateLimiter limiter = current.rateLimiter;
+        if(limiter != null && !limiter.tryAcquire(category, level))
+            return;
+        metrics.eventLogged(level);
+        FlightRecorder recorder = current.flightRecorder;
+        if(recorder != null && (level == Level.ERROR || level == Level.FATAL))
+            recorder.dump(event -> record(event, Level.DEBUG));
+        LocationInfo location = captureLocation(current);
+        AsyncDispatcher dispatcher = asyncDispatcher;
+        if(dispatcher != null)
+        {
+            long start = metrics.isTimed() ? System.nanoTime() : 0L;
+            if(dispatcher.publish(category, level, message, argumentCount, argument0, argument1,
+                    arguments, supplier, throwable, location, keyValues, current.contextRequired))
+            {
+                if(start != 0L)
+                    metrics.enqueue.record(System.nanoTime() - start);
+                return;
+            }
+        }
+        NetworkSink network = networkSink;
+        boolean sinks = current.rollingOn && current.appenderType != AppenderType.LOG4J;
+        if(sinks || network != null)
+        {
+            /*
+                The scratch event is busy if a message argument logs while it is
+                rendered, so a nested call gets an event of its own.
+            */
+            LogEvent event = SCRATCH_EVENT.get();
+            if(event.level != null)
+                event = new LogEvent();
+            event.set(category, level, System.currentTimeMillis(), Thread.currentThread().getName(),
+                    message, argumentCount, argument0, argument1, arguments, supplier, throwable,
+                    location);
+            event.keyValues = keyValues;
+            try {
+                if(network != null)
+                    network.publish(event);
+                if(sinks && recordToSinks(event, level))
+                    return;
+            } finally {
+                event.clear();
+            }
+        }
+        String formatted = supplier != null ? supplier.get()
+                : MessageFormatter.format(message, argumentCount, argument0, argument1, arguments);
+        if(keyValues != null)
+        {
+            StringBuilder buffer = new StringBuilder(String.valueOf(formatted));
+            keyValues.appendTo(buffer);
+            formatted = buffer.toString();
+        }
+        if(throwable == null)
+            throwable = MessageFormatter.trailingThrowable(message, argumentCount, argument0, argument1, arguments);
+        org.apache.log4j.Logger logger = categoryOf(category).logger;
+        if(throwable == null && location == null)
+            log(level, new LoggingEvent(FQCN, logger, System.currentTimeMillis(), priority(level),
+                    formatted, null));
+        else
+            log(level, new LoggingEvent(FQCN, logger, System.currentTimeMillis(), priority(level),
+                    formatted, Thread.currentThread().getName(), throwable == null ? null
+                    : new ThrowableInformation(current.throwableRenderer.lines(throwable)), NDC.get(), location,
+                    MDC.getContext()));
+    }
+    
+    /*
+        The writer thread records the events here, and the flight recorder the
+        events it kept into the files of the debug level. Both are shipped to
+        the collector here as well. The timestamp, thread name and location are
+        the ones of the logging thread, not of the writer, and so are the NDC
+        and MDC if the pattern prints them. Without a location log4j must not
+        look for one on the current stack.
+    */
+    private void record(LogEvent event, Level files)
+    {
+        LoggerConfig current = config;
+        NetworkSink network = networkSink;
+        if(network != null)
+            network.publish(event);
+        if(current.rollingOn && current.appenderType != AppenderType.LOG4J && recordToSink(event, files))
+            return;
+        org.apache.log4j.Logger logger = categoryOf(event.category).logger;
+        Throwable throwable = event.renderThrowable();
+        ThrowableInformation throwableInformation = throwable == null
+                ? null : new ThrowableInformation(current.throwableRenderer.lines(throwable));
+        log(files, new LoggingEvent(FQCN, logger, event.timestamp, priority(event.level),
+                event.renderMessage(), event.threadName, throwableInformation, event.ndc(),
+                event.location == null ? UNKNOWN_LOCATION : event.location, event.mdc()));
+    }
+    
+    /*
+        Hands the event to the striped writer, or records it into the files of
+        its level if the striped writing is off.
+    */
+    private boolean recordToSinks(LogEvent event, Level level)
+    {
+        StripedWriter striped = stripedWriter;
+        if(striped != null)
+        {
+            long start = metrics.isTimed() ? System.nanoTime() : 0L;
+            if(striped.publish(event))
+            {
+                if(start != 0L)
+                    metrics.enqueue.record(System.nanoTime() - start);
+                return true;
+            }
+        }
+        return recordToSink(event, level);
+    }
+    
+    /*
+        Records the event into the files of a level. If a file can not be
+        opened, false is returned and the event goes to log4j instead. An event
+        refused by a file closed by a reconfiguration is written into the files
+        of the new configuration.
+    */
+    private boolean recordToSink(LogEvent event, Level files)
+    {
+        SinkRoute route = routeOf(files);
+        if(route == null)
+            return false;
+        SinkRoute delivered = null;
+        while(!route.append(event, delivered))
+        {
+            delivered = route;
+            route = routeOf(files);
+            if(route == null || route == delivered)
+                break;
+        }
+        return true;
+    }
+    
+    /*
+        Returns the sinks of a level, opening them on the first event, or null
+        if a file can not be opened.
+    */
+    private SinkRoute routeOf(Level level)
+    {
+        SinkRoute route = sinkRegistry.get(level);
+        while(route == null)
+        {
+            LoggerConfig current = config;
+            try {
+                route = sinkRegistry.acquire(level, getLogFileNames(current, level),
+                        file -> openSink(current, file), current.fileGeneration);
+                if(route == null)
+                    Thread.yield();
+            } catch (IOException | UncheckedIOException e) {
+                java.util.logging.Logger.getLogger(this.getClass().getName()).log(java.util.logging.Level.SEVERE,
+                        "Unable To Open LOG FILE", e);
+                return null;
+            }
+        }
+        return route;
     }
     
+    /*
+        Opens the sink of a level file as configured by log.appender.
+    */
+    private FileSink openSink(LoggerConfig current, String file) throws IOException
+    {
+        FileSink sink;
+        if(current.appenderType == AppenderType.MMAP)
+            sink = new MappedFileSink(file, current.compiledPattern, current.logFormat, current.throwableRenderer,
+                    current.datePattern, current.rollingPolicy, current.mmapRegionSize);
+        else
+            sink = new ChannelFileSink(file, current.compiledPattern, current.logFormat, current.throwableRenderer,
+                    current.datePattern, current.rollingPolicy, current.flushPolicy, current.flushBatchSize,
+                    current.flushMaxDelay, current.flushOnError);
+        sink.setMetrics(metrics);
+        sink.setIndex(current.indexBlockEvents, current.indexBlockBytes);
+        return sink;
+    }
+    
+    /*
+        The writer thread can not find the caller of a log method by itself. So the
+        location is captured by the logging thread, but only if the pattern prints it.
+        It is handed to log4j as well, which would otherwise find it once more.
+    */
+    private static LocationInfo captureLocation(LoggerConfig current)
+    {
+        if(current.compiledPattern.isLocationRequired())
+            return CallerLocator.locate();
+        return null;
+    }
+    
+    /*
+        The pattern is parsed only once after every change of it.
+    */
+    private CompiledPattern getCompiledPattern()
+    {
+        return config.compiledPattern;
+    }
+    
+    /*
+        logAll has always been recorded with the fatal priority, so that it passes
+        any level set on the log4j logger.
+    */
+    static Level priority(Level level)
+    {
+        return level == Level.ALL ? Level.FATAL : level;
+    }
+    
+    /*
+        If the user of the system do not want to supply error generating class
+        then by default the current class will be considered to be the class which is 
+        generating the eeror.
+    */
+    private CategoryHandle categoryOf(Class errorClass)
+    {
+        return CategoryHandle.of(errorClass == null ? this.getClass() : errorClass);
+    }
     
     /*
         I believe that all kind of log method requires level to decide 
         what kind of file need to be generated and what format to use while 
         recording the log. So this decision can be made centrally. That is why I
-        designed this central method to produce a logger object with the decision of
+        designed this central method to hand the event over on the basis of
         a) The level of the log
-        b) which class is generating the log
+        b) which class is generating the log, which the event already carries.
         
-        That is why this method requies two parameters
-        a) errorClass : where the exception is generated
-        b) level of the log.
-    */
-    private org.apache.log4j.Logger log(Class errorClass,Level level)
-    {
-        /*
-            If the user of the system do not want to supply error generating class
-            then by default the current class will be considered to be the class which is 
-             generating the eeror.
-        */
-        org.apache.log4j.Logger logger=null;
-        if(errorClass == null)
-            logger= org.apache.log4j.Logger.getLogger(this.getClass().getName());
-        else
-            /*
-               
-            */
-            logger=org.apache.log4j.Logger.getLogger(errorClass.getName());
+        The level of the log4j logger is not touched any more. Whether the event
+        is recorded at all has already been decided by the threshold.
+    */
+    private void log(Level level, LoggingEvent event)
+    {
+      /*
+          The log4j appenders write under their monitor, which blocks the
+          carrier of a virtual thread while the event is on its way to the disk.
+      */
+      if(!virtualThreadWarned && VirtualThreads.isCurrentVirtual())
+          warnVirtualThread();
          /*
             If the user want to record the log into respective file then the rollingOn
-            should be true.
+            should be true. Otherwise the appenders configured for log4j are used.
         */   
       if(isRollingOn())
       {
-          try {
+          Appender[] appenders = appendersOf(level);
+          long start = metrics.isTimed() ? System.nanoTime() : 0L;
+          Appender[] delivered = null;
+          while(!AppenderRegistry.append(appenders, delivered, event))
+          {
               /*
-                 I want to record different level of log into different files.
-                  So what file wiil be used will depened upon the level.
+                  An appender was closed by a reconfiguration, the appenders of
+                  the new configuration get the event.
               */
-              String fileName="default.log";
-              if(level == Level.ALL)
-                  fileName = all_log_file_name;
-              else if(level == Level.DEBUG)
-                  fileName = debug_log_file_name;
-              else if(level == Level.ERROR)
-                  fileName = error_log_file_name;
-              else if(level == Level.FATAL)
-                  fileName = fatal_log_file_name;
-              else if(level == Level.INFO)
-                  fileName = info_log_file_name;
-              else if(level == Level.WARN)
-                  fileName = warn_log_file_name;
-              
-              logger.addAppender(getRollingFileAdapter(fileName));
-          } catch (URISyntaxException e) {
-             java.util.logging.Logger.getLogger(this.getClass().getName()).log(java.util.logging.Level.SEVERE, 
-                     "URL Is Not Valid For Log File\nUnable To Create Daily LOG FILE");
-             logger.addAppender(new ConsoleAppender());
-          }    
+              delivered = appenders;
+              appenders = appendersOf(level);
+              if(appenders == delivered)
+                  break;
+          }
+          if(start != 0L)
+              metrics.write.record(System.nanoTime() - start);
       }
-      logger.setLevel(level);
-      return logger;
+      else
+          event.getLogger().callAppenders(event);
     }
+    
+    private void warnVirtualThread()
+    {
+        virtualThreadWarned = true;
+        java.util.logging.Logger.getLogger(this.getClass().getName()).log(java.util.logging.Level.WARNING,
+                "Virtual Thread {0} Writes Through The Synchronized LOG4J Appenders And Blocks Its Carrier\n"
+                + "Use log.appender=channel Or mmap With log.rolling=true, Or log.async=true",
+                Thread.currentThread());
+    }
+    
+    private Appender[] appendersOf(Level level)
+    {
+        Appender[] appenders = appenderRegistry.get(level);
+        while(appenders == null)
+        {
+            appenders = openRollingAppenders(level);
+            if(appenders == null)
+                Thread.yield();
+        }
+        return appenders;
+    }
+    
+    /*
+        Returns null if the configuration was replaced meanwhile and the
+        caller has to try again.
+    */
+    private Appender[] openRollingAppenders(Level level)
+    {
+          LoggerConfig current = config;
+          try {
+              return getRollingFileAdapter(current, level, getLogFileNames(current, level));
+          } catch (IOException e) {
+             java.util.logging.Logger.getLogger(this.getClass().getName()).log(java.util.logging.Level.SEVERE, 
+                     "Log Directory Can Not Be Created\nUnable To Create Daily LOG FILE", e);
+             return appenderRegistry.bind(level, new ConsoleAppender(new PatternLayout(current.conversionPattern)));
+          }
+    }
+    
    /**
-    * @see org.apache.log4j.DailyRollingFileAppender
-    * @return DailyRollingFileAppender. This class is used for creating date wise log.
-    * @throws URISyntaxException throws exception if the URI for log directory is not valid
+    * @return the full name of the log file inside the log directory.
+    * @throws IOException throws exception if the log directory can not be created
+    * @param current The configuration naming the log directory.
     * @param fileName File name where the log will be recorded.
+    * @see LogDirectory
+    * @since 1.1
+    */
+  private static String getLogFileName(LoggerConfig current, String fileName) throws IOException
+  {
+      return current.logDirectory.resolve(fileName).toString();
+  }
+  
+   /**
+    * @return the full names of the files where {@code level} is recorded.
+    * @throws IOException throws exception if the log directory can not be created
+    * @param current The configuration routing the levels.
+    * @param level The level of the log.
+    * @see RoutingTable
+    * @since 1.1
+    */
+  private static String[] getLogFileNames(LoggerConfig current, Level level) throws IOException
+  {
+      String[] fileNames = current.routingTable.filesOf(level);
+      String[] logFiles = new String[fileNames.length];
+      for(int i = 0; i < fileNames.length; i++)
+          logFiles[i] = getLogFileName(current, fileNames[i]);
+      return logFiles;
+  }
+  
+   /**
+    * The appender is opened and activated only once for every file.
+    * All later calls return the same appenders from {@link AppenderRegistry}.
+    * @see org.apache.log4j.DailyRollingFileAppender
+    * @return the DailyRollingFileAppender of every file or {@code null} if
+    *         the configuration was replaced meanwhile. This class is used for creating date wise log.
+    * @param current The configuration the files belong to.
+    * @param level The level recorded by the appenders.
+    * @param logFiles Full names of the files where the log will be recorded.
     * @since 1.0
     */
-  private DailyRollingFileAppender getRollingFileAdapter(String fileName) throws URISyntaxException
+  private Appender[] getRollingFileAdapter(LoggerConfig current, Level level, String[] logFiles)
   {
-      URI logDIRFullName = this.getClass().getResource("/").toURI();
-      String normalizePath = Paths.get(logDIRFullName).toString();
-
-      String log_file_full_name = normalizePath + "/" + log_directory_name + "/" + fileName;
-      PatternLayout layout = new PatternLayout();
-      String conversionPattern = getConversionPattern();
-      layout.setConversionPattern(getConversionPattern());
-      DailyRollingFileAppender rollingAppender = new DailyRollingFileAppender();
-      rollingAppender.setFile(log_file_full_name);
-      rollingAppender.setDatePattern("'.'"+getDatePattern());
-      rollingAppender.setLayout(layout);
-      rollingAppender.activateOptions();
-      return rollingAppender;
+      return appenderRegistry.acquire(level, logFiles, current.conversionPattern, current.datePattern,
+              current.fileGeneration);
   }
 
     /**
@@ -402,10 +1242,7 @@ public class HasselFreeLogger implements Logger
     @Override
     public String getConversionPattern()
     {
-        if(conversionPattern == null)
-            return "[%p] %d %c %M - %m%n";
-        else
-            return conversionPattern;
+        return config.conversionPattern;
     }
     
     /**
@@ -417,7 +1254,7 @@ public class HasselFreeLogger implements Logger
 
     @Override
     public void setConversionPattern(String conversionPattern) {
-        this.conversionPattern = conversionPattern;
+        reconfigure("log.conversionpattern", conversionPattern);
     }
 
     /**
@@ -427,8 +1264,7 @@ public class HasselFreeLogger implements Logger
      */
     @Override
     public void logWarning(String message) {
-        org.apache.log4j.Logger logger = log(null, Level.WARN);
-        logger.warn(message);
+        record(null, Level.WARN, message, null);
     }
     
     /**
@@ -441,8 +1277,7 @@ public class HasselFreeLogger implements Logger
 
     @Override
     public void logWarning(Class warningClass, String message) {
-      org.apache.log4j.Logger logger = log(warningClass, Level.WARN);
-        logger.warn(message);  
+      record(warningClass, Level.WARN, message, null);
     }
     
     /**
@@ -457,8 +1292,7 @@ public class HasselFreeLogger implements Logger
 
     @Override
     public void logWarning(Class warningClass, String message, Throwable throwable) {
-       org.apache.log4j.Logger logger = log(warningClass, Level.WARN);
-       logger.warn(message,throwable); 
+       record(warningClass, Level.WARN, message, throwable);
     }
     
     /**
@@ -469,8 +1303,7 @@ public class HasselFreeLogger implements Logger
 
     @Override
     public void logInfo(String message) {
-      org.apache.log4j.Logger logger = log(null, Level.INFO);
-       logger.info(message);   
+      record(null, Level.INFO, message, null);
     }
     
     /**
@@ -484,8 +1317,7 @@ public class HasselFreeLogger implements Logger
 
     @Override
     public void logInfo(Class infoClass, String message) {
-     org.apache.log4j.Logger logger = log(infoClass, Level.INFO);
-     logger.info(message);   
+     record(infoClass, Level.INFO, message, null);
     }
     
     /**
@@ -501,8 +1333,7 @@ public class HasselFreeLogger implements Logger
 
     @Override
     public void logInfo(Class infoClass, String message, Throwable throwable) {
-     org.apache.log4j.Logger logger = log(infoClass, Level.INFO);
-     logger.info(message,throwable);    
+     record(infoClass, Level.INFO, message, throwable);
     }
     
     /**
@@ -514,8 +1345,7 @@ public class HasselFreeLogger implements Logger
 
     @Override
     public void logDebug(String message) {
-     org.apache.log4j.Logger logger = log(null, Level.DEBUG);
-     logger.debug(message);    
+     record(null, Level.DEBUG, message, null);
     }
     
     /**
@@ -529,52 +1359,435 @@ public class HasselFreeLogger implements Logger
 
     @Override
     public void logDebug(Class debugClass, String message) {
-        org.apache.log4j.Logger logger = log(debugClass, Level.DEBUG);
-        logger.debug(message);
+        record(debugClass, Level.DEBUG, message, null);
     }
 
     @Override
     public void logDebug(Class debugClass, String message, Throwable throwable) {
-        org.apache.log4j.Logger logger = log(debugClass, Level.DEBUG);
-        logger.debug(message,throwable);
+        record(debugClass, Level.DEBUG, message, throwable);
     }
 
     @Override
     public void logError(String message) {
-     org.apache.log4j.Logger logger = log(null, Level.ERROR);
-        logger.error(message);   
+     record(null, Level.ERROR, message, null);
     }
 
     @Override
     public void logError(Class errorClass, String message) {
-        org.apache.log4j.Logger logger = log(errorClass, Level.ERROR);
-        logger.debug(message);
+        record(errorClass, Level.ERROR, message, null);
     }
 
     @Override
     public void logError(Class errorClass, String message, Throwable throwable) {
-      org.apache.log4j.Logger logger = log(errorClass, Level.ERROR);
-        logger.debug(message,throwable);  
+      record(errorClass, Level.ERROR, message, throwable);
+    }
+
+    /**
+     * 
+     * @param errorClass The {@link java.lang.Class} generating the message
+     * @param pattern The message with one {} place holder
+     * @param argument The value replacing the place holder
+     * @since 1.1
+     */
+    @Override
+    public void logFatal(Class errorClass, String pattern, Object argument) {
+        record(errorClass, Level.FATAL, pattern, 1, argument, null, null, null, null);
+    }
+
+    /**
+     * 
+     * @param errorClass The {@link java.lang.Class} generating the message
+     * @param pattern The message with two {} place holders
+     * @param first The value replacing the first place holder
+     * @param second The value replacing the second place holder
+     * @since 1.1
+     */
+    @Override
+    public void logFatal(Class errorClass, String pattern, Object first, Object second) {
+        record(errorClass, Level.FATAL, pattern, 2, first, second, null, null, null);
+    }
+
+    /**
+     * 
+     * @param errorClass The {@link java.lang.Class} generating the message
+     * @param pattern The message with {} place holders
+     * @param arguments The values replacing the place holders. A {@link java.lang.Throwable}
+     *                  left over after the last place holder is logged as the exception.
+     * @since 1.1
+     */
+    @Override
+    public void logFatal(Class errorClass, String pattern, Object... arguments) {
+        record(errorClass, Level.FATAL, pattern, arguments == null ? 0 : arguments.length,
+                null, null, arguments, null, null);
+    }
+
+    /**
+     * 
+     * @param errorClass The {@link java.lang.Class} generating the message
+     * @param message Supplies the message. It is called only if the message is recorded.
+     * @since 1.1
+     */
+    @Override
+    public void logFatalLazy(Class errorClass, Supplier<String> message) {
+        record(errorClass, Level.FATAL, null, 0, null, null, null, message, null);
+    }
+
+    /**
+     * 
+     * @param errorClass The {@link java.lang.Class} generating the message
+     * @param pattern The message with one {} place holder
+     * @param argument The value replacing the place holder
+     * @since 1.1
+     */
+    @Override
+    public void logAll(Class errorClass, String pattern, Object argument) {
+        record(errorClass, Level.ALL, pattern, 1, argument, null, null, null, null);
+    }
+
+    /**
+     * 
+     * @param errorClass The {@link java.lang.Class} generating the message
+     * @param pattern The message with two {} place holders
+     * @param first The value replacing the first place holder
+     * @param second The value replacing the second place holder
+     * @since 1.1
+     */
+    @Override
+    public void logAll(Class errorClass, String pattern, Object first, Object second) {
+        record(errorClass, Level.ALL, pattern, 2, first, second, null, null, null);
+    }
+
+    /**
+     * 
+     * @param errorClass The {@link java.lang.Class} generating the message
+     * @param pattern The message with {} place holders
+     * @param arguments The values replacing the place holders. A {@link java.lang.Throwable}
+     *                  left over after the last place holder is logged as the exception.
+     * @since 1.1
+     */
+    @Override
+    public void logAll(Class errorClass, String pattern, Object... arguments) {
+        record(errorClass, Level.ALL, pattern, arguments == null ? 0 : arguments.length,
+                null, null, arguments, null, null);
+    }
+
+    /**
+     * 
+     * @param errorClass The {@link java.lang.Class} generating the message
+     * @param message Supplies the message. It is called only if the message is recorded.
+     * @since 1.1
+     */
+    @Override
+    public void logAllLazy(Class errorClass, Supplier<String> message) {
+        record(errorClass, Level.ALL, null, 0, null, null, null, message, null);
+    }
+
+    /**
+     * 
+     * @param warningClass The {@link java.lang.Class} generating the message
+     * @param pattern The message with one {} place holder
+     * @param argument The value replacing the place holder
+     * @since 1.1
+     */
+    @Override
+    public void logWarning(Class warningClass, String pattern, Object argument) {
+        record(warningClass, Level.WARN, pattern, 1, argument, null, null, null, null);
+    }
+
+    /**
+     * 
+     * @param warningClass The {@link java.lang.Class} generating the message
+     * @param pattern The message with two {} place holders
+     * @param first The value replacing the first place holder
+     * @param second The value replacing the second place holder
+     * @since 1.1
+     */
+    @Override
+    public void logWarning(Class warningClass, String pattern, Object first, Object second) {
+        record(warningClass, Level.WARN, pattern, 2, first, second, null, null, null);
+    }
+
+    /**
+     * 
+     * @param warningClass The {@link java.lang.Class} generating the message
+     * @param pattern The message with {} place holders
+     * @param arguments The values replacing the place holders. A {@link java.lang.Throwable}
+     *                  left over after the last place holder is logged as the exception.
+     * @since 1.1
+     */
+    @Override
+    public void logWarning(Class warningClass, String pattern, Object... arguments) {
+        record(warningClass, Level.WARN, pattern, arguments == null ? 0 : arguments.length,
+                null, null, arguments, null, null);
+    }
+
+    /**
+     * 
+     * @param warningClass The {@link java.lang.Class} generating the message
+     * @param message Supplies the message. It is called only if the message is recorded.
+     * @since 1.1
+     */
+    @Override
+    public void logWarningLazy(Class warningClass, Supplier<String> message) {
+        record(warningClass, Level.WARN, null, 0, null, null, null, message, null);
+    }
+
+    /**
+     * 
+     * @param infoClass The {@link java.lang.Class} generating the message
+     * @param pattern The message with one {} place holder
+     * @param argument The value replacing the place holder
+     * @since 1.1
+     */
+    @Override
+    public void logInfo(Class infoClass, String pattern, Object argument) {
+        record(infoClass, Level.INFO, pattern, 1, argument, null, null, null, null);
+    }
+
+    /**
+     * 
+     * @param infoClass The {@link java.lang.Class} generating the message
+     * @param pattern The message with two {} place holders
+     * @param first The value replacing the first place holder
+     * @param second The value replacing the second place holder
+     * @since 1.1
+     */
+    @Override
+    public void logInfo(Class infoClass, String pattern, Object first, Object second) {
+        record(infoClass, Level.INFO, pattern, 2, first, second, null, null, null);
+    }
+
+    /**
+     * 
+     * @param infoClass The {@link java.lang.Class} generating the message
+     * @param pattern The message with {} place holders
+     * @param arguments The values replacing the place holders. A {@link java.lang.Throwable}
+     *                  left over after the last place holder is logged as the exception.
+     * @since 1.1
+     */
+    @Override
+    public void logInfo(Class infoClass, String pattern, Object... arguments) {
+        record(infoClass, Level.INFO, pattern, arguments == null ? 0 : arguments.length,
+                null, null, arguments, null, null);
+    }
+
+    /**
+     * 
+     * @param infoClass The {@link java.lang.Class} generating the message
+     * @param message Supplies the message. It is called only if the message is recorded.
+     * @since 1.1
+     */
+    @Override
+    public void logInfoLazy(Class infoClass, Supplier<String> message) {
+        record(infoClass, Level.INFO, null, 0, null, null, null, message, null);
+    }
+
+    /**
+     * 
+     * @param debugClass The {@link java.lang.Class} generating the message
+     * @param pattern The message with one {} place holder
+     * @param argument The value replacing the place holder
+     * @since 1.1
+     */
+    @Override
+    public void logDebug(Class debugClass, String pattern, Object argument) {
+        record(debugClass, Level.DEBUG, pattern, 1, argument, null, null, null, null);
+    }
+
+    /**
+     * 
+     * @param debugClass The {@link java.lang.Class} generating the message
+     * @param pattern The message with two {} place holders
+     * @param first The value replacing the first place holder
+     * @param second The value replacing the second place holder
+     * @since 1.1
+     */
+    @Override
+    public void logDebug(Class debugClass, String pattern, Object first, Object second) {
+        record(debugClass, Level.DEBUG, pattern, 2, first, second, null, null, null);
+    }
+
+    /**
+     * 
+     * @param debugClass The {@link java.lang.Class} generating the message
+     * @param pattern The message with {} place holders
+     * @param arguments The values replacing the place holders. A {@link java.lang.Throwable}
+     *                  left over after the last place holder is logged as the exception.
+     * @since 1.1
+     */
+    @Override
+    public void logDebug(Class debugClass, String pattern, Object... arguments) {
+        record(debugClass, Level.DEBUG, pattern, arguments == null ? 0 : arguments.length,
+                null, null, arguments, null, null);
+    }
+
+    /**
+     * 
+     * @param debugClass The {@link java.lang.Class} generating the message
+     * @param message Supplies the message. It is called only if the message is recorded.
+     * @since 1.1
+     */
+    @Override
+    public void logDebugLazy(Class debugClass, Supplier<String> message) {
+        record(debugClass, Level.DEBUG, null, 0, null, null, null, message, null);
+    }
+
+    /**
+     * 
+     * @param errorClass The {@link java.lang.Class} generating the message
+     * @param pattern The message with one {} place holder
+     * @param argument The value replacing the place holder
+     * @since 1.1
+     */
+    @Override
+    public void logError(Class errorClass, String pattern, Object argument) {
+        record(errorClass, Level.ERROR, pattern, 1, argument, null, null, null, null);
+    }
+
+    /**
+     * 
+     * @param errorClass The {@link java.lang.Class} generating the message
+     * @param pattern The message with two {} place holders
+     * @param first The value replacing the first place holder
+     * @param second The value replacing the second place holder
+     * @since 1.1
+     */
+    @Override
+    public void logError(Class errorClass, String pattern, Object first, Object second) {
+        record(errorClass, Level.ERROR, pattern, 2, first, second, null, null, null);
+    }
+
+    /**
+     * 
+     * @param errorClass The {@link java.lang.Class} generating the message
+     * @param pattern The message with {} place holders
+     * @param arguments The values replacing the place holders. A {@link java.lang.Throwable}
+     *                  left over after the last place holder is logged as the exception.
+     * @since 1.1
+     */
+    @Override
+    public void logError(Class errorClass, String pattern, Object... arguments) {
+        record(errorClass, Level.ERROR, pattern, arguments == null ? 0 : arguments.length,
+                null, null, arguments, null, null);
+    }
+
+    /**
+     * 
+     * @param errorClass The {@link java.lang.Class} generating the message
+     * @param message Supplies the message. It is called only if the message is recorded.
+     * @since 1.1
+     */
+    @Override
+    public void logErrorLazy(Class errorClass, Supplier<String> message) {
+        record(errorClass, Level.ERROR, null, 0, null, null, null, message, null);
     }
 
     public boolean isRollingOn() 
     {
-        return rollingOn;
+        return config.rollingOn;
     }
 
     public void setRollingOn(boolean rollingOn) {
-        this.rollingOn = rollingOn;
+        reconfigure("log.rolling", String.valueOf(rollingOn));
+    }
+
+    /**
+     * 
+     * @param threshold The lowest level to be recorded e.g. INFO. An unknown
+     *                  level records everything.
+     * @since 1.1
+     */
+    @Override
+    public void setThreshold(String threshold) {
+        reconfigure("log.threshold", threshold);
+    }
+
+    /**
+     * 
+     * @return The lowest level which is recorded.
+     * @since 1.1
+     */
+    @Override
+    public String getThreshold() {
+        return Level.toLevel(config.threshold, Level.ALL).toString();
+    }
+
+    @Override
+    public boolean isFatalEnabled() {
+        return Level.FATAL_INT >= config.enabledThreshold;
+    }
+
+    @Override
+    public boolean isErrorEnabled() {
+        return Level.ERROR_INT >= config.enabledThreshold;
+    }
+
+    @Override
+    public boolean isWarningEnabled() {
+        return Level.WARN_INT >= config.enabledThreshold;
+    }
+
+    @Override
+    public boolean isInfoEnabled() {
+        return Level.INFO_INT >= config.enabledThreshold;
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return Level.DEBUG_INT >= config.enabledThreshold;
+    }
+
+    @Override
+    public LogEventBuilder atFatal(Class errorClass) {
+        return builder(errorClass, Level.FATAL);
+    }
+
+    @Override
+    public LogEventBuilder atAll(Class errorClass) {
+        return builder(errorClass, Level.ALL);
+    }
+
+    @Override
+    public LogEventBuilder atError(Class errorClass) {
+        return builder(errorClass, Level.ERROR);
+    }
+
+    @Override
+    public LogEventBuilder atWarning(Class warningClass) {
+        return builder(warningClass, Level.WARN);
+    }
+
+    @Override
+    public LogEventBuilder atInfo(Class infoClass) {
+        return builder(infoClass, Level.INFO);
+    }
+
+    @Override
+    public LogEventBuilder atDebug(Class debugClass) {
+        return builder(debugClass, Level.DEBUG);
+    }
+
+    /*
+        Hands out the builder of the calling thread, or a new one while that is
+        still in use.
+    */
+    private LogEventBuilder builder(Class category, Level level)
+    {
+        if(priority(level).toInt() < config.enabledThreshold)
+            return EventBuilder.DISABLED;
+        EventBuilder builder = builders.get().start(category, level);
+        if(builder == null)
+            builder = new EventBuilder(this).start(category, level);
+        return builder;
     }
 
     public String getDatePattern() {
-         if(datePattern == null)
-            datePattern="dd-MM-yyyy";
-        return datePattern;
+        return config.datePattern;
     }
 
     public void setDatePattern(String datePattern) 
     {
-        this.datePattern = datePattern;
+        reconfigure("log.datepattern", datePattern);
     }
     
     
@@ -0,0 +1,62 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.util.Map;
+
+/**
+ * The metrics of a {@link HasselFreeLogger} as shown by JMX clients, e.g.
+ * JConsole. A logger configured with {@code log.metrics.jmx=true} is
+ * registered as
+ * {@code net.dlinkddns.atulsaurabh.hasselfreelogger:type=HasselFreeLogger,name=<log.metrics.jmx.name>},
+ * or with {@code id=<n>} if no name is configured, until it is shut down or
+ * collected.
+ * <p>
+ * A latency is described by its {@code count}, {@code mean}, {@code p50},
+ * {@code p90}, {@code p99}, {@code p99.9} and {@code max}, all in
+ * nanoseconds.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ * @see net.dlinkddns.atulsaurabh.hasselfreelogger.api.LoggerStats
+ */
+public interface HasselFreeLoggerMXBean
+{
+    /**
+     * @return the number of recorded events by level
+     */
+    Map<String, Long> getEvents();
+
+    /**
+     * @return the number of bytes written by file
+     */
+    Map<String, Long> getBytesWritten();
+
+    /**
+     * @return the number of events waiting for the asynchronous writer
+     */
+    long getQueueDepth();
+
+    /**
+     * @return the number of events dropped because the queue was full
+     */
+    long getDroppedEvents();
+
+    /**
+     * @return the time a log call took to hand an event over to a writer thread
+     */
+    Map<String, Double> getEnqueueLatency();
+
+    /**
+     * @return the time to write an event into a file
+     */
+    Map<String, Double> getWriteLatency();
+
+    /**
+     * @return the time a roll of a file blocked its writers
+     */
+    Map<String, Double> getRollDuration();
+}
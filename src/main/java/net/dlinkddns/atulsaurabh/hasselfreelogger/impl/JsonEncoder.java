@@ -0,0 +1,309 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.TimeZone;
+import org.apache.log4j.spi.LocationInfo;
+
+/**
+ * Encodes the events of {@link LogFormat#JSON} as one JSON object per line:
+ * <pre>
+ * {"timestamp":"2024-01-31T10:15:30.123Z","level":"INFO","logger":"com.shop.Checkout",
+ *  "thread":"main","message":"order 42 paid","orderId":42,"amount":9.5}
+ * </pre>
+ * The key value pairs of a structured event follow the message as fields of
+ * their own, numbers and booleans unquoted. The fields {@code ndc},
+ * {@code mdc}, {@code location} and {@code exception} are written only if
+ * the event has them. The timestamp is UTC.
+ * <p>
+ * The encoder writes and escapes the characters straight into its reusable
+ * byte buffer as UTF-8. The message is rendered into a reusable
+ * {@link StringBuilder} and the text of the current second is cached, so an
+ * event without exception creates no intermediate strings beyond the ones
+ * the arguments create themselves.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class JsonEncoder implements EventEncoder
+{
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] bytes = new byte[1024];
+    private ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    private int length;
+
+    private final StringBuilder text = new StringBuilder(256);
+    private final ThrowableRenderer throwables;
+
+    private final SimpleDateFormat secondFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.");
+    private final Date date = new Date(0L);
+    private byte[] second = new byte[0];
+    private long secondFrom = 1L;
+
+    /**
+     * @param throwables renders the stack traces
+     * @since 1.1
+     */
+    JsonEncoder(ThrowableRenderer throwables) {
+        this.throwables = throwables;
+        secondFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    @Override
+    public ByteBuffer encode(LogEvent event) {
+        length = 0;
+        raw("{\"timestamp\":\"");
+        timestamp(event.timestamp);
+        raw("\",\"level\":\"");
+        raw(HasselFreeLogger.priority(event.level).toString());
+        raw("\",\"logger\":");
+        string(event.categoryName != null ? event.categoryName
+                : event.category == null ? HasselFreeLogger.class.getName() : event.category.getName());
+        raw(",\"thread\":");
+        string(event.threadName);
+        raw(",\"message\":");
+        text.setLength(0);
+        if (event.supplier != null)
+            text.append(event.supplier.get());
+        else if (event.argumentCount == 0)
+            text.append(event.message);
+        else
+            MessageFormatter.formatTo(text, event.message, event.argumentCount,
+                    event.argument0, event.argument1, event.arguments);
+        string(text);
+        KeyValues keyValues = event.keyValues;
+        if (keyValues != null) {
+            for (int i = 0; i < keyValues.size(); i++) {
+                put(',');
+                string(keyValues.key(i));
+                put(':');
+                value(keyValues, i);
+            }
+        }
+        String ndc = event.ndc();
+        if (ndc != null) {
+            raw(",\"ndc\":");
+            string(ndc);
+        }
+        mdc(event.mdc());
+        LocationInfo location = event.location;
+        if (location != null) {
+            raw(",\"location\":{\"class\":");
+            string(location.getClassName());
+            raw(",\"method\":");
+            string(location.getMethodName());
+            raw(",\"file\":");
+            string(location.getFileName());
+            raw(",\"line\":");
+            string(location.getLineNumber());
+            put('}');
+        }
+        String stackTrace = throwables.render(event);
+        if (stackTrace != null) {
+            raw(",\"exception\":");
+            string(stackTrace);
+        }
+        put('}');
+        put('\n');
+        if (buffer.array() != bytes)
+            buffer = ByteBuffer.wrap(bytes);
+        buffer.clear();
+        buffer.limit(length);
+        return buffer;
+    }
+
+    private void timestamp(long timestamp) {
+        long from = timestamp - Math.floorMod(timestamp, 1000L);
+        if (from != secondFrom) {
+            date.setTime(from);
+            second = secondFormat.format(date).getBytes(StandardCharsets.US_ASCII);
+            secondFrom = from;
+        }
+        ensure(second.length + 4);
+        System.arraycopy(second, 0, bytes, length, second.length);
+        length += second.length;
+        int millis = (int) (timestamp - from);
+        bytes[length++] = (byte) ('0' + millis / 100);
+        bytes[length++] = (byte) ('0' + millis / 10 % 10);
+        bytes[length++] = (byte) ('0' + millis % 10);
+        bytes[length++] = 'Z';
+    }
+
+    private void mdc(Map<?, ?> context) {
+        if (context.isEmpty())
+            return;
+        raw(",\"mdc\":{");
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : context.entrySet()) {
+            if (!first)
+                put(',');
+            first = false;
+            string(String.valueOf(entry.getKey()));
+            put(':');
+            text.setLength(0);
+            text.append(entry.getValue());
+            string(text);
+        }
+        put('}');
+    }
+
+    private void value(KeyValues keyValues, int index) {
+        switch (keyValues.kind(index)) {
+            case KeyValues.LONG:
+                number(keyValues.longAt(index));
+                return;
+            case KeyValues.DOUBLE:
+                number(keyValues.doubleAt(index));
+                return;
+            case KeyValues.BOOLEAN:
+                raw(keyValues.booleanAt(index) ? "true" : "false");
+                return;
+            default:
+                break;
+        }
+        Object value = keyValues.objectAt(index);
+        if (value == null) {
+            raw("null");
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            number(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            number(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            raw((Boolean) value ? "true" : "false");
+        } else {
+            text.setLength(0);
+            MessageFormatter.appendArgument(text, value);
+            string(text);
+        }
+    }
+
+    private void number(long value) {
+        if (value == Long.MIN_VALUE) {
+            raw("-9223372036854775808");
+            return;
+        }
+        ensure(20);
+        if (value < 0) {
+            bytes[length++] = '-';
+            value = -value;
+        }
+        int start = length;
+        do {
+            bytes[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            byte swap = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = swap;
+        }
+    }
+
+    /*
+        JSON has no literal for NaN and the infinities, so they are quoted.
+    */
+    private void number(double value) {
+        boolean finite = !Double.isNaN(value) && !Double.isInfinite(value);
+        text.setLength(0);
+        text.append(value);
+        if (!finite)
+            put('"');
+        raw(text);
+        if (!finite)
+            put('"');
+    }
+
+    private void string(CharSequence value) {
+        if (value == null) {
+            raw("null");
+            return;
+        }
+        int count = value.length();
+        ensure(count + 2);
+        bytes[length++] = '"';
+        for (int i = 0; i < count; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                ensure(1);
+                bytes[length++] = (byte) c;
+            } else if (c == '"' || c == '\\') {
+                escape(c);
+            } else if (c == '\n') {
+                escape('n');
+            } else if (c == '\r') {
+                escape('r');
+            } else if (c == '\t') {
+                escape('t');
+            } else if (c < 0x20) {
+                ensure(6);
+                bytes[length++] = '\\';
+                bytes[length++] = 'u';
+                bytes[length++] = '0';
+                bytes[length++] = '0';
+                bytes[length++] = HEX[c >> 4];
+                bytes[length++] = HEX[c & 0xF];
+            } else if (c < 0x800) {
+                ensure(2);
+                bytes[length++] = (byte) (0xC0 | c >> 6);
+                bytes[length++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < count
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int code = Character.toCodePoint(c, value.charAt(++i));
+                ensure(4);
+                bytes[length++] = (byte) (0xF0 | code >> 18);
+                bytes[length++] = (byte) (0x80 | code >> 12 & 0x3F);
+                bytes[length++] = (byte) (0x80 | code >> 6 & 0x3F);
+                bytes[length++] = (byte) (0x80 | code & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                ensure(1);
+                bytes[length++] = '?';
+            } else {
+                ensure(3);
+                bytes[length++] = (byte) (0xE0 | c >> 12);
+                bytes[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[length++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        ensure(1);
+        bytes[length++] = '"';
+    }
+
+    private void escape(char c) {
+        ensure(2);
+        bytes[length++] = '\\';
+        bytes[length++] = (byte) c;
+    }
+
+    /*
+        Appends ASCII text which needs no escaping.
+    */
+    private void raw(CharSequence value) {
+        int count = value.length();
+        ensure(count);
+        for (int i = 0; i < count; i++)
+            bytes[length++] = (byte) value.charAt(i);
+    }
+
+    private void put(char c) {
+        ensure(1);
+        bytes[length++] = (byte) c;
+    }
+
+    private void ensure(int count) {
+        if (length + count <= bytes.length)
+            return;
+        byte[] larger = new byte[Math.max(bytes.length * 2, length + count)];
+        System.arraycopy(bytes, 0, larger, 0, length);
+        bytes = larger;
+    }
+}
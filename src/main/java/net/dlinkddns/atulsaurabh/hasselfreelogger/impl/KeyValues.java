@@ -0,0 +1,158 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.util.Arrays;
+
+/**
+ * The key value pairs of a structured event. The primitive values are kept
+ * unboxed in {@link #numbers}, so adding them does not allocate once the
+ * arrays are large enough. An instance is reused for many events.
+ * <p>
+ * In the text formats the pairs follow the message as {@code key=value},
+ * separated by spaces. The JSON format writes them as fields of the event.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class KeyValues
+{
+    static final byte OBJECT = 0;
+    static final byte LONG = 1;
+    static final byte DOUBLE = 2;
+    static final byte BOOLEAN = 3;
+
+    private String[] keys = new String[8];
+    private byte[] kinds = new byte[8];
+    private Object[] objects = new Object[8];
+    private long[] numbers = new long[8];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    String key(int index) {
+        return keys[index];
+    }
+
+    byte kind(int index) {
+        return kinds[index];
+    }
+
+    Object objectAt(int index) {
+        return objects[index];
+    }
+
+    long longAt(int index) {
+        return numbers[index];
+    }
+
+    double doubleAt(int index) {
+        return Double.longBitsToDouble(numbers[index]);
+    }
+
+    boolean booleanAt(int index) {
+        return numbers[index] != 0L;
+    }
+
+    void add(String key, Object value) {
+        int index = next(key, OBJECT);
+        objects[index] = value;
+    }
+
+    void add(String key, long value) {
+        int index = next(key, LONG);
+        numbers[index] = value;
+    }
+
+    void add(String key, double value) {
+        int index = next(key, DOUBLE);
+        numbers[index] = Double.doubleToRawLongBits(value);
+    }
+
+    void add(String key, boolean value) {
+        int index = next(key, BOOLEAN);
+        numbers[index] = value ? 1L : 0L;
+    }
+
+    private int next(String key, byte kind) {
+        if (size == keys.length) {
+            int length = size * 2;
+            keys = Arrays.copyOf(keys, length);
+            kinds = Arrays.copyOf(kinds, length);
+            objects = Arrays.copyOf(objects, length);
+            numbers = Arrays.copyOf(numbers, length);
+        }
+        int index = size++;
+        keys[index] = key;
+        kinds[index] = kind;
+        objects[index] = null;
+        return index;
+    }
+
+    /**
+     * Replaces the pairs by the ones of {@code other}.
+     * @since 1.1
+     */
+    void copyFrom(KeyValues other) {
+        clear();
+        /*
+            The writer of the asynchronous logging copies a slot which may be
+            overwritten at the same time by a producer dropping the oldest
+            event. The copy is discarded then, it only must not fail.
+        */
+        String[] otherKeys = other.keys;
+        byte[] otherKinds = other.kinds;
+        Object[] otherObjects = other.objects;
+        long[] otherNumbers = other.numbers;
+        int count = Math.min(other.size, Math.min(Math.min(otherKeys.length, otherKinds.length),
+                Math.min(otherObjects.length, otherNumbers.length)));
+        for (int i = 0; i < count; i++) {
+            int index = next(otherKeys[i], otherKinds[i]);
+            objects[index] = otherObjects[i];
+            numbers[index] = otherNumbers[i];
+        }
+    }
+
+    /**
+     * Removes every pair, releasing the values.
+     * @since 1.1
+     */
+    void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(objects, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Appends the pairs as {@code " key=value"} for the text formats.
+     * @since 1.1
+     */
+    void appendTo(StringBuilder buffer) {
+        for (int i = 0; i < size; i++) {
+            buffer.append(' ').append(keys[i]).append('=');
+            appendValue(buffer, i);
+        }
+    }
+
+    void appendValue(StringBuilder buffer, int index) {
+        switch (kinds[index]) {
+            case LONG:
+                buffer.append(numbers[index]);
+                break;
+            case DOUBLE:
+                buffer.append(doubleAt(index));
+                break;
+            case BOOLEAN:
+                buffer.append(booleanAt(index));
+                break;
+            default:
+                MessageFormatter.appendArgument(buffer, objects[index]);
+                break;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import net.dlinkddns.atulsaurabh.hasselfreelogger.api.LoggerStats;
+
+/**
+ * Counts latencies in buckets like HdrHistogram does: every power of two is
+ * split into 16 buckets of equal width, so the relative error of a bucket is
+ * at most about six percent over the whole range of a {@code long}.
+ * <p>
+ * Every bucket is a {@link LongAdder}, so threads recording at the same time
+ * update different cells instead of contending on one counter.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final LongAdder[] buckets = new LongAdder[(64 - SUB_BUCKET_BITS) * SUB_BUCKETS];
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++)
+            buckets[i] = new LongAdder();
+    }
+
+    /**
+     * @param nanos the latency to record
+     * @since 1.1
+     */
+    void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        buckets[indexOf(value)].increment();
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the highest value counted in the bucket
+     */
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * @return the current distribution. Values recorded while the snapshot
+     *         is taken may or may not be part of it.
+     * @since 1.1
+     */
+    LoggerStats.Latency snapshot() {
+        long[] counts = new long[buckets.length];
+        int used = 0;
+        long count = 0L;
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            if (counts[i] != 0)
+                used++;
+            count += counts[i];
+        }
+        long[] values = new long[used];
+        long[] nonEmpty = new long[used];
+        for (int i = 0, j = 0; i < counts.length; i++) {
+            if (counts[i] == 0)
+                continue;
+            values[j] = highestValueOf(i);
+            nonEmpty[j++] = counts[i];
+        }
+        return new LoggerStats.Latency(count, total.sum(), max.get(), values, nonEmpty);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The directory holding the level files. It is resolved once, on the first
+ * file requested, in the following order:
+ * <ol>
+ *     <li> the system property {@value #DIRECTORY_PROPERTY}, if set
+ *     <li> {@code log.directory} if it is absolute
+ *     <li> {@code log.directory} relative to {@code log.directory.base} or to
+ *          the system property {@value #BASE_PROPERTY}
+ *     <li> {@code log.directory} relative to the class path root, if the
+ *          classes are loaded from a directory
+ *     <li> {@code log.directory} relative to the working directory, e.g. if
+ *          the classes are packaged in a jar
+ * </ol>
+ * The directory is created if it is missing. The resolved {@link Path} of
+ * every file is cached.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class LogDirectory
+{
+    /**
+     * System property overriding {@code log.directory}.
+     */
+    static final String DIRECTORY_PROPERTY = "hasselfreelogger.log.directory";
+
+    /**
+     * System property used as base of a relative {@code log.directory} if
+     * {@code log.directory.base} is not set.
+     */
+    static final String BASE_PROPERTY = "hasselfreelogger.log.base";
+
+    private final String name;
+    private final String base;
+
+    private volatile Path directory;
+    private final Map<String, Path> files = new ConcurrentHashMap<>();
+
+    /**
+     * @param name the configured directory, {@code log} if {@code null}
+     * @param base the configured base of a relative directory or {@code null}
+     * @since 1.1
+     */
+    LogDirectory(String name, String base) {
+        this.name = name == null || name.trim().isEmpty() ? "log" : name.trim();
+        this.base = base == null || base.trim().isEmpty() ? null : base.trim();
+    }
+
+    /**
+     * @param fileName the name of a level file
+     * @return the file inside the log directory
+     * @throws IOException if the directory can not be created
+     * @since 1.1
+     */
+    Path resolve(String fileName) throws IOException {
+        Path file = files.get(fileName);
+        if (file == null) {
+            file = directory().resolve(fileName).toAbsolutePath().normalize();
+            Path parent = file.getParent();
+            if (parent != null)
+                Files.createDirectories(parent);
+            Path cached = files.putIfAbsent(fileName, file);
+            if (cached != null)
+                file = cached;
+        }
+        return file;
+    }
+
+    private Path directory() throws IOException {
+        Path resolved = directory;
+        if (resolved == null) {
+            resolved = locate().toAbsolutePath().normalize();
+            Files.createDirectories(resolved);
+            directory = resolved;
+        }
+        return resolved;
+    }
+
+    private Path locate() {
+        String configured = System.getProperty(DIRECTORY_PROPERTY);
+        Path path = Paths.get(configured != null ? configured : name);
+        if (path.isAbsolute())
+            return path;
+        String baseDirectory = base != null ? base : System.getProperty(BASE_PROPERTY);
+        if (baseDirectory != null)
+            return Paths.get(baseDirectory).resolve(path);
+        Path classPathRoot = classPathRoot();
+        if (classPathRoot != null)
+            return classPathRoot.resolve(path);
+        return Paths.get(System.getProperty("user.dir")).resolve(path);
+    }
+
+    /*
+        The directory used to be resolved against the class path root. That root
+        only exists if the classes are loaded from a directory; inside a jar
+        getResource("/") is null or not a file URL.
+    */
+    private static Path classPathRoot() {
+        URL root = LogDirectory.class.getResource("/");
+        if (root == null || !"file".equals(root.getProtocol()))
+            return null;
+        try {
+            return Paths.get(root.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
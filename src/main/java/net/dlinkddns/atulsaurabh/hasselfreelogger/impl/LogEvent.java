@@ -0,0 +1,219 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.apache.log4j.Level;
+import org.apache.log4j.MDC;
+import org.apache.log4j.NDC;
+import org.apache.log4j.spi.LocationInfo;
+
+/**
+ * A mutable log event. Instances are preallocated inside the slots of
+ * {@link AsyncDispatcher} and reused for every event, so publishing an event
+ * only copies references and does not allocate.
+ * <p>
+ * The message is kept unformatted, i.e. as a pattern with its arguments or as a
+ * {@link Supplier}, so that it is rendered only by the thread recording it.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class LogEvent
+{
+    /**
+     * The class generating the event or {@code null} for the logger itself.
+     */
+    Class category;
+
+    /**
+     * The name of the category if its class is not available, e.g. while a
+     * binary file is decoded. It overrides {@link #category}.
+     */
+    String categoryName;
+
+    /**
+     * The level deciding the file where the event is recorded.
+     */
+    Level level;
+
+    long timestamp;
+
+    String threadName;
+
+    /**
+     * The message or, if {@link #argumentCount} is not zero, its pattern.
+     */
+    String message;
+
+    int argumentCount;
+
+    /**
+     * The first two arguments of a one or two argument log call.
+     */
+    Object argument0;
+
+    Object argument1;
+
+    /**
+     * All the arguments of a log call taking an array, otherwise {@code null}.
+     */
+    Object[] arguments;
+
+    /**
+     * Supplies the message if it is not {@code null}.
+     */
+    Supplier<String> supplier;
+
+    Throwable throwable;
+
+    /**
+     * The caller location. It is captured only when the conversion pattern
+     * prints location information.
+     */
+    LocationInfo location;
+
+    /**
+     * The key value pairs of a structured event or {@code null}. They belong
+     * to the caller unless they were copied by {@link #copyKeyValues}.
+     */
+    KeyValues keyValues;
+
+    private KeyValues ownKeyValues;
+
+    /**
+     * Whether {@link #ndc} and {@link #mdc} hold the context of the logging
+     * thread. An event recorded by another thread, e.g. the writer of the
+     * asynchronous logging, must not read the context of that thread.
+     */
+    private boolean contextCaptured;
+
+    private String ndc;
+
+    private Map<?, ?> mdc;
+
+    /**
+     * The stack trace rendered by the {@link ThrowableRenderer} for the first
+     * file the event is written into and reused for the other files.
+     */
+    String renderedThrowable;
+
+    void set(Class category, Level level, long timestamp, String threadName,
+            String message, int argumentCount, Object argument0, Object argument1, Object[] arguments,
+            Supplier<String> supplier, Throwable throwable, LocationInfo location) {
+        this.category = category;
+        this.categoryName = null;
+        this.level = level;
+        this.timestamp = timestamp;
+        this.threadName = threadName;
+        this.message = message;
+        this.argumentCount = argumentCount;
+        this.argument0 = argument0;
+        this.argument1 = argument1;
+        this.arguments = arguments;
+        this.supplier = supplier;
+        this.throwable = throwable;
+        this.location = location;
+        this.keyValues = null;
+        this.renderedThrowable = null;
+        this.contextCaptured = false;
+        this.ndc = null;
+        this.mdc = null;
+    }
+
+    void copyFrom(LogEvent other) {
+        set(other.category, other.level, other.timestamp, other.threadName,
+                other.message, other.argumentCount, other.argument0, other.argument1, other.arguments,
+                other.supplier, other.throwable, other.location);
+        copyKeyValues(other.keyValues);
+        contextCaptured = other.contextCaptured;
+        ndc = other.ndc;
+        mdc = other.mdc;
+    }
+
+    /**
+     * Keeps the NDC and a copy of the MDC of the calling thread, so that the
+     * event can be rendered by another thread. It is called only if the
+     * pattern or the format prints them.
+     * @since 1.1
+     */
+    void captureContext() {
+        contextCaptured = true;
+        ndc = NDC.get();
+        Hashtable<?, ?> context = MDC.getContext();
+        mdc = context == null || context.isEmpty() ? null : (Map<?, ?>) context.clone();
+    }
+
+    /**
+     * @return the NDC of the logging thread or {@code null}
+     * @since 1.1
+     */
+    String ndc() {
+        return contextCaptured ? ndc : NDC.get();
+    }
+
+    /**
+     * @return the MDC of the logging thread, never {@code null}
+     * @since 1.1
+     */
+    Map<?, ?> mdc() {
+        if (contextCaptured)
+            return mdc == null ? Collections.emptyMap() : mdc;
+        Hashtable<?, ?> context = MDC.getContext();
+        return context == null ? Collections.emptyMap() : context;
+    }
+
+    /**
+     * Copies the key value pairs into pairs owned by this event, because the
+     * ones of the caller are reused as soon as the log call returns.
+     * @since 1.1
+     */
+    void copyKeyValues(KeyValues source) {
+        if (source == null || source.size() == 0) {
+            keyValues = null;
+            return;
+        }
+        if (ownKeyValues == null)
+            ownKeyValues = new KeyValues();
+        ownKeyValues.copyFrom(source);
+        keyValues = ownKeyValues;
+    }
+
+    void clear() {
+        set(null, null, 0L, null, null, 0, null, null, null, null, null, null);
+        if (ownKeyValues != null)
+            ownKeyValues.clear();
+    }
+
+    /**
+     * @return the message with its place holders replaced by the arguments,
+     *         followed by the key value pairs
+     * @since 1.1
+     */
+    String renderMessage() {
+        String rendered = supplier != null ? supplier.get()
+                : MessageFormatter.format(message, argumentCount, argument0, argument1, arguments);
+        if (keyValues == null)
+            return rendered;
+        StringBuilder buffer = new StringBuilder(rendered == null ? "null" : rendered);
+        keyValues.appendTo(buffer);
+        return buffer.toString();
+    }
+
+    /**
+     * @return the exception of the event, which may also be passed as the last
+     *         argument of a pattern
+     * @since 1.1
+     */
+    Throwable renderThrowable() {
+        if (throwable != null)
+            return throwable;
+        return MessageFormatter.trailingThrowable(message, argumentCount, argument0, argument1, arguments);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.nio.charset.Charset;
+
+/**
+ * Decides how the events are encoded into the level files. It is configured
+ * with the key <b><i>log.format</i></b>. Any format other than
+ * {@link #TEXT} is written by the channel or mmap appender.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+enum LogFormat
+{
+    /**
+     * The text of the conversion pattern. This is the default.
+     */
+    TEXT,
+
+    /**
+     * Compact binary records, see {@link BinaryEncoder}. The files are turned
+     * back into text by {@link BinaryLogDecoder}.
+     */
+    BINARY,
+
+    /**
+     * One JSON object per line, see {@link JsonEncoder}.
+     */
+    JSON;
+
+    /**
+     * @param name the configured value, may be {@code null}
+     * @return the matching format or {@link #TEXT} if nothing matches
+     */
+    static LogFormat of(String name) {
+        if (name != null) {
+            String normalized = name.trim().replace('-', '_').toUpperCase();
+            for (LogFormat format : values())
+                if (format.name().equals(normalized))
+                    return format;
+        }
+        return TEXT;
+    }
+
+    /**
+     * @param pattern the conversion pattern
+     * @param throwables renders the stack traces
+     * @return a new encoder of this format for one file
+     */
+    EventEncoder newEncoder(CompiledPattern pattern, ThrowableRenderer throwables) {
+        if (this == BINARY)
+            return new BinaryEncoder(pattern, throwables);
+        if (this == JSON)
+            return new JsonEncoder(throwables);
+        return new PatternEncoder(pattern, Charset.defaultCharset(), throwables);
+    }
+
+    /**
+     * @return true if an event encoded once can be copied into any file of
+     *         this format. A binary file refers to the dictionary written
+     *         into that file before, so every file encodes on its own.
+     */
+    boolean isShareable() {
+        return this != BINARY;
+    }
+}
@@ -0,0 +1,471 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import org.apache.log4j.Level;
+
+/**
+ * Reads the events of a time range from a level file and its rolled files
+ * without reading the files from the start. The {@link TimeIndex} of every
+ * file tells which blocks of the file hold events of the range; only those
+ * blocks are read, through a read only memory mapping. A compressed rolled
+ * file is decompressed up to the end of its last matching block, skipping
+ * the bytes before its first one.
+ * <p>
+ * The range is matched block by block, so the first and the last block may
+ * contribute some events just outside of the range. The events written after
+ * the last block of the index, e.g. the latest ones of the file still being
+ * written, are read if the range reaches beyond the indexed ones. A file
+ * without an index, e.g. a binary file or one written before the index was
+ * kept, is skipped.
+ * <p>
+ * From the command line the matching lines are written to the standard output
+ * as they are stored:
+ * <pre>
+ * java -cp HasselFreeLogger.jar:log4j.jar \
+ *      net.dlinkddns.atulsaurabh.hasselfreelogger.impl.LogQuery \
+ *      [--properties logger.properties] error 2026-10-18T14:00 2026-10-18T14:05
+ * java -cp HasselFreeLogger.jar:log4j.jar \
+ *      net.dlinkddns.atulsaurabh.hasselfreelogger.impl.LogQuery \
+ *      --file /var/log/app/all.log 1760796000000 1760796300000
+ * </pre>
+ * A time is a date and time in the local time zone or milliseconds since the
+ * epoch.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+public final class LogQuery
+{
+    /**
+     * Bytes of a file mapped at once.
+     */
+    private static final long WINDOW = 64L << 20;
+
+    private final LoggerConfig config;
+
+    /**
+     * A range of bytes of one file.
+     */
+    private static final class Segment
+    {
+        final Path file;
+        final long start;
+        long end;
+
+        Segment(Path file, long start, long end) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+
+        boolean isCompressed() {
+            return file.getFileName().toString().endsWith(".gz");
+        }
+    }
+
+    /**
+     * @param properties the configuration of the logger writing the files,
+     *                   which names the log directory and the level files
+     * @since 1.1
+     */
+    public LogQuery(Properties properties) {
+        this.config = LoggerConfig.of(properties, null);
+    }
+
+    /**
+     * @param level the level whose file is read, e.g. {@link Level#ERROR} for
+     *              {@code error.log} or {@link Level#ALL} for {@code all.log}.
+     *              A level routed by {@code log.route.<level>} is read from
+     *              the first file of its route.
+     * @param from the first millisecond of the range
+     * @param to the millisecond after the range
+     * @return the lines of the events of the range, oldest file first. The
+     *         stream has to be closed.
+     * @throws IOException if an index can not be read or the level is routed
+     *                     to no file
+     * @since 1.1
+     */
+    public Stream<String> range(Level level, long from, long to) throws IOException {
+        Iterator<Segment> segments = segments(fileOf(level), from, to, new ArrayList<>()).iterator();
+        InputStream in = new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return segments.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                try {
+                    return open(segments.next());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        Charset charset = config.logFormat == LogFormat.JSON ? StandardCharsets.UTF_8 : Charset.defaultCharset();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset), 64 << 10);
+        return reader.lines().onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Copies the events of the range as they are stored.
+     *
+     * @param level the level whose file is read
+     * @param from the first millisecond of the range
+     * @param to the millisecond after the range
+     * @param out receives the events, oldest file first
+     * @return the files skipped because they have no index
+     * @throws IOException if a file can not be read or the events can not be
+     *                     written
+     * @since 1.1
+     */
+    public List<Path> write(Level level, long from, long to, OutputStream out) throws IOException {
+        return write(fileOf(level), from, to, Channels.newChannel(out));
+    }
+
+    /*
+        The first file the writer routes the level to, which holds every event
+        of the level; the later ones are usually shared with other levels.
+    */
+    private Path fileOf(Level level) throws IOException {
+        String[] names = config.routingTable.filesOf(level);
+        if (names.length == 0)
+            throw new IOException("No LOG FILE Records " + level);
+        return config.logDirectory.resolve(names[0]);
+    }
+
+    private static List<Path> write(Path file, long from, long to, WritableByteChannel out) throws IOException {
+        List<Path> skipped = new ArrayList<>();
+        for (Segment segment : segments(file, from, to, skipped)) {
+            if (segment.isCompressed()) {
+                try (InputStream in = open(segment)) {
+                    byte[] buffer = new byte[64 << 10];
+                    for (int read = in.read(buffer); read >= 0; read = in.read(buffer))
+                        writeFully(out, ByteBuffer.wrap(buffer, 0, read));
+                }
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(segment.file, StandardOpenOption.READ)) {
+                long end = Math.min(segment.end, channel.size());
+                for (long position = segment.start; position < end; position += WINDOW) {
+                    MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(WINDOW, end - position));
+                    try {
+                        writeFully(out, window);
+                    } finally {
+                        MappedFileSink.unmap(window);
+                    }
+                }
+            }
+        }
+        return skipped;
+    }
+
+    private static void writeFully(WritableByteChannel out, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining())
+            out.write(bytes);
+    }
+
+    /*
+        The matching ranges of the file and of its rolled files, ordered by the
+        time of their first block. A range between two blocks which is not
+        indexed matches if the range of the query lies between the blocks.
+    */
+    private static List<Segment> segments(Path file, long from, long to, List<Path> skipped) throws IOException {
+        List<Path> files = new ArrayList<>();
+        List<long[]> indexes = new ArrayList<>();
+        String prefix = file.getFileName() + ".";
+        Path directory = file.toAbsolutePath().getParent();
+        if (!Files.isDirectory(directory))
+            return Collections.emptyList();
+        try (DirectoryStream<Path> candidates = Files.newDirectoryStream(directory, candidate -> {
+                String name = candidate.getFileName().toString();
+                return (name.equals(file.getFileName().toString()) || name.startsWith(prefix))
+                        && !name.endsWith(TimeIndex.SUFFIX) && !name.endsWith(".part");
+            })) {
+            for (Path candidate : candidates) {
+                long[] blocks = TimeIndex.read(TimeIndex.sidecarOf(candidate));
+                if (blocks == null) {
+                    skipped.add(candidate);
+                    continue;
+                }
+                files.add(candidate);
+                indexes.add(blocks);
+            }
+        }
+        Integer[] order = new Integer[files.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, Comparator.<Integer>comparingLong(i -> firstTimestamp(files.get(i),
+                indexes.get(i))).thenComparing(i -> files.get(i).equals(file)));
+        List<Segment> segments = new ArrayList<>();
+        for (int i : order)
+            addSegments(segments, files.get(i), indexes.get(i), from, to);
+        return segments;
+    }
+
+    /*
+        A file without blocks, e.g. a file just opened, sorts by its time of
+        modification.
+    */
+    private static long firstTimestamp(Path file, long[] blocks) {
+        if (blocks.length > 0)
+            return blocks[2];
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static void addSegments(List<Segment> segments, Path file, long[] blocks, long from, long to)
+            throws IOException {
+        boolean compressed = file.getFileName().toString().endsWith(".gz");
+        long length = compressed ? Long.MAX_VALUE : contentLength(file);
+        long previousEnd = 0L;
+        long previousLatest = Long.MIN_VALUE;
+        for (int i = 0; i + 3 < blocks.length; i += 4) {
+            long start = blocks[i];
+            long end = blocks[i + 1];
+            long earliest = blocks[i + 2];
+            long latest = blocks[i + 3];
+            if (start > previousEnd && from <= earliest && to > previousLatest)
+                add(segments, file, previousEnd, start);
+            if (latest >= from && earliest < to)
+                add(segments, file, start, Math.min(end, length));
+            previousEnd = Math.max(previousEnd, end);
+            previousLatest = Math.max(previousLatest, latest);
+        }
+        if (length > previousEnd && to > previousLatest)
+            add(segments, file, previousEnd, length);
+    }
+
+    /*
+        A file written by the mmap appender is longer than its content while
+        it is open.
+    */
+    private static long contentLength(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return MappedFileSink.contentLength(channel);
+        }
+    }
+
+    private static void add(List<Segment> segments, Path file, long start, long end) {
+        if (start >= end)
+            return;
+        Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (last != null && last.file.equals(file) && last.end == start)
+            last.end = end;
+        else
+            segments.add(new Segment(file, start, end));
+    }
+
+    /*
+        Reads a segment through a read only mapping of the file, or by
+        decompressing a compressed file up to the end of the segment.
+    */
+    private static InputStream open(Segment segment) throws IOException {
+        if (segment.isCompressed()) {
+            InputStream in = new GZIPInputStream(Files.newInputStream(segment.file), 64 << 10);
+            try {
+                for (long skipped = 0L; skipped < segment.start; ) {
+                    long n = in.skip(segment.start - skipped);
+                    if (n <= 0L)
+                        break;
+                    skipped += n;
+                }
+            } catch (IOException | RuntimeException e) {
+                in.close();
+                throw e;
+            }
+            return new BoundedInputStream(in, segment.end - segment.start);
+        }
+        return new MappedInputStream(segment.file, segment.start, segment.end);
+    }
+
+    private static final class BoundedInputStream extends InputStream
+    {
+        private final InputStream in;
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long remaining) {
+            this.in = in;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0L)
+                return -1;
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0)
+                remaining -= read;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class MappedInputStream extends InputStream
+    {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+        private MappedByteBuffer window;
+
+        MappedInputStream(Path file, long start, long end) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.end = Math.min(end, channel.size());
+            this.position = start;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextWindow())
+                return -1;
+            return window.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0)
+                return 0;
+            if (!nextWindow())
+                return -1;
+            int read = Math.min(length, window.remaining());
+            window.get(buffer, offset, read);
+            return read;
+        }
+
+        private boolean nextWindow() throws IOException {
+            if (window != null && window.hasRemaining())
+                return true;
+            if (window != null) {
+                MappedFileSink.unmap(window);
+                window = null;
+            }
+            if (position >= end)
+                return false;
+            long size = Math.min(WINDOW, end - position);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            position += size;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (window != null) {
+                MappedFileSink.unmap(window);
+                window = null;
+            }
+            channel.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Properties properties = new Properties();
+        Path file = null;
+        List<String> arguments = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("--properties".equals(args[i]) && i + 1 < args.length)
+                properties = ConfigWatcher.load(Paths.get(args[++i]));
+            else if ("--file".equals(args[i]) && i + 1 < args.length)
+                file = Paths.get(args[++i]);
+            else
+                arguments.add(args[i]);
+        }
+        if (arguments.size() != (file == null ? 3 : 2)) {
+            usage();
+            return;
+        }
+        Level level = file == null ? RateLimiter.levelOf(arguments.get(0)) : null;
+        if (file == null && level == null) {
+            System.err.println("Unknown level: " + arguments.get(0));
+            usage();
+            return;
+        }
+        int first = file == null ? 1 : 0;
+        long from = parseTime(arguments.get(first));
+        long to = parseTime(arguments.get(first + 1));
+        try (FileOutputStream out = new FileOutputStream(FileDescriptor.out)) {
+            List<Path> skipped;
+            if (file == null)
+                skipped = new LogQuery(properties).write(level, from, to, out);
+            else
+                skipped = write(file.toAbsolutePath(), from, to, out.getChannel());
+            for (Path path : skipped)
+                System.err.println("Not indexed, skipped: " + path);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: LogQuery [--properties file] level from to");
+        System.err.println("       LogQuery --file logfile from to");
+        System.err.println("A level is one of all, debug, info, warn (or warning), error and fatal.");
+        System.exit(2);
+    }
+
+    /*
+        Reads milliseconds since the epoch or a local date and time like
+        2026-10-18T14:05 or 2026-10-18 14:05:30.
+    */
+    static long parseTime(String text) {
+        String time = text.trim();
+        if (!time.isEmpty() && time.chars().allMatch(Character::isDigit))
+            return Long.parseLong(time);
+        return LocalDateTime.parse(time.replace(' ', 'T')).atZone(ZoneId.systemDefault()).toInstant()
+                .toEpochMilli();
+    }
+}
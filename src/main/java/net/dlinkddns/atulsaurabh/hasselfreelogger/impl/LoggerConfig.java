@@ -0,0 +1,434 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.log4j.Level;
+
+/**
+ * The settings of a {@link HasselFreeLogger}, read from its properties. A
+ * configuration never changes once it is created: the logger replaces it as a
+ * whole, so a log call reading it once sees either the old or the new
+ * settings but never a mixture of both.
+ * <p>
+ * A key which is missing takes its default value, the same one the default
+ * constructor of the logger uses, e.g. {@code debug.log} for
+ * <b><i>log.debug</i></b>. The stack trace renderer, the rate limiter, the log
+ * directory and the compiled pattern of the previous configuration are reused
+ * if their keys did not change, so their caches and counters survive a reload.
+ * <p>
+ * {@link #changedKeys(LoggerConfig)} tells which keys two configurations
+ * differ in, and the {@code changes} methods what the logger has to rebuild
+ * for them.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class LoggerConfig
+{
+    /**
+     * The configuration of the default constructor.
+     */
+    static final LoggerConfig DEFAULT = of(new Properties(), null);
+
+    private static final String[] FILE_KEYS = {"log.all", "log.debug", "log.error", "log.fatal", "log.info",
+            "log.warn", "log.directory", "log.directory.base"};
+
+    private static final String[] DISPATCH_KEYS = {"log.async", "log.striped"};
+
+    /*
+        Keys of the settings every open file is written with.
+    */
+    private static final String[] SINK_KEYS = {"log.rolling", "log.datepattern", "log.conversionpattern",
+            "log.appender", "log.format", "log.throwable", "log.mmap", "log.flush", "log.index"};
+
+    /*
+        Keys of the network sink, which is also restarted if the log directory
+        or the stack trace settings change.
+    */
+    private static final String[] NETWORK_KEYS = {"log.network", "log.throwable", "log.directory"};
+
+    private static final String[] LIVE_KEYS = {"log.threshold", "log.metrics.latency", "log.metrics.jmx",
+            "log.flightrecorder"};
+
+    final Properties properties;
+
+    /**
+     * Identifies the files of this configuration and the settings they are
+     * written with. It is the one of the previous configuration unless a key
+     * changing the files or their settings changed.
+     */
+    final Object fileGeneration;
+
+    final String directoryName;
+    final LogDirectory logDirectory;
+    final String allFileName;
+    final String debugFileName;
+    final String errorFileName;
+    final String fatalFileName;
+    final String infoFileName;
+    final String warnFileName;
+    final RoutingTable routingTable;
+
+    final String datePattern;
+    final String conversionPattern;
+    final CompiledPattern compiledPattern;
+    final boolean rollingOn;
+    final RollingPolicy rollingPolicy;
+    final AppenderType appenderType;
+    final LogFormat logFormat;
+    final ThrowableRenderer throwableRenderer;
+
+    final long mmapRegionSize;
+    final long mmapForceInterval;
+
+    final FlushPolicy flushPolicy;
+    final long flushBatchSize;
+    final long flushMaxDelay;
+    final boolean flushOnError;
+
+    final long indexBlockEvents;
+    final long indexBlockBytes;
+
+    final boolean asyncOn;
+    final int asyncBufferSize;
+    final WaitStrategy asyncWaitStrategy;
+    final OverflowPolicy asyncOverflowPolicy;
+    final Level asyncDiscardLevel;
+
+    final boolean stripedOn;
+    final int stripedBufferSize;
+
+    /**
+     * The collector the events are shipped to as {@code host:port}, or
+     * {@code null} if they are not shipped.
+     */
+    final String networkAddress;
+    final boolean networkUdp;
+    final NetworkFormat networkFormat;
+    final int networkFacility;
+    final String networkAppName;
+    final int networkThreshold;
+    final String networkSpoolName;
+    final long networkSpoolSize;
+    final long networkBatchSize;
+    final long networkBackoff;
+    final long networkMaxBackoff;
+
+    /**
+     * Whether an event recorded by another thread than the logging one has
+     * to carry the NDC and MDC, because the pattern or the format prints
+     * them.
+     */
+    final boolean contextRequired;
+
+    final int threshold;
+
+    /**
+     * The lowest level a log call does anything for, which is below the
+     * threshold if the flight recorder keeps the events below it.
+     */
+    final int enabledThreshold;
+    final FlightRecorder flightRecorder;
+    final boolean metricsTimed;
+
+    /**
+     * Whether the metrics are published through JMX, and the name they are
+     * published under or {@code null} for a number.
+     */
+    final boolean metricsJmx;
+    final String metricsJmxName;
+    final RateLimiter rateLimiter;
+    final int rateLimitSummaryInterval;
+
+    private LoggerConfig(Properties properties, LoggerConfig previous) {
+        this.properties = properties;
+        Set<String> changed = previous == null ? null : previous.changedKeys(this);
+        this.fileGeneration = changed != null && !changesSinks(changed) && !changesFiles(changed)
+                ? previous.fileGeneration : new Object();
+        this.directoryName = properties.getProperty("log.directory", "log");
+        this.logDirectory = unchanged(changed, "log.directory")
+                ? previous.logDirectory : new LogDirectory(directoryName, properties.getProperty("log.directory.base"));
+        this.allFileName = properties.getProperty("log.all", "all.log");
+        this.debugFileName = properties.getProperty("log.debug", "debug.log");
+        this.errorFileName = properties.getProperty("log.error", "error.log");
+        this.fatalFileName = properties.getProperty("log.fatal", "fatal.log");
+        this.infoFileName = properties.getProperty("log.info", "info.log");
+        this.warnFileName = properties.getProperty("log.warn", "warn.log");
+        this.routingTable = new RoutingTable(properties, this::fileNameOf);
+
+        this.datePattern = properties.getProperty("log.datepattern", "dd-MM-yyyy");
+        this.conversionPattern = properties.getProperty("log.conversionpattern", "[%p] %d %c %M - %m%n");
+        this.compiledPattern = previous != null && previous.conversionPattern.equals(conversionPattern)
+                ? previous.compiledPattern : new CompiledPattern(conversionPattern);
+        this.rollingOn = Boolean.parseBoolean(trim(properties.getProperty("log.rolling")));
+        String compress = trim(properties.getProperty("log.rolling.compress"));
+        this.rollingPolicy = new RollingPolicy(parseSize(properties.getProperty("log.rolling.maxSize"), 0L),
+                compress != null && (compress.equalsIgnoreCase("gzip") || Boolean.parseBoolean(compress)),
+                parseInt(properties.getProperty("log.rolling.maxFiles"), 0),
+                parseSize(properties.getProperty("log.rolling.maxTotalSize"), 0L));
+        this.logFormat = LogFormat.of(properties.getProperty("log.format"));
+        AppenderType appender = AppenderType.of(properties.getProperty("log.appender"));
+        this.appenderType = logFormat != LogFormat.TEXT && appender == AppenderType.LOG4J
+                ? AppenderType.CHANNEL : appender;
+        this.throwableRenderer = unchanged(changed, "log.throwable.")
+                ? previous.throwableRenderer
+                : new ThrowableRenderer(parseInt(properties.getProperty("log.throwable.window"), 0),
+                        parseInt(properties.getProperty("log.throwable.maxdepth"), -1),
+                        parseInt(properties.getProperty("log.throwable.maxcauses"), -1));
+
+        this.mmapRegionSize = parseSize(properties.getProperty("log.mmap.regionsize"), 32L << 20);
+        this.mmapForceInterval = parseInt(properties.getProperty("log.mmap.forceinterval"), 1000);
+
+        String flush = properties.getProperty("log.flush");
+        this.flushPolicy = FlushPolicy.of(flush);
+        this.flushBatchSize = parseSize(properties.getProperty("log.flush.batchsize"), 64L << 10);
+        this.flushMaxDelay = flushPolicy == FlushPolicy.INTERVAL ? FlushPolicy.intervalOf(flush, 1000L)
+                : parseInt(properties.getProperty("log.flush.maxdelay"), 1000);
+        String onError = trim(properties.getProperty("log.flush.onerror"));
+        this.flushOnError = onError == null || Boolean.parseBoolean(onError);
+
+        String index = trim(properties.getProperty("log.index"));
+        boolean indexOn = index == null || Boolean.parseBoolean(index);
+        this.indexBlockEvents = indexOn ? parseInt(properties.getProperty("log.index.events"), 1024) : 0L;
+        this.indexBlockBytes = indexOn ? parseSize(properties.getProperty("log.index.bytes"), 64L << 10) : 0L;
+
+        this.asyncOn = Boolean.parseBoolean(trim(properties.getProperty("log.async")));
+        this.asyncBufferSize = parseInt(properties.getProperty("log.async.buffersize"), 8192);
+        this.asyncWaitStrategy = WaitStrategy.of(properties.getProperty("log.async.waitstrategy"));
+        this.asyncOverflowPolicy = OverflowPolicy.of(properties.getProperty("log.async.overflow"));
+        this.asyncDiscardLevel = Level.toLevel(properties.getProperty("log.async.discardlevel"), Level.INFO);
+
+        this.stripedOn = Boolean.parseBoolean(trim(properties.getProperty("log.striped")));
+        this.stripedBufferSize = parseInt(properties.getProperty("log.striped.buffersize"), 1024);
+
+        String network = trim(properties.getProperty("log.network"));
+        this.networkAddress = network == null || network.isEmpty() ? null : network;
+        this.networkUdp = "udp".equalsIgnoreCase(trim(properties.getProperty("log.network.protocol")));
+        this.networkFormat = NetworkFormat.of(properties.getProperty("log.network.format"));
+        this.networkFacility = parseInt(properties.getProperty("log.network.facility"), 1);
+        this.networkAppName = properties.getProperty("log.network.appname", "HasselFreeLogger");
+        this.networkThreshold = Level.toLevel(properties.getProperty("log.network.threshold"), Level.ALL).toInt();
+        this.networkSpoolName = properties.getProperty("log.network.spool", "network.spool");
+        this.networkSpoolSize = parseSize(properties.getProperty("log.network.spoolsize"), 64L << 20);
+        this.networkBatchSize = parseSize(properties.getProperty("log.network.batchsize"), 64L << 10);
+        this.networkBackoff = parseInt(properties.getProperty("log.network.backoff"), 100);
+        this.networkMaxBackoff = parseInt(properties.getProperty("log.network.backoff.max"), 30000);
+
+        this.contextRequired = compiledPattern.isContextRequired() || logFormat != LogFormat.TEXT
+                || networkAddress != null && networkFormat == NetworkFormat.JSON;
+
+        this.threshold = Level.toLevel(properties.getProperty("log.threshold"), Level.ALL).toInt();
+        boolean recorderOn = Boolean.parseBoolean(trim(properties.getProperty("log.flightrecorder")));
+        this.flightRecorder = !recorderOn ? null
+                : unchanged(changed, "log.flightrecorder") && previous.flightRecorder != null
+                ? previous.flightRecorder
+                : new FlightRecorder(parseInt(properties.getProperty("log.flightrecorder.size"), 256));
+        this.enabledThreshold = flightRecorder == null ? threshold : Math.min(threshold, Level.DEBUG_INT);
+        String timed = trim(properties.getProperty("log.metrics.latency"));
+        this.metricsTimed = timed == null || Boolean.parseBoolean(timed);
+        this.metricsJmx = Boolean.parseBoolean(trim(properties.getProperty("log.metrics.jmx")));
+        String jmxName = trim(properties.getProperty("log.metrics.jmx.name"));
+        this.metricsJmxName = jmxName == null || jmxName.isEmpty() ? null : jmxName;
+        this.rateLimiter = unchanged(changed, RateLimiter.PREFIX)
+                ? previous.rateLimiter : RateLimiter.of(properties);
+        this.rateLimitSummaryInterval = parseInt(properties.getProperty("log.ratelimit.summaryinterval"), 60000);
+    }
+
+    /**
+     * @param properties the configuration, copied by this call
+     * @param previous the configuration replaced by the new one or
+     *                 {@code null}
+     * @return the configuration read from {@code properties}
+     * @since 1.1
+     */
+    static LoggerConfig of(Properties properties, LoggerConfig previous) {
+        Properties copy = new Properties();
+        for (String key : properties.stringPropertyNames())
+            copy.setProperty(key, properties.getProperty(key));
+        return new LoggerConfig(copy, previous);
+    }
+
+    /**
+     * @param key the key to change
+     * @param value the new value or {@code null} to remove the key
+     * @return a copy of this configuration with one key changed
+     * @since 1.1
+     */
+    LoggerConfig with(String key, String value) {
+        Properties copy = new Properties();
+        for (String name : properties.stringPropertyNames())
+            copy.setProperty(name, properties.getProperty(name));
+        if (value == null)
+            copy.remove(key);
+        else
+            copy.setProperty(key, value);
+        return new LoggerConfig(copy, this);
+    }
+
+    /**
+     * @return the keys whose values differ between the two configurations,
+     *         sorted
+     * @since 1.1
+     */
+    Set<String> changedKeys(LoggerConfig other) {
+        Set<String> changed = new TreeSet<>();
+        for (String key : properties.stringPropertyNames())
+            if (!Objects.equals(properties.getProperty(key), other.properties.getProperty(key)))
+                changed.add(key);
+        for (String key : other.properties.stringPropertyNames())
+            if (properties.getProperty(key) == null)
+                changed.add(key);
+        return changed;
+    }
+
+    /**
+     * @return true if the keys change how the open files are written, so
+     *         every file has to be opened again
+     * @since 1.1
+     */
+    static boolean changesSinks(Set<String> changed) {
+        return matchesAny(changed, SINK_KEYS);
+    }
+
+    /**
+     * @return true if the keys change which files the levels are recorded
+     *         into
+     * @since 1.1
+     */
+    static boolean changesFiles(Set<String> changed) {
+        if (matchesAny(changed, FILE_KEYS))
+            return true;
+        for (String key : changed)
+            if (key.startsWith("log.route."))
+                return true;
+        return false;
+    }
+
+    /**
+     * @return true if the keys change the writer threads, which are then
+     *         restarted
+     * @since 1.1
+     */
+    static boolean changesDispatch(Set<String> changed) {
+        return matchesAny(changed, DISPATCH_KEYS) || changesSinks(changed);
+    }
+
+    /**
+     * @return true if the keys change the rate limits
+     * @since 1.1
+     */
+    static boolean changesRateLimits(Set<String> changed) {
+        for (String key : changed)
+            if (key.startsWith(RateLimiter.PREFIX))
+                return true;
+        return false;
+    }
+
+    /**
+     * @return true if the keys change the network sink, which is then
+     *         restarted
+     * @since 1.1
+     */
+    static boolean changesNetwork(Set<String> changed) {
+        return matchesAny(changed, NETWORK_KEYS);
+    }
+
+    /**
+     * @return true if the keys change anything at all, unknown keys are
+     *         ignored
+     * @since 1.1
+     */
+    static boolean changesAnything(Set<String> changed) {
+        return changesDispatch(changed) || changesFiles(changed) || changesRateLimits(changed)
+                || changesNetwork(changed) || matchesAny(changed, LIVE_KEYS);
+    }
+
+    /*
+        A key matches a listed key equal to it or a listed prefix of it, e.g.
+        log.flush matches log.flush.batchsize.
+    */
+    private static boolean matchesAny(Set<String> changed, String[] keys) {
+        for (String key : changed)
+            for (String listed : keys)
+                if (key.equals(listed) || key.startsWith(listed.endsWith(".") ? listed : listed + "."))
+                    return true;
+        return false;
+    }
+
+    /*
+        Whether a previous configuration exists and none of its keys starting
+        with the prefix changed.
+    */
+    private static boolean unchanged(Set<String> changed, String prefix) {
+        if (changed == null)
+            return false;
+        for (String key : changed)
+            if (key.startsWith(prefix))
+                return false;
+        return true;
+    }
+
+    /**
+     * @return the file {@code level} is recorded into unless it is routed
+     * @since 1.1
+     */
+    String fileNameOf(Level level) {
+        if (level == Level.ALL)
+            return allFileName;
+        if (level == Level.DEBUG)
+            return debugFileName;
+        if (level == Level.ERROR)
+            return errorFileName;
+        if (level == Level.FATAL)
+            return fatalFileName;
+        if (level == Level.INFO)
+            return infoFileName;
+        if (level == Level.WARN)
+            return warnFileName;
+        return "default.log";
+    }
+
+    private static String trim(String value) {
+        return value == null ? null : value.trim();
+    }
+
+    static int parseInt(String value, int defaultValue) {
+        if (value == null)
+            return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /*
+        Reads a number of bytes with an optional KB, MB or GB suffix, e.g. 256MB.
+    */
+    static long parseSize(String value, long defaultValue) {
+        if (value == null)
+            return defaultValue;
+        String size = value.trim().toUpperCase();
+        long unit = 1L;
+        if (size.endsWith("KB"))
+            unit = 1L << 10;
+        else if (size.endsWith("MB"))
+            unit = 1L << 20;
+        else if (size.endsWith("GB"))
+            unit = 1L << 30;
+        if (unit > 1L)
+            size = size.substring(0, size.length() - 2).trim();
+        try {
+            return Long.parseLong(size) * unit;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import net.dlinkddns.atulsaurabh.hasselfreelogger.api.LoggerStats;
+import org.apache.log4j.Level;
+
+/**
+ * The counters and latency histograms of one logger. Every counter is a
+ * {@link LongAdder}, so the logging threads do not contend on the metrics.
+ * <p>
+ * The latencies are only measured while {@link #isTimed()} is true, which
+ * spares the calls to {@link System#nanoTime()} if they are not wanted.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class LoggerMetrics
+{
+    private static final Level[] LEVELS = {Level.FATAL, Level.ERROR, Level.WARN, Level.INFO, Level.DEBUG, Level.ALL};
+
+    private final LongAdder[] events = new LongAdder[LEVELS.length];
+    private final Map<String, LongAdder> bytesWritten = new ConcurrentHashMap<>();
+
+    final LatencyHistogram enqueue = new LatencyHistogram();
+    final LatencyHistogram write = new LatencyHistogram();
+    final LatencyHistogram roll = new LatencyHistogram();
+
+    private volatile boolean timed = true;
+
+    LoggerMetrics() {
+        for (int i = 0; i < events.length; i++)
+            events[i] = new LongAdder();
+    }
+
+    /**
+     * Counts an event which passed the threshold.
+     * @since 1.1
+     */
+    void eventLogged(Level level) {
+        int index = indexOf(level);
+        if (index >= 0)
+            events[index].increment();
+    }
+
+    private static int indexOf(Level level) {
+        switch (level.toInt()) {
+            case Level.FATAL_INT:
+                return 0;
+            case Level.ERROR_INT:
+                return 1;
+            case Level.WARN_INT:
+                return 2;
+            case Level.INFO_INT:
+                return 3;
+            case Level.DEBUG_INT:
+                return 4;
+            case Level.ALL_INT:
+                return 5;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @param file the full name of a file
+     * @return the counter of the bytes written into that file
+     * @since 1.1
+     */
+    LongAdder bytesOf(String file) {
+        return bytesWritten.computeIfAbsent(file, name -> new LongAdder());
+    }
+
+    /**
+     * @return true if the latencies are measured
+     * @since 1.1
+     */
+    boolean isTimed() {
+        return timed;
+    }
+
+    void setTimed(boolean timed) {
+        this.timed = timed;
+    }
+
+    /**
+     * @param queueDepth events waiting for the asynchronous writer
+     * @param droppedEvents events dropped because the queue was full
+     * @since 1.1
+     */
+    LoggerStats snapshot(long queueDepth, long droppedEvents) {
+        Map<String, Long> eventCounts = new LinkedHashMap<>();
+        for (int i = 0; i < LEVELS.length; i++)
+            eventCounts.put(LEVELS[i].toString(), events[i].sum());
+        Map<String, Long> bytes = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> file : bytesWritten.entrySet())
+            bytes.put(file.getKey(), file.getValue().sum());
+        return new LoggerStats(eventCounts, bytes, queueDepth, droppedEvents, enqueue.snapshot(),
+                write.snapshot(), roll.snapshot());
+    }
+}
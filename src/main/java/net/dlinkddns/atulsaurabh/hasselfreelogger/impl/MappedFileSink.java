@@ -0,0 +1,245 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the events of one log file into a memory mapped region of the file,
+ * so that recording an event is a memory copy instead of a system call.
+ * <p>
+ * The file is mapped in regions of a configurable size. When a region is full
+ * the next one is mapped right behind it. The operating system writes the
+ * mapped pages back by itself; additionally {@link #force()} forces the region
+ * to the disk at the configured interval on a background thread, which bounds
+ * what is lost if the machine fails. A logging thread never waits for the
+ * disk, not even while it waits for the lock of the sink.
+ * <p>
+ * While the sink is open the file is longer than its content, the rest of the
+ * current region is filled with zero bytes. The file is truncated to its
+ * content when it is rolled or closed. A rolled file is unmapped at once and
+ * forced and truncated by the {@link RollingArchiver}, so a roll does not
+ * keep the logging threads waiting for the disk. After a crash the trailing
+ * zero bytes are found and overwritten when the file is opened again.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class MappedFileSink extends FileSink
+{
+    private final long regionSize;
+
+    private FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart;
+
+    /**
+     * The region {@link #force()} is forcing outside of the lock. It is
+     * unmapped by that call if it was replaced meanwhile.
+     */
+    private MappedByteBuffer forcing;
+
+    /**
+     * Opens the file for appending, creating its directory if required.
+     *
+     * @param file the full name of the log file
+     * @param pattern the pattern used to render the events
+     * @param format the format of the file
+     * @param throwables renders the stack traces
+     * @param datePattern the pattern deciding the period of the file
+     * @param rollingPolicy decides when else the file is rolled
+     * @param regionSize size of one mapped region in bytes
+     * @throws IOException if the file can not be opened or mapped
+     * @since 1.1
+     */
+    MappedFileSink(String file, CompiledPattern pattern, LogFormat format, ThrowableRenderer throwables,
+            String datePattern, RollingPolicy rollingPolicy, long regionSize)
+            throws IOException {
+        super(file, pattern, format, throwables, datePattern, rollingPolicy);
+        this.regionSize = Math.max(4096L, regionSize);
+        start();
+    }
+
+    @Override
+    protected void openFile() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        regionStart = contentLength(channel);
+        region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, regionSize);
+    }
+
+    /*
+        The file is longer than its content while it is mapped.
+    */
+    @Override
+    protected long fileLength() {
+        return regionStart + region.position();
+    }
+
+    /*
+        Finds the end of the content, skipping the zero bytes left behind by a
+        region which was not truncated because the process died.
+    */
+    static long contentLength(FileChannel channel) throws IOException {
+        long end = channel.size();
+        ByteBuffer block = ByteBuffer.allocate(8192);
+        while (end > 0) {
+            long start = Math.max(0L, end - block.capacity());
+            block.clear();
+            block.limit((int) (end - start));
+            while (block.hasRemaining() && channel.read(block, start + block.position()) >= 0) {
+                /* keep reading until the block is full */
+            }
+            for (int i = block.position() - 1; i >= 0; i--)
+                if (block.get(i) != 0)
+                    return start + i + 1;
+            end = start;
+        }
+        return 0L;
+    }
+
+    @Override
+    protected void writeBytes(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            if (!region.hasRemaining())
+                remap();
+            if (bytes.remaining() <= region.remaining()) {
+                region.put(bytes);
+            } else {
+                int limit = bytes.limit();
+                bytes.limit(bytes.position() + region.remaining());
+                region.put(bytes);
+                bytes.limit(limit);
+            }
+        }
+    }
+
+    /*
+        The full region needs no force, the operating system writes its pages
+        back after it was unmapped as well.
+    */
+    private void remap() throws IOException {
+        regionStart += region.position();
+        release(region);
+        region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, regionSize);
+    }
+
+    /*
+        Unmaps a region which is no longer written, unless it is being forced.
+    */
+    private void release(MappedByteBuffer replaced) {
+        if (replaced != forcing)
+            unmap(replaced);
+    }
+
+    /**
+     * Forces the current region to the disk. The region is taken under the
+     * lock but forced outside of it, so the logging threads go on writing
+     * meanwhile.
+     * @since 1.1
+     */
+    @Override
+    void force() {
+        MappedByteBuffer target;
+        lock.lock();
+        try {
+            if (region == null || forcing != null)
+                return;
+            target = region;
+            forcing = target;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            target.force();
+        } catch (RuntimeException e) {
+            reportFailure(new IOException(e));
+        } finally {
+            lock.lock();
+            try {
+                forcing = null;
+                if (target != region)
+                    unmap(target);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    protected void closeFile() throws IOException {
+        region.force();
+        long length = regionStart + region.position();
+        release(region);
+        region = null;
+        channel.truncate(length);
+        channel.close();
+    }
+
+    /*
+        The archiver forces and truncates the file after it was renamed; the
+        channel still refers to it.
+    */
+    @Override
+    protected void closeRolledFile() {
+        long length = regionStart + region.position();
+        release(region);
+        region = null;
+        RollingArchiver.truncate(channel, length, file);
+        channel = null;
+    }
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            /*
+                Java 8 has no Unsafe.invokeCleaner, the cleaner of the buffer is
+                used instead.
+            */
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    /*
+        A mapped region is released only when its buffer is garbage collected.
+        Unmapping it explicitly keeps the address space and the file handles of
+        rolled files from piling up. If that is not possible the region is left
+        to the garbage collector.
+    */
+    static void unmap(MappedByteBuffer buffer) {
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } else {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null)
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            /* left to the garbage collector */
+        }
+    }
+}
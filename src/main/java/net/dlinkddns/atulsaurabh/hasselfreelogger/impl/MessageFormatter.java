@@ -0,0 +1,165 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.util.Arrays;
+
+/**
+ * Replaces the {@code {}} place holders of a message pattern by the arguments
+ * of a log call. A place holder preceded by a back slash is printed as it is.
+ * <p>
+ * The arguments are passed either as up to two single values or as an array,
+ * so that the one and two argument log methods never need an array.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class MessageFormatter
+{
+    private MessageFormatter() {
+    }
+
+    /**
+     * @param pattern the message pattern
+     * @param count number of arguments
+     * @param argument0 the first argument if {@code arguments} is {@code null}
+     * @param argument1 the second argument if {@code arguments} is {@code null}
+     * @param arguments all the arguments or {@code null}
+     * @return the formatted message
+     * @since 1.1
+     */
+    static String format(String pattern, int count, Object argument0, Object argument1, Object[] arguments) {
+        if (pattern == null || count == 0)
+            return pattern;
+        StringBuilder buffer = new StringBuilder(pattern.length() + 16 * count);
+        formatTo(buffer, pattern, count, argument0, argument1, arguments);
+        return buffer.toString();
+    }
+
+    /**
+     * Appends the formatted message to {@code buffer}.
+     * @since 1.1
+     */
+    static void formatTo(StringBuilder buffer, String pattern, int count,
+            Object argument0, Object argument1, Object[] arguments) {
+        if (pattern == null) {
+            buffer.append((String) null);
+            return;
+        }
+        int used = 0;
+        int start = 0;
+        int length = pattern.length();
+        for (int i = 0; i < length - 1; i++) {
+            if (pattern.charAt(i) != '{' || pattern.charAt(i + 1) != '}')
+                continue;
+            if (i > 0 && pattern.charAt(i - 1) == '\\') {
+                buffer.append(pattern, start, i - 1).append("{}");
+            } else if (used < count) {
+                buffer.append(pattern, start, i);
+                appendArgument(buffer, argument(used++, argument0, argument1, arguments));
+            } else {
+                continue;
+            }
+            start = i + 2;
+            i++;
+        }
+        buffer.append(pattern, start, length);
+    }
+
+    /**
+     * Following the common convention a {@link Throwable} passed as the last
+     * argument and not consumed by a place holder is the exception of the
+     * event.
+     *
+     * @return that exception or {@code null}
+     * @since 1.1
+     */
+    static Throwable trailingThrowable(String pattern, int count,
+            Object argument0, Object argument1, Object[] arguments) {
+        if (count == 0)
+            return null;
+        Object last = argument(count - 1, argument0, argument1, arguments);
+        if (!(last instanceof Throwable) || placeHolders(pattern) >= count)
+            return null;
+        return (Throwable) last;
+    }
+
+    private static int placeHolders(String pattern) {
+        if (pattern == null)
+            return 0;
+        int found = 0;
+        for (int i = pattern.indexOf("{}"); i >= 0; i = pattern.indexOf("{}", i + 2))
+            if (i == 0 || pattern.charAt(i - 1) != '\\')
+                found++;
+        return found;
+    }
+
+    private static Object argument(int index, Object argument0, Object argument1, Object[] arguments) {
+        if (arguments != null)
+            return arguments[index];
+        return index == 0 ? argument0 : argument1;
+    }
+
+    /**
+     * @return the text replacing a place holder by {@code argument}
+     * @since 1.1
+     */
+    static String render(Object argument) {
+        StringBuilder buffer = new StringBuilder();
+        appendArgument(buffer, argument);
+        return buffer.toString();
+    }
+
+    /**
+     * Appends the text replacing a place holder by {@code argument}. A boxed
+     * primitive or a character sequence is appended without creating its
+     * string first.
+     * @since 1.1
+     */
+    static void appendArgument(StringBuilder buffer, Object argument) {
+        if (argument instanceof CharSequence)
+            buffer.append((CharSequence) argument);
+        else if (argument instanceof Integer)
+            buffer.append(((Integer) argument).intValue());
+        else if (argument instanceof Long)
+            buffer.append(((Long) argument).longValue());
+        else if (argument instanceof Double)
+            buffer.append(((Double) argument).doubleValue());
+        else if (argument instanceof Float)
+            buffer.append(((Float) argument).floatValue());
+        else if (argument instanceof Short || argument instanceof Byte)
+            buffer.append(((Number) argument).intValue());
+        else if (argument instanceof Boolean)
+            buffer.append(((Boolean) argument).booleanValue());
+        else if (argument instanceof Character)
+            buffer.append(((Character) argument).charValue());
+        else if (argument == null || !argument.getClass().isArray())
+            buffer.append(argument);
+        else
+            appendArray(buffer, argument);
+    }
+
+    private static void appendArray(StringBuilder buffer, Object argument) {
+        if (argument instanceof Object[])
+            buffer.append(Arrays.deepToString((Object[]) argument));
+        else if (argument instanceof int[])
+            buffer.append(Arrays.toString((int[]) argument));
+        else if (argument instanceof long[])
+            buffer.append(Arrays.toString((long[]) argument));
+        else if (argument instanceof byte[])
+            buffer.append(Arrays.toString((byte[]) argument));
+        else if (argument instanceof char[])
+            buffer.append(Arrays.toString((char[]) argument));
+        else if (argument instanceof short[])
+            buffer.append(Arrays.toString((short[]) argument));
+        else if (argument instanceof boolean[])
+            buffer.append(Arrays.toString((boolean[]) argument));
+        else if (argument instanceof float[])
+            buffer.append(Arrays.toString((float[]) argument));
+        else
+            buffer.append(Arrays.toString((double[]) argument));
+    }
+}
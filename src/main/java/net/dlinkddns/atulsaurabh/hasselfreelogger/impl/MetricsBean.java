@@ -0,0 +1,165 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import net.dlinkddns.atulsaurabh.hasselfreelogger.api.LoggerStats;
+
+/**
+ * Publishes the {@link LoggerStats} of a logger through JMX. Every attribute
+ * is read from a fresh snapshot.
+ * <p>
+ * The bean refers to its logger weakly, so a logger which was never shut down
+ * can still be collected. Its counters stay reachable; once the logger is
+ * gone the bean reports them one last time and unregisters itself.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class MetricsBean implements HasselFreeLoggerMXBean
+{
+    private static final AtomicInteger IDS = new AtomicInteger();
+
+    private static final String DOMAIN = "net.dlinkddns.atulsaurabh.hasselfreelogger:type=HasselFreeLogger,";
+
+    private final WeakReference<HasselFreeLogger> logger;
+    private final LoggerMetrics metrics;
+    private final String configuredName;
+    private final ObjectName name;
+    private final AtomicBoolean registered = new AtomicBoolean();
+
+    /**
+     * @param logger the logger whose snapshots are published
+     * @param metrics the counters of the logger
+     * @param configuredName the value of {@code log.metrics.jmx.name}, or
+     *                       {@code null} to number the bean
+     * @since 1.1
+     */
+    MetricsBean(HasselFreeLogger logger, LoggerMetrics metrics, String configuredName) {
+        this.logger = new WeakReference<>(logger);
+        this.metrics = metrics;
+        this.configuredName = configuredName;
+        ObjectName objectName = null;
+        try {
+            objectName = new ObjectName(DOMAIN + (configuredName == null ? "id=" + IDS.incrementAndGet()
+                    : "name=" + ObjectName.quote(configuredName)));
+        } catch (JMException e) {
+            /* the name is quoted and valid */
+        }
+        this.name = objectName;
+    }
+
+    /**
+     * @return true if the bean is registered under the configured name
+     * @since 1.1
+     */
+    boolean isNamed(String configuredName) {
+        return Objects.equals(this.configuredName, configuredName);
+    }
+
+    private LoggerStats stats() {
+        HasselFreeLogger published = logger.get();
+        if (published != null)
+            return published.getStats();
+        unregister();
+        return metrics.snapshot(0L, 0L);
+    }
+
+    /**
+     * Registers the bean with the platform MBean server. A failure is logged
+     * and otherwise ignored, the metrics are still available by the API. A
+     * name taken by another logger is reported and left to that logger.
+     * @since 1.1
+     */
+    void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(name))
+                java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(
+                        java.util.logging.Level.WARNING, "Logger Metrics Already Registered As " + name);
+            else {
+                server.registerMBean(this, name);
+                registered.set(true);
+            }
+        } catch (JMException | RuntimeException e) {
+            java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(
+                    java.util.logging.Level.WARNING, "Unable To Register Logger Metrics", e);
+        }
+    }
+
+    /**
+     * Unregisters the bean if it was registered by {@link #register()}.
+     * @since 1.1
+     */
+    void unregister() {
+        if (!registered.compareAndSet(true, false))
+            return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+        } catch (JMException | RuntimeException e) {
+            java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(
+                    java.util.logging.Level.WARNING, "Unable To Unregister Logger Metrics", e);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getEvents() {
+        return stats().getEvents();
+    }
+
+    @Override
+    public Map<String, Long> getBytesWritten() {
+        return stats().getBytesWritten();
+    }
+
+    @Override
+    public long getQueueDepth() {
+        return stats().getQueueDepth();
+    }
+
+    @Override
+    public long getDroppedEvents() {
+        return stats().getDroppedEvents();
+    }
+
+    @Override
+    public Map<String, Double> getEnqueueLatency() {
+        return describe(stats().getEnqueueLatency());
+    }
+
+    @Override
+    public Map<String, Double> getWriteLatency() {
+        return describe(stats().getWriteLatency());
+    }
+
+    @Override
+    public Map<String, Double> getRollDuration() {
+        return describe(stats().getRollDuration());
+    }
+
+    private static Map<String, Double> describe(LoggerStats.Latency latency) {
+        Map<String, Double> description = new LinkedHashMap<>();
+        description.put("count", (double) latency.getCount());
+        description.put("mean", latency.getMean());
+        description.put("p50", (double) latency.getPercentile(50.0));
+        description.put("p90", (double) latency.getPercentile(90.0));
+        description.put("p99", (double) latency.getPercentile(99.0));
+        description.put("p99.9", (double) latency.getPercentile(99.9));
+        description.put("max", (double) latency.getMax());
+        return description;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+/**
+ * Decides how the events shipped to a log collector are encoded. It is
+ * configured with the key <b><i>log.network.format</i></b>.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+enum NetworkFormat
+{
+    /**
+     * Syslog messages as of RFC 5424, written by {@link SyslogEncoder}. Over
+     * TCP every message is preceded by its length as of RFC 6587. This is the
+     * default.
+     */
+    SYSLOG,
+
+    /**
+     * One JSON object per line, written by {@link JsonEncoder}.
+     */
+    JSON;
+
+    /**
+     * @param name the configured value, may be {@code null}
+     * @return the matching format or {@link #SYSLOG} if nothing matches
+     */
+    static NetworkFormat of(String name) {
+        if (name != null) {
+            String normalized = name.trim().toUpperCase();
+            for (NetworkFormat format : values())
+                if (format.name().equals(normalized))
+                    return format;
+        }
+        return SYSLOG;
+    }
+
+    /**
+     * @param throwables renders the stack traces
+     * @param facility the syslog facility of the events
+     * @param appName the syslog application name
+     * @return a new encoder of this format
+     */
+    EventEncoder newEncoder(ThrowableRenderer throwables, int facility, String appName) {
+        return this == JSON ? new JsonEncoder(throwables) : new SyslogEncoder(throwables, facility, appName);
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ships the events to a log collector over TCP or UDP, as syslog messages or
+ * as JSON lines. A logging thread only encodes the event and appends it to a
+ * {@link NetworkSpool}; it never waits for the network. A daemon thread sends
+ * the spooled events through a non blocking channel.
+ * <p>
+ * Over TCP the sender copies as many events as fit into its batch and writes
+ * the batch with as few system calls as the socket allows, so the events
+ * logged while a batch is on its way are sent together with the next one.
+ * Over UDP every event is a datagram of its own, cut to the largest datagram
+ * if it is longer. An event leaves the spool only when the whole batch was
+ * written; a batch interrupted by a broken connection is sent again, so the
+ * collector may receive an event twice but never misses one which was
+ * spooled.
+ * <p>
+ * If the collector can not be reached or the connection breaks, the sender
+ * tries again after a delay which doubles with every failure up to a maximum.
+ * Meanwhile the events are kept in the spool. An event logged while the spool
+ * is full is dropped; the dropped events are counted and reported once the
+ * collector receives events again. When the sink is closed the sender keeps
+ * sending for a moment, the events it did not send stay in the spool file.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class NetworkSink implements Closeable
+{
+    private static final int MAX_DATAGRAM = 65507;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100L);
+    private static final long CONNECT_TIMEOUT = 5000L;
+    private static final long CLOSE_TIMEOUT = 1000L;
+
+    private final String host;
+    private final int port;
+    private final boolean udp;
+    private final boolean octetCounting;
+    private final int threshold;
+    private final int batchSize;
+    private final long backoff;
+    private final long maxBackoff;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final EventEncoder encoder;
+    private final ByteBuffer frame = ByteBuffer.allocate(12);
+    private final NetworkSpool spool;
+    private long dropped;
+
+    private final Thread sender;
+    private volatile boolean idle;
+    private volatile boolean closed;
+    private volatile long closeDeadline;
+
+    private Selector selector;
+    private SelectableChannel channel;
+    private SelectionKey key;
+    private ByteBuffer batch;
+    private final ByteBuffer input = ByteBuffer.allocate(512);
+    private long reportedDropped;
+    private boolean failing;
+
+    /**
+     * Opens the spool and starts the sender thread.
+     *
+     * @param address the collector as {@code host:port}
+     * @param udp true to send datagrams instead of using a TCP connection
+     * @param format the encoding of the events
+     * @param encoder encodes the events into {@code format}
+     * @param threshold the lowest level shipped
+     * @param spoolFile the file of the spool
+     * @param spoolSize the number of bytes of the spool
+     * @param batchSize the number of bytes sent at once over TCP
+     * @param backoff milliseconds before the first retry
+     * @param maxBackoff the longest delay between two retries in
+     *                   milliseconds
+     * @since 1.1
+     */
+    NetworkSink(String address, boolean udp, NetworkFormat format, EventEncoder encoder, int threshold,
+            Path spoolFile, long spoolSize, long batchSize, long backoff, long maxBackoff) {
+        int colon = address.lastIndexOf(':');
+        this.host = colon < 0 ? address.trim() : address.substring(0, colon).trim();
+        this.port = colon < 0 ? 514 : LoggerConfig.parseInt(address.substring(colon + 1), 514);
+        this.udp = udp;
+        this.octetCounting = !udp && format == NetworkFormat.SYSLOG;
+        this.encoder = encoder;
+        this.threshold = threshold;
+        this.batchSize = (int) Math.max(1024L, Math.min(batchSize, 1L << 26));
+        this.backoff = Math.max(1L, backoff);
+        this.maxBackoff = Math.max(this.backoff, maxBackoff);
+        this.spool = new NetworkSpool(spoolFile, spoolSize);
+        this.sender = new Thread(this::run, "HasselFreeLogger-Network");
+        this.sender.setDaemon(true);
+        this.sender.start();
+    }
+
+    /**
+     * Encodes an event and spools it, unless it is below the threshold. It
+     * returns as soon as the event is spooled.
+     * @since 1.1
+     */
+    void publish(LogEvent event) {
+        if (HasselFreeLogger.priority(event.level).toInt() < threshold)
+            return;
+        lock.lock();
+        try {
+            if (closed)
+                return;
+            ByteBuffer bytes = encoder.encode(event);
+            if (udp && bytes.remaining() > MAX_DATAGRAM)
+                bytes.limit(bytes.position() + MAX_DATAGRAM);
+            ByteBuffer framing = null;
+            if (octetCounting) {
+                frame.clear();
+                frame.put(Integer.toString(bytes.remaining()).getBytes(StandardCharsets.US_ASCII)).put((byte) ' ');
+                frame.flip();
+                framing = frame;
+            }
+            if (!spool.append(framing, bytes))
+                dropped++;
+        } catch (RuntimeException e) {
+            java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(
+                    java.util.logging.Level.SEVERE, "Unable To Encode EVENT For " + host + ":" + port, e);
+        } finally {
+            lock.unlock();
+        }
+        if (idle)
+            LockSupport.unpark(sender);
+    }
+
+    /*
+        Sends the spooled events until the sink is closed, connecting again
+        after a growing delay whenever the collector can not be reached.
+    */
+    private void run() {
+        long delay = backoff;
+        batch = ByteBuffer.allocateDirect(udp ? MAX_DATAGRAM : batchSize);
+        try {
+            while (!closed || (!spool.isEmpty() && System.currentTimeMillis() < closeDeadline)) {
+                if (spool.isEmpty()) {
+                    awaitEvents();
+                    continue;
+                }
+                if (closed && channel == null)
+                    break;
+                try {
+                    if (channel == null)
+                        connect();
+                    send();
+                    delay = backoff;
+                    recovered();
+                } catch (IOException e) {
+                    failed(e);
+                    disconnect();
+                    if (closed)
+                        break;
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(delay));
+                    delay = Math.min(maxBackoff, delay * 2L);
+                }
+            }
+        } finally {
+            disconnect();
+        }
+    }
+
+    /*
+        Parks until a logging thread spooled an event. A collector closing an
+        idle connection is noticed meanwhile.
+    */
+    private void awaitEvents() {
+        idle = true;
+        try {
+            if (spool.isEmpty() && !closed)
+                LockSupport.parkNanos(this, IDLE_NANOS);
+        } finally {
+            idle = false;
+        }
+        if (channel instanceof SocketChannel && spool.isEmpty()) {
+            try {
+                if (selector.selectNow() > 0) {
+                    selector.selectedKeys().clear();
+                    drainInput();
+                }
+            } catch (IOException e) {
+                disconnect();
+            }
+        }
+    }
+
+    private void connect() throws IOException {
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        if (address.isUnresolved())
+            throw new IOException("Unknown Host " + host);
+        selector = Selector.open();
+        if (udp) {
+            DatagramChannel datagrams = DatagramChannel.open();
+            channel = datagrams;
+            datagrams.configureBlocking(false);
+            datagrams.connect(address);
+            key = datagrams.register(selector, 0);
+            return;
+        }
+        SocketChannel socket = SocketChannel.open();
+        channel = socket;
+        socket.configureBlocking(false);
+        socket.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
+        socket.setOption(java.net.StandardSocketOptions.SO_KEEPALIVE, true);
+        key = socket.register(selector, SelectionKey.OP_READ);
+        if (!socket.connect(address)) {
+            key.interestOps(SelectionKey.OP_CONNECT);
+            if (selector.select(CONNECT_TIMEOUT) == 0)
+                throw new IOException("Connect Timed Out");
+            selector.selectedKeys().clear();
+            socket.finishConnect();
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /*
+        Sends one batch and releases its events.
+    */
+    private void send() throws IOException {
+        ByteChannel out = (ByteChannel) channel;
+        int oldest = spool.oldestLength();
+        if (oldest > batch.capacity())
+            batch = ByteBuffer.allocateDirect(oldest);
+        batch.clear();
+        long end = spool.fill(batch, udp ? 1 : Integer.MAX_VALUE);
+        batch.flip();
+        while (batch.hasRemaining()) {
+            if (out.write(batch) > 0)
+                continue;
+            /*
+                The collector is slow: wait until the socket takes more bytes,
+                the events logged meanwhile pile up in the spool.
+            */
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            selector.select(IDLE_NANOS / 1000000L);
+            if (key.isReadable())
+                drainInput();
+            selector.selectedKeys().clear();
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            if (closed && System.currentTimeMillis() >= closeDeadline)
+                return;
+        }
+        spool.release(end);
+        if (batch.capacity() > batchSize && !udp)
+            batch = ByteBuffer.allocateDirect(batchSize);
+    }
+
+    /*
+        A collector sends nothing, so any input is discarded; the end of the
+        input means the collector closed the connection.
+    */
+    private void drainInput() throws IOException {
+        input.clear();
+        int read;
+        while ((read = ((SocketChannel) channel).read(input)) > 0)
+            input.clear();
+        if (read < 0)
+            throw new IOException("Closed By Collector");
+    }
+
+    private void disconnect() {
+        try {
+            if (channel != null)
+                channel.close();
+            if (selector != null)
+                selector.close();
+        } catch (IOException ignored) {
+            /* connected again anyway */
+        } finally {
+            channel = null;
+            selector = null;
+            key = null;
+        }
+    }
+
+    /*
+        A failure is reported once until the collector receives events again.
+    */
+    private void failed(IOException e) {
+        if (failing)
+            return;
+        failing = true;
+        java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(
+                java.util.logging.Level.SEVERE, "Unable To Send EVENTS To " + (udp ? "udp://" : "tcp://")
+                + host + ":" + port + ", The Events Are Spooled", e);
+    }
+
+    private void recovered() {
+        failing = false;
+        long count;
+        lock.lock();
+        try {
+            count = dropped;
+        } finally {
+            lock.unlock();
+        }
+        if (count != reportedDropped) {
+            java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(
+                    java.util.logging.Level.WARNING, (count - reportedDropped)
+                    + " Events Dropped Because The NETWORK SPOOL Was Full");
+            reportedDropped = count;
+        }
+    }
+
+    /**
+     * Stops accepting events, lets the sender thread send the spooled events
+     * for a moment and closes the spool.
+     * @since 1.1
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closeDeadline = System.currentTimeMillis() + CLOSE_TIMEOUT;
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        LockSupport.unpark(sender);
+        try {
+            sender.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        spool.close();
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The events a {@link NetworkSink} has not shipped yet, kept in a ring in a
+ * memory mapped file. The logging threads append the encoded events and the
+ * sender thread copies them into its batches and releases them once they are
+ * sent:
+ * <pre>
+ * header: int magic 'HFLS', int version, long capacity, long read position, long write position
+ * record: int length, bytes
+ * </pre>
+ * The positions grow without bounds and are taken modulo the capacity. A
+ * record never wraps around the end of the ring; the rest of the ring is
+ * skipped instead, marked by a length of -1 if there is room for it.
+ * <p>
+ * While the collector keeps up, the ring is a memory copy between the threads
+ * and its pages stay in memory. A backlog grows into the file, which the
+ * operating system writes back by itself, and the events still spooled when
+ * the process ends are shipped by the next sink opening the file. If the
+ * ring is full an event is refused.
+ * <p>
+ * The records are appended under the lock of the sink. The sender thread
+ * reads only the records between the read and the write position, which the
+ * appending threads never touch, so it takes no lock. If the file can not be
+ * opened or is locked by another process, the ring is kept in memory only.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class NetworkSpool implements Closeable
+{
+    private static final int MAGIC = 0x48464c53;
+    private static final int VERSION = 1;
+    private static final int CAPACITY_AT = 8;
+    private static final int READ_AT = 16;
+    private static final int WRITE_AT = 24;
+    private static final int HEADER_SIZE = 32;
+    private static final int WRAP = -1;
+
+    private static final long MEMORY_CAPACITY = 8L << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer ring;
+    private final ByteBuffer appender;
+    private final ByteBuffer reader;
+    private final long capacity;
+
+    private volatile long read;
+    private volatile long write;
+
+    /**
+     * Opens the spool, continuing the records left in the file. A file still
+     * holding records keeps its capacity until it is empty.
+     *
+     * @param file the spool file
+     * @param capacity the number of bytes of the ring
+     * @since 1.1
+     */
+    NetworkSpool(Path file, long capacity) {
+        capacity = Math.max(4096L, Math.min(capacity, Integer.MAX_VALUE - HEADER_SIZE));
+        FileChannel opened = null;
+        MappedByteBuffer mapped = null;
+        try {
+            opened = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            FileLock locked = opened.tryLock();
+            if (locked == null)
+                throw new IOException("Locked By Another Process");
+            capacity = recover(opened, capacity);
+            mapped = opened.map(FileChannel.MapMode.READ_WRITE, 0L, HEADER_SIZE + capacity);
+        } catch (IOException | OverlappingFileLockException e) {
+            java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(
+                    java.util.logging.Level.SEVERE, "Unable To Open NETWORK SPOOL " + file
+                    + ", The Events Are Spooled In Memory", e);
+            close(opened);
+            opened = null;
+            capacity = Math.min(capacity, MEMORY_CAPACITY);
+        }
+        this.channel = opened;
+        this.capacity = capacity;
+        this.ring = mapped != null ? mapped : ByteBuffer.allocateDirect((int) (HEADER_SIZE + capacity));
+        this.appender = ring.duplicate();
+        this.reader = ring.duplicate();
+        if (mapped != null && ring.getInt(0) == MAGIC) {
+            read = ring.getLong(READ_AT);
+            write = ring.getLong(WRITE_AT);
+        } else {
+            ring.putInt(0, MAGIC).putInt(4, VERSION).putLong(CAPACITY_AT, capacity);
+            ring.putLong(READ_AT, 0L).putLong(WRITE_AT, 0L);
+        }
+    }
+
+    /*
+        Returns the capacity of a file still holding records, or starts the file
+        over with the requested capacity.
+    */
+    private static long recover(FileChannel channel, long capacity) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            /* reads the header */
+        }
+        if (!header.hasRemaining()) {
+            header.flip();
+            int magic = header.getInt();
+            int version = header.getInt();
+            long stored = header.getLong();
+            long read = header.getLong();
+            long write = header.getLong();
+            if (magic == MAGIC && version == VERSION && stored >= 4096L && stored <= Integer.MAX_VALUE - HEADER_SIZE
+                    && channel.size() >= HEADER_SIZE + stored && read >= 0L && read < write
+                    && write - read <= stored)
+                return stored;
+        }
+        channel.truncate(0L);
+        return capacity;
+    }
+
+    /**
+     * Appends one record. It is called under the lock of the sink.
+     *
+     * @param frame the bytes in front of the record, or {@code null}
+     * @param bytes the record
+     * @return {@code false} if the ring has no room for the record
+     * @since 1.1
+     */
+    boolean append(ByteBuffer frame, ByteBuffer bytes) {
+        int length = (frame == null ? 0 : frame.remaining()) + bytes.remaining();
+        long required = 4L + length;
+        long position = write;
+        int offset = (int) (position % capacity);
+        long skipped = capacity - offset < required ? capacity - offset : 0L;
+        if (position + skipped + required - read > capacity)
+            return false;
+        if (skipped > 0L) {
+            if (skipped >= 4L)
+                ring.putInt(HEADER_SIZE + offset, WRAP);
+            position += skipped;
+            offset = 0;
+        }
+        appender.clear();
+        appender.position(HEADER_SIZE + offset);
+        appender.putInt(length);
+        if (frame != null)
+            appender.put(frame);
+        appender.put(bytes);
+        write = position + required;
+        ring.putLong(WRITE_AT, write);
+        return true;
+    }
+
+    /**
+     * @return true if every record was released
+     * @since 1.1
+     */
+    boolean isEmpty() {
+        return read == write;
+    }
+
+    /**
+     * @return the length of the oldest record, or 0 if the spool is empty
+     * @since 1.1
+     */
+    int oldestLength() {
+        long position = skipWrap(read);
+        return position == write ? 0 : ring.getInt(HEADER_SIZE + (int) (position % capacity));
+    }
+
+    /**
+     * Copies the records from the oldest on into the batch, as many as fit
+     * and at most {@code maxRecords}. The records stay in the spool until
+     * they are released. It is called by the sender thread only.
+     *
+     * @return the position behind the last record copied, to be passed to
+     *         {@link #release(long)} once the batch is sent
+     * @since 1.1
+     */
+    long fill(ByteBuffer batch, int maxRecords) {
+        long position = read;
+        for (int records = 0; records < maxRecords; records++) {
+            position = skipWrap(position);
+            if (position == write)
+                break;
+            int offset = HEADER_SIZE + (int) (position % capacity);
+            int length = ring.getInt(offset);
+            if (length > batch.remaining())
+                break;
+            reader.limit(offset + 4 + length).position(offset + 4);
+            batch.put(reader);
+            reader.clear();
+            position += 4L + length;
+        }
+        return position;
+    }
+
+    /*
+        Moves a position at the skipped end of the ring to its start.
+    */
+    private long skipWrap(long position) {
+        if (position == write)
+            return position;
+        int offset = (int) (position % capacity);
+        if (capacity - offset < 4L || ring.getInt(HEADER_SIZE + offset) == WRAP)
+            return position + capacity - offset;
+        return position;
+    }
+
+    /**
+     * Frees the records before {@code position}.
+     * @since 1.1
+     */
+    void release(long position) {
+        read = position;
+        ring.putLong(READ_AT, position);
+    }
+
+    /**
+     * Unmaps and closes the file. The records not released are kept in it.
+     * @since 1.1
+     */
+    @Override
+    public void close() {
+        if (ring instanceof MappedByteBuffer)
+            MappedFileSink.unmap((MappedByteBuffer) ring);
+        close(channel);
+    }
+
+    private static void close(FileChannel channel) {
+        if (channel == null)
+            return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(
+                    java.util.logging.Level.SEVERE, "Unable To Close NETWORK SPOOL", e);
+        }
+    }
+}
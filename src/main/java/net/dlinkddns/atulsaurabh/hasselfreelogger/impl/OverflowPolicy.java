@@ -0,0 +1,50 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+/**
+ * Decides what a logging thread does when the ring buffer of
+ * {@link AsyncDispatcher} is full. It is configured with the key
+ * <b><i>log.async.overflow</i></b>.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+enum OverflowPolicy
+{
+    /**
+     * The logging thread waits until the writer thread frees a slot. No event
+     * is lost. This is the default.
+     */
+    BLOCK,
+
+    /**
+     * The oldest event still waiting in the buffer is discarded to make room
+     * for the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Events at or below the level configured with
+     * <b><i>log.async.discardlevel</i></b> are discarded, all the other events
+     * wait for a free slot.
+     */
+    DROP_BELOW_LEVEL;
+
+    /**
+     * @param name the configured value e.g. {@code drop-oldest}, may be {@code null}
+     * @return the matching policy or {@link #BLOCK} if nothing matches
+     */
+    static OverflowPolicy of(String name) {
+        if (name != null) {
+            String normalized = name.trim().replace('-', '_').toUpperCase();
+            for (OverflowPolicy policy : values())
+                if (policy.name().equals(normalized))
+                    return policy;
+        }
+        return BLOCK;
+    }
+}
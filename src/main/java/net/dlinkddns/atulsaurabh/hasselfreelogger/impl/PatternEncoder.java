@@ -0,0 +1,90 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Renders a {@link LogEvent} with a {@link CompiledPattern} and encodes the
+ * text into bytes.
+ * <p>
+ * The text is rendered
+ * into a reusable {@link StringBuilder}, copied into a reusable character
+ * array and encoded into a reusable direct {@link ByteBuffer}, so that
+ * recording an event does not allocate once the buffers have grown to the
+ * size of the largest event. Only the arguments of a message and an exception
+ * allocate while they are rendered.
+ * <p>
+ * An encoder is not thread safe. Every sink owns its encoder and uses it under
+ * its own lock.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class PatternEncoder implements EventEncoder
+{
+    private final CompiledPattern pattern;
+
+    private final StringBuilder text = new StringBuilder(256);
+    private char[] chars = new char[256];
+    private CharBuffer charBuffer = CharBuffer.wrap(chars);
+    private ByteBuffer bytes = ByteBuffer.allocateDirect(8192);
+    private final CharsetEncoder charsetEncoder;
+
+    private final ThrowableRenderer throwables;
+
+    /**
+     * @param pattern the compiled conversion pattern
+     * @param charset the charset of the log file
+     * @param throwables renders the stack traces
+     * @since 1.1
+     */
+    PatternEncoder(CompiledPattern pattern, Charset charset, ThrowableRenderer throwables) {
+        this.pattern = pattern;
+        this.throwables = throwables;
+        this.charsetEncoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public ByteBuffer encode(LogEvent event) {
+        text.setLength(0);
+        pattern.format(text, event);
+        String stackTrace = throwables.render(event);
+        if (stackTrace != null)
+            text.append(stackTrace);
+        return encodeText();
+    }
+
+    private ByteBuffer encodeText() {
+        int length = text.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+            charBuffer = CharBuffer.wrap(chars);
+        }
+        text.getChars(0, length, chars, 0);
+        while (true) {
+            charBuffer.clear();
+            charBuffer.limit(length);
+            bytes.clear();
+            charsetEncoder.reset();
+            CoderResult result = charsetEncoder.encode(charBuffer, bytes, true);
+            if (!result.isOverflow())
+                result = charsetEncoder.flush(bytes);
+            if (!result.isOverflow())
+                break;
+            bytes = ByteBuffer.allocateDirect(bytes.capacity() * 2);
+        }
+        bytes.flip();
+        return bytes;
+    }
+}
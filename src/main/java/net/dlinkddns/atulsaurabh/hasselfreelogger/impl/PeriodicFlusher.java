@@ -0,0 +1,84 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Flushes the collected events at a fixed period on a daemon thread, so that
+ * an event never waits longer than the period even if no further event
+ * arrives. The events are flushed a last time when the JVM exits.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class PeriodicFlusher
+{
+    private final long periodNanos;
+    private final Runnable flush;
+    private final Thread flusher;
+    private final Thread shutdownHook;
+    private volatile boolean closed;
+
+    /**
+     * @param period milliseconds between two flushes
+     * @param flush flushes the collected events
+     * @since 1.1
+     */
+    PeriodicFlusher(long period, Runnable flush) {
+        this("HasselFreeLogger-Flusher", period, flush);
+    }
+
+    /**
+     * @param name the name of the thread
+     * @param period milliseconds between two runs
+     * @param flush the task run periodically and when the JVM exits
+     * @since 1.1
+     */
+    PeriodicFlusher(String name, long period, Runnable flush) {
+        this.periodNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, period));
+        this.flush = flush;
+        this.flusher = new Thread(this::run, name);
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+        this.shutdownHook = new Thread(flush, name + "Shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    private void run() {
+        while (!closed) {
+            LockSupport.parkNanos(this, periodNanos);
+            try {
+                flush.run();
+            } catch (RuntimeException e) {
+                java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(
+                        java.util.logging.Level.SEVERE, "Unable To Flush LOG FILE", e);
+            }
+        }
+    }
+
+    /**
+     * Stops the flusher thread. The caller flushes the remaining events.
+     * @since 1.1
+     */
+    void close() {
+        closed = true;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            /*
+                The JVM is already shutting down, the hook is running anyway.
+            */
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.log4j.Level;
+
+/**
+ * Limits the events every category may log per level by a token bucket. The
+ * limits are configured by the keys
+ * <ul>
+ *     <li> log.ratelimit.&lt;class&gt;=1000/s         : every level of the class
+ *     <li> log.ratelimit.&lt;class&gt;.&lt;level&gt;=50/s  : one level of the class
+ *     <li> log.ratelimit.*=5000/s                      : every class without a limit of its own
+ * </ul>
+ * A rate is a number of events per {@code s}, {@code m} or {@code h}; a bare
+ * number is per second and a rate of 0 suppresses every event. A bucket holds
+ * the events of one second, so a class limited to 1000/s may log a burst of
+ * 1000 events at once. The key {@code log.ratelimit.summaryinterval} is not a
+ * limit.
+ * <p>
+ * Every level of every class has a bucket of its own, found through a
+ * {@link ClassValue} and an array indexed by the level. A bucket follows the
+ * generic cell rate algorithm: it keeps the time at which it is empty again
+ * and an event moves that time forward by one interval with a compare and
+ * set, so checking a limit takes no lock and allocates nothing.
+ * <p>
+ * The suppressed events are counted per bucket and reported by
+ * {@link #summary()} as one line.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class RateLimiter
+{
+    static final String PREFIX = "log.ratelimit.";
+
+    /*
+        Keys below the prefix which configure the reporting, not a class.
+    */
+    private static final Set<String> RESERVED = Collections.singleton("summaryinterval");
+
+    private static final Level[] LEVELS = {Level.ALL, Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR, Level.FATAL};
+
+    /**
+     * The buckets of a class which is not limited.
+     */
+    private static final Bucket[] UNLIMITED = new Bucket[LEVELS.length];
+
+    private static final int EVERY_LEVEL = LEVELS.length;
+
+    private static final class Bucket
+    {
+        final String category;
+        final Level level;
+        final long interval;
+        final long tolerance;
+        final AtomicLong emptyAt = new AtomicLong(Long.MIN_VALUE);
+        final LongAdder suppressed = new LongAdder();
+
+        /*
+            A bucket without capacity has a negative tolerance, which every
+            event exceeds, so a rate of 0 suppresses every event.
+        */
+        Bucket(String category, Level level, long interval, long capacity) {
+            this.category = category;
+            this.level = level;
+            this.interval = interval;
+            this.tolerance = capacity <= 0 ? -1L : interval * (capacity - 1);
+        }
+
+        boolean tryAcquire(long now) {
+            while (true) {
+                long current = emptyAt.get();
+                long from = Math.max(current, now);
+                if (from - now > tolerance) {
+                    suppressed.increment();
+                    return false;
+                }
+                if (emptyAt.compareAndSet(current, from + interval))
+                    return true;
+            }
+        }
+    }
+
+    /**
+     * The configured events per second of every class name, by the index of
+     * the level and at {@link #EVERY_LEVEL} for the levels without a rate of
+     * their own. A negative rate is not configured.
+     */
+    private final Map<String, double[]> rates;
+    private final double[] defaultRates;
+
+    private final List<Bucket> buckets = new CopyOnWriteArrayList<>();
+
+    private final ClassValue<Bucket[]> byClass = new ClassValue<Bucket[]>() {
+        @Override
+        protected Bucket[] computeValue(Class<?> type) {
+            return create(type);
+        }
+    };
+
+    private RateLimiter(Map<String, double[]> rates, double[] defaultRates) {
+        this.rates = rates;
+        this.defaultRates = defaultRates;
+    }
+
+    /**
+     * @return the limiter configured by the properties or {@code null} if no
+     *         limit is configured
+     * @since 1.1
+     */
+    static RateLimiter of(Properties properties) {
+        Map<String, double[]> rates = new HashMap<>();
+        double[] defaultRates = null;
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.startsWith(PREFIX) || RESERVED.contains(key.substring(PREFIX.length())))
+                continue;
+            double rate = parseRate(properties.getProperty(key));
+            if (rate < 0)
+                continue;
+            String name = key.substring(PREFIX.length());
+            int level = -1;
+            int dot = name.lastIndexOf('.');
+            if (dot > 0) {
+                level = levelIndex(name.substring(dot + 1));
+                if (level >= 0)
+                    name = name.substring(0, dot);
+            }
+            double[] classRates;
+            if (name.equals("*")) {
+                if (defaultRates == null)
+                    defaultRates = unset();
+                classRates = defaultRates;
+            } else {
+                classRates = rates.computeIfAbsent(name, ignored -> unset());
+            }
+            classRates[level >= 0 ? level : EVERY_LEVEL] = rate;
+        }
+        if (rates.isEmpty() && defaultRates == null)
+            return null;
+        return new RateLimiter(rates, defaultRates);
+    }
+
+    private static double[] unset() {
+        double[] rates = new double[LEVELS.length + 1];
+        Arrays.fill(rates, -1);
+        return rates;
+    }
+
+    /*
+        Reads 1000/s, 60/m, 10/h or 1000.
+    */
+    static double parseRate(String value) {
+        if (value == null)
+            return -1;
+        String rate = value.trim().toLowerCase();
+        long unit = 1L;
+        int slash = rate.indexOf('/');
+        if (slash >= 0) {
+            String per = rate.substring(slash + 1).trim();
+            rate = rate.substring(0, slash).trim();
+            if (per.equals("m") || per.equals("min"))
+                unit = 60L;
+            else if (per.equals("h"))
+                unit = 3600L;
+            else if (!per.equals("s") && !per.equals("sec"))
+                return -1;
+        }
+        try {
+            return Math.max(0.0, Double.parseDouble(rate)) / unit;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @param name a level as configured, e.g. {@code warn} or {@code WARNING}
+     * @return the level or {@code null} if the name is unknown
+     * @since 1.1
+     */
+    static Level levelOf(String name) {
+        int index = name == null ? -1 : levelIndex(name.trim());
+        return index < 0 ? null : LEVELS[index];
+    }
+
+    private static int levelIndex(String name) {
+        for (int i = 0; i < LEVELS.length; i++)
+            if (LEVELS[i].toString().equalsIgnoreCase(name))
+                return i;
+        if (name.equalsIgnoreCase("WARNING"))
+            return 3;
+        return -1;
+    }
+
+    private static int levelIndex(Level level) {
+        switch (level.toInt()) {
+            case Level.FATAL_INT:
+                return 5;
+            case Level.ERROR_INT:
+                return 4;
+            case Level.WARN_INT:
+                return 3;
+            case Level.INFO_INT:
+                return 2;
+            case Level.DEBUG_INT:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    private Bucket[] create(Class<?> type) {
+        /*
+            The summary is logged through the limited path itself.
+        */
+        if (type == RateLimiter.class)
+            return UNLIMITED;
+        double[] classRates = rates.get(type.getName());
+        if (classRates == null && defaultRates == null)
+            return UNLIMITED;
+        Bucket[] created = new Bucket[LEVELS.length];
+        for (int i = 0; i < created.length; i++) {
+            double rate = rateOf(classRates, i);
+            if (rate < 0)
+                rate = rateOf(defaultRates, i);
+            if (rate < 0)
+                continue;
+            long interval = rate == 0 ? Long.MAX_VALUE / 4
+                    : Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+            long capacity = Math.max(1L, (long) Math.ceil(rate));
+            created[i] = new Bucket(type.getName(), LEVELS[i], interval, rate == 0 ? 0L : capacity);
+            buckets.add(created[i]);
+        }
+        return created;
+    }
+
+    private static double rateOf(double[] classRates, int level) {
+        if (classRates == null)
+            return -1;
+        return classRates[level] >= 0 ? classRates[level] : classRates[EVERY_LEVEL];
+    }
+
+    /**
+     * @param category the class logging the event, {@code null} for none
+     * @param level the level of the event
+     * @return true if the event may be recorded
+     * @since 1.1
+     */
+    boolean tryAcquire(Class category, Level level) {
+        Bucket bucket = byClass.get(category == null ? HasselFreeLogger.class : category)[levelIndex(level)];
+        return bucket == null || bucket.tryAcquire(System.nanoTime());
+    }
+
+    /**
+     * Takes the counts of the events suppressed since the last call.
+     *
+     * @return a line like {@code Rate limit suppressed 1200 events: com.shop.Cart WARN=1200}
+     *         or {@code null} if no event was suppressed
+     * @since 1.1
+     */
+    String summary() {
+        StringBuilder line = null;
+        long total = 0L;
+        for (Bucket bucket : buckets) {
+            long suppressed = bucket.suppressed.sumThenReset();
+            if (suppressed == 0L)
+                continue;
+            if (line == null)
+                line = new StringBuilder(128);
+            else
+                line.append(", ");
+            line.append(bucket.category).append(' ').append(bucket.level).append('=').append(suppressed);
+            total += suppressed;
+        }
+        if (line == null)
+            return null;
+        return "Rate limit suppressed " + total + " events: " + line;
+    }
+}
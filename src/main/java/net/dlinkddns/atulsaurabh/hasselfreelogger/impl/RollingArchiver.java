@@ -0,0 +1,153 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses rolled files and enforces the retention of a
+ * {@link RollingPolicy} on a single daemon thread shared by all the sinks.
+ * The same thread forces and truncates the files rolled by the
+ * {@link MappedFileSink}; the tasks run in the order they are handed over, so
+ * a file is truncated before it is compressed.
+ * <p>
+ * A file is compressed into a temporary file which is renamed to
+ * {@code .gz} once it is complete; only then the rolled file is deleted. So a
+ * JVM exiting in the middle leaves the rolled file untouched.
+ * <p>
+ * Retention considers every file next to the active file whose name starts
+ * with the name of the active file and a dot. The oldest files are deleted
+ * until at most the configured number of files is left and their total size
+ * is within the configured limit. The {@link TimeIndex} of a file is not
+ * counted and is deleted together with the file.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class RollingArchiver
+{
+    private static final String PARTIAL = ".part";
+
+    private static final ExecutorService ARCHIVER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "HasselFreeLogger-Archiver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private RollingArchiver() {
+    }
+
+    /**
+     * Compresses {@code rolled} and removes the oldest rolled files of
+     * {@code active} in the background.
+     *
+     * @param rolled the file which was just rolled
+     * @param active the file the sink writes into
+     * @param policy decides what is done with the rolled files
+     * @since 1.1
+     */
+    static void archive(Path rolled, Path active, RollingPolicy policy) {
+        ARCHIVER.execute(() -> {
+            try {
+                if (policy.isCompressed())
+                    compress(rolled);
+                retain(active, policy);
+            } catch (IOException | RuntimeException e) {
+                java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(
+                        java.util.logging.Level.SEVERE, "Unable To Archive LOG FILE " + rolled, e);
+            }
+        });
+    }
+
+    /**
+     * Forces a file closed by a roll to the disk, cuts it to its content and
+     * closes it in the background.
+     *
+     * @param channel the open channel of the file
+     * @param length the length of the content
+     * @param file the name of the file before it was rolled
+     * @since 1.1
+     */
+    static void truncate(FileChannel channel, long length, Path file) {
+        ARCHIVER.execute(() -> {
+            try (FileChannel rolled = channel) {
+                rolled.force(false);
+                rolled.truncate(length);
+            } catch (IOException | RuntimeException e) {
+                java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(
+                        java.util.logging.Level.SEVERE, "Unable To Close LOG FILE " + file, e);
+            }
+        });
+    }
+
+    private static void compress(Path rolled) throws IOException {
+        if (!Files.exists(rolled))
+            return;
+        Path compressed = rolled.resolveSibling(rolled.getFileName() + ".gz");
+        Path partial = rolled.resolveSibling(compressed.getFileName() + PARTIAL);
+        try (InputStream in = Files.newInputStream(rolled);
+                OutputStream out = new GZIPOutputStream(Files.newOutputStream(partial), 64 << 10)) {
+            byte[] buffer = new byte[64 << 10];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer))
+                out.write(buffer, 0, read);
+        }
+        Files.move(partial, compressed, StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(compressed, Files.getLastModifiedTime(rolled));
+        Files.delete(rolled);
+    }
+
+    private static void retain(Path active, RollingPolicy policy) throws IOException {
+        if (policy.getMaxFiles() == 0 && policy.getMaxTotalSize() == 0)
+            return;
+        String prefix = active.getFileName() + ".";
+        List<Path> rolled = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(active.toAbsolutePath().getParent(),
+                file -> {
+                    String name = file.getFileName().toString();
+                    return name.startsWith(prefix) && !name.endsWith(PARTIAL)
+                            && !name.endsWith(TimeIndex.SUFFIX);
+                })) {
+            for (Path file : files)
+                rolled.add(file);
+        }
+        rolled.sort(Comparator.comparingLong(RollingArchiver::lastModified)
+                .thenComparing(Path::toString).reversed());
+        long total = 0L;
+        for (int i = 0; i < rolled.size(); i++) {
+            Path file = rolled.get(i);
+            long size = Files.size(file);
+            total += size;
+            boolean tooMany = policy.getMaxFiles() > 0 && i >= policy.getMaxFiles();
+            boolean tooLarge = policy.getMaxTotalSize() > 0 && total > policy.getMaxTotalSize();
+            if (tooMany || tooLarge) {
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(TimeIndex.sidecarOf(file));
+                total -= size;
+            }
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+/**
+ * Decides when a sink rolls its file besides the end of the date period and
+ * what happens to the rolled files.
+ * <p>
+ * With a maximum size a file is also rolled as soon as the next event would
+ * make it larger. The rolled files then get an index behind the period,
+ * e.g. {@code info.log.18-10-2026.3}, which starts at 1 in every period.
+ * <p>
+ * Rolled files are compressed and old ones are deleted by the
+ * {@link RollingArchiver} thread, so a roll costs the logging thread only
+ * the rename of the file.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class RollingPolicy
+{
+    /**
+     * Rolls by the date period only and keeps every rolled file as it is.
+     */
+    static final RollingPolicy DAILY = new RollingPolicy(0L, false, 0, 0L);
+
+    private final long maxSize;
+    private final boolean compress;
+    private final int maxFiles;
+    private final long maxTotalSize;
+
+    /**
+     * @param maxSize bytes after which the file is rolled, 0 for no limit
+     * @param compress if true the rolled files are compressed with gzip
+     * @param maxFiles number of rolled files kept, 0 for no limit
+     * @param maxTotalSize bytes all rolled files may use together, 0 for no limit
+     * @since 1.1
+     */
+    RollingPolicy(long maxSize, boolean compress, int maxFiles, long maxTotalSize) {
+        this.maxSize = Math.max(0L, maxSize);
+        this.compress = compress;
+        this.maxFiles = Math.max(0, maxFiles);
+        this.maxTotalSize = Math.max(0L, maxTotalSize);
+    }
+
+    /**
+     * @return bytes after which the file is rolled, 0 for no limit
+     * @since 1.1
+     */
+    long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return true if the rolled files get an index
+     * @since 1.1
+     */
+    boolean isSizeBased() {
+        return maxSize > 0;
+    }
+
+    /**
+     * @since 1.1
+     */
+    boolean isCompressed() {
+        return compress;
+    }
+
+    /**
+     * @return number of rolled files kept, 0 for no limit
+     * @since 1.1
+     */
+    int getMaxFiles() {
+        return maxFiles;
+    }
+
+    /**
+     * @return bytes all rolled files may use together, 0 for no limit
+     * @since 1.1
+     */
+    long getMaxTotalSize() {
+        return maxTotalSize;
+    }
+
+    /**
+     * @return true if the rolled files have to be handed to the
+     *         {@link RollingArchiver}
+     * @since 1.1
+     */
+    boolean isArchiving() {
+        return compress || maxFiles > 0 || maxTotalSize > 0;
+    }
+}
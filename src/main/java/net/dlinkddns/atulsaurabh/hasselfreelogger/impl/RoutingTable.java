@@ -0,0 +1,70 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Function;
+import org.apache.log4j.Level;
+
+/**
+ * Decides into which files the events of a level are recorded.
+ * <p>
+ * By default an event is recorded into the file of its level and into the
+ * file of {@link Level#ALL}, so that this file is an aggregate of every level.
+ * The events of {@code logAll} are recorded into the aggregate only. The
+ * files of a level are replaced by the key {@code log.route.<level>}, e.g.
+ * {@code log.route.debug=debug.log} keeps the debug events out of the
+ * aggregate and {@code log.route.error=error.log,alert.log,all.log} records
+ * the error events into three files.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class RoutingTable
+{
+    private static final Level[] LEVELS = {Level.FATAL, Level.ERROR, Level.WARN, Level.INFO, Level.DEBUG, Level.ALL};
+
+    private final Map<Level, String[]> files = new HashMap<>();
+
+    /**
+     * @param properties the configuration, {@code null} for the default routes
+     * @param fileNameOf the file of every level
+     * @since 1.1
+     */
+    RoutingTable(Properties properties, Function<Level, String> fileNameOf) {
+        String aggregate = fileNameOf.apply(Level.ALL);
+        for (Level level : LEVELS) {
+            Set<String> names = new LinkedHashSet<>();
+            String route = properties == null ? null
+                    : properties.getProperty("log.route." + level.toString().toLowerCase());
+            if (route != null) {
+                for (String name : route.split(","))
+                    if (!name.trim().isEmpty())
+                        names.add(name.trim());
+            } else {
+                if (fileNameOf.apply(level) != null)
+                    names.add(fileNameOf.apply(level));
+                if (aggregate != null)
+                    names.add(aggregate);
+            }
+            files.put(level, names.toArray(new String[names.size()]));
+        }
+    }
+
+    /**
+     * @return the names of the files the events of {@code level} are
+     *         recorded into, relative to the log directory
+     * @since 1.1
+     */
+    String[] filesOf(Level level) {
+        String[] names = files.get(level);
+        return names == null ? new String[0] : names;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.log4j.Level;
+
+/**
+ * Keeps the open {@link FileSink} of every log file and the
+ * {@link SinkRoute} of every level. A file is opened the first time one of
+ * its levels is recorded and shared by every level recorded into it.
+ * <p>
+ * The files are opened under a {@link ReentrantLock} rather than inside
+ * {@link ConcurrentHashMap#computeIfAbsent}, whose monitor would pin a
+ * virtual thread to its carrier while the file is opened.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class SinkRegistry
+{
+    private final Map<String, FileSink> byFile = new ConcurrentHashMap<>();
+    private final Map<Level, SinkRoute> byLevel = new ConcurrentHashMap<>();
+    private final ReentrantLock openLock = new ReentrantLock();
+
+    /**
+     * The generation of the files the routes are opened for, {@code null}
+     * until the first reconfiguration.
+     */
+    private Object generation;
+
+    /**
+     * @param level the level of the event
+     * @return the route already opened for that level or {@code null}
+     * @since 1.1
+     */
+    SinkRoute get(Level level) {
+        return byLevel.get(level);
+    }
+
+    /**
+     * Opens the sink of a log file.
+     * @since 1.1
+     */
+    interface Factory
+    {
+        FileSink open(String file) throws IOException;
+    }
+
+    /**
+     * Returns the route of {@code level} into {@code files}, opening the
+     * files which are not open yet.
+     *
+     * @param level the level of the events
+     * @param files the fully resolved files of the level
+     * @param factory opens a file
+     * @param generation the generation of the files, see
+     *                   {@link #retain(Set, Object)}
+     * @return the route or {@code null} if the files belong to a replaced
+     *         generation and the caller has to read the configuration again
+     * @throws UncheckedIOException if a file can not be opened
+     * @since 1.1
+     */
+    SinkRoute acquire(Level level, String[] files, Factory factory, Object generation) {
+        SinkRoute route = byLevel.get(level);
+        if (route != null)
+            return route;
+        openLock.lock();
+        try {
+            if (this.generation != null && this.generation != generation)
+                return null;
+            route = byLevel.get(level);
+            if (route != null)
+                return route;
+            Set<FileSink> sinks = new LinkedHashSet<>();
+            for (String file : files) {
+                FileSink sink = byFile.get(file);
+                if (sink == null) {
+                    try {
+                        sink = factory.open(file);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    byFile.put(file, sink);
+                }
+                sinks.add(sink);
+            }
+            route = new SinkRoute(sinks.toArray(new FileSink[sinks.size()]));
+            byLevel.put(level, route);
+            return route;
+        } finally {
+            openLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the events collected by every sink.
+     * @since 1.1
+     */
+    void flushAll() {
+        for (FileSink sink : byFile.values())
+            sink.flush();
+    }
+
+    /**
+     * Forces the events written by every sink to the disk.
+     * @since 1.1
+     */
+    void forceAll() {
+        for (FileSink sink : byFile.values())
+            sink.force();
+    }
+
+    /**
+     * Closes every sink. The registry is empty afterwards and can be used again.
+     * @since 1.1
+     */
+    void closeAll() {
+        openLock.lock();
+        try {
+            retain(Collections.<String>emptySet(), generation);
+        } finally {
+            openLock.unlock();
+        }
+    }
+
+    /**
+     * Forgets the routes of every level and closes the sinks of the files
+     * which are not kept. The routes are opened again by the next event of
+     * their level and share the kept sinks.
+     * <p>
+     * The routes are forgotten before a sink is closed, so an event refused by
+     * a closed sink finds the new route of its level. A caller still holding
+     * the old configuration can not open a route for it any more, because the
+     * routes of every other generation are refused.
+     *
+     * @param files the fully resolved files whose sinks stay open
+     * @param generation the generation of the files of the new configuration
+     * @since 1.1
+     */
+    void retain(Set<String> files, Object generation) {
+        List<FileSink> dropped = new ArrayList<>();
+        openLock.lock();
+        try {
+            this.generation = generation;
+            byLevel.clear();
+            for (String file : byFile.keySet()) {
+                if (files.contains(file))
+                    continue;
+                FileSink sink = byFile.remove(file);
+                if (sink != null)
+                    dropped.add(sink);
+            }
+        } finally {
+            openLock.unlock();
+        }
+        for (FileSink sink : dropped)
+            sink.close();
+    }
+}
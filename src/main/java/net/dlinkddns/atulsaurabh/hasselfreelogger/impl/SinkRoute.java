@@ -0,0 +1,105 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The sinks receiving the events of one level. An event is rendered and
+ * encoded once and the same bytes are copied into every sink, so writing an
+ * event into N files costs one encoding and N copies.
+ * <p>
+ * A route with a single sink or of a format which is not
+ * {@link LogFormat#isShareable() shareable} hands the event to every sink,
+ * which encodes it under its own lock.
+ * <p>
+ * A route is replaced when the logger is reconfigured. An event refused by a
+ * sink closed meanwhile is written into the new route, skipping the sinks
+ * both routes share.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class SinkRoute
+{
+    private final FileSink[] sinks;
+    private final EventEncoder encoder;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * @param sinks the distinct sinks of the level
+     * @since 1.1
+     */
+    SinkRoute(FileSink[] sinks) {
+        this.sinks = sinks;
+        this.encoder = sinks.length > 1 && sinks[0].isShareable() ? sinks[0].newEncoder() : null;
+    }
+
+    /**
+     * Writes the event into every sink of the route.
+     *
+     * @param event the event
+     * @param delivered the route which was refused the event before or
+     *                  {@code null}; its sinks already have the event
+     * @return {@code false} if a sink was closed by a reconfiguration and the
+     *         event has to be written into the new route of its level
+     * @since 1.1
+     */
+    boolean append(LogEvent event, SinkRoute delivered) {
+        if (encoder == null) {
+            boolean written = true;
+            for (FileSink sink : sinks)
+                if (!isDelivered(sink, delivered))
+                    written &= sink.append(event);
+            return written;
+        }
+        lock.lock();
+        try {
+            return append(encoder.encode(event), event, delivered);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copies an event already encoded by the caller into every sink of the
+     * route. The position of the buffer is left unchanged.
+     *
+     * @return {@code false} if a sink was closed by a reconfiguration
+     * @see #append(LogEvent, SinkRoute)
+     * @since 1.1
+     */
+    boolean append(ByteBuffer bytes, LogEvent event, SinkRoute delivered) {
+        int start = bytes.position();
+        int end = bytes.limit();
+        boolean written = true;
+        for (FileSink sink : sinks) {
+            if (isDelivered(sink, delivered))
+                continue;
+            bytes.limit(end);
+            bytes.position(start);
+            written &= sink.append(bytes, event);
+        }
+        bytes.limit(end);
+        bytes.position(start);
+        return written;
+    }
+
+    /*
+        A sink kept by a reconfiguration is in the old and in the new route. It
+        has accepted the event, because only the sinks which were dropped are
+        closed.
+    */
+    private static boolean isDelivered(FileSink sink, SinkRoute delivered) {
+        if (delivered == null)
+            return false;
+        for (FileSink candidate : delivered.sinks)
+            if (candidate == sink)
+                return true;
+        return false;
+    }
+}
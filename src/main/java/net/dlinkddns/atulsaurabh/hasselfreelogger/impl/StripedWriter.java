@@ -0,0 +1,342 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.nio.ByteBuffer;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.apache.log4j.Level;
+
+/**
+ * Records the events of many logging threads without a shared lock. Every
+ * logging thread renders and encodes its events with an encoder of its own
+ * into a stripe, a single producer ring of encoded events owned by that
+ * thread. A single writer thread drains the stripes into the files.
+ * <p>
+ * Every event takes a number from one global sequence right before it is
+ * published, which is the only point where the logging threads meet. The
+ * writer merges the stripes by that sequence, keeping the stripes with
+ * pending events in a heap ordered by the sequence of their oldest event. An
+ * event is written only once every event with a lower sequence has been
+ * written, so every file receives the events in the order they were
+ * published.
+ * <p>
+ * Virtual threads do not get a stripe. There may be millions of them and each
+ * would hold a ring of its own, so their events are recorded by the caller
+ * through the locks of the sinks instead.
+ * <p>
+ * Closing the writer marks the sequence, so no event can be published
+ * afterwards, and waits until every event numbered before has been written.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class StripedWriter
+{
+    /**
+     * Bit of the sequence marking a closed writer.
+     */
+    private static final long CLOSED = 1L << 62;
+
+    /**
+     * The ring of encoded events of one logging thread. Only the owner
+     * publishes into it and only the writer thread consumes from it.
+     */
+    private static final class Stripe
+    {
+        private final Thread owner;
+        private final ByteBuffer[] bytes;
+        private final long[] timestamps;
+        private final Level[] levels;
+        private final AtomicLongArray sequences;
+        private final int mask;
+
+        private EventEncoder encoder;
+        private CompiledPattern pattern;
+        private boolean publishing;
+
+        /**
+         * Whether the stripe is in the heap of the writer. Only used by the
+         * writer thread.
+         */
+        private boolean queued;
+
+        /**
+         * Slots below {@code head} have been written, slots below
+         * {@code tail} have been published.
+         */
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+
+        private Stripe(Thread owner, int size) {
+            this.owner = owner;
+            this.bytes = new ByteBuffer[size];
+            this.timestamps = new long[size];
+            this.levels = new Level[size];
+            this.sequences = new AtomicLongArray(size);
+            this.mask = size - 1;
+            for (int i = 0; i < size; i++)
+                bytes[i] = ByteBuffer.allocate(256);
+        }
+
+        private long oldestSequence() {
+            return sequences.get((int) head.get() & mask);
+        }
+    }
+
+    private final int stripeSize;
+    private final Supplier<CompiledPattern> pattern;
+    private final Function<CompiledPattern, EventEncoder> encoders;
+    private final Function<Level, SinkRoute> routes;
+    private final Runnable idleAction;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final CopyOnWriteArrayList<Stripe> stripes = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Stripe> stripe;
+
+    /**
+     * Every sequence below this one has been written.
+     */
+    private volatile long written;
+    private volatile long closedAt = -1L;
+
+    private final Thread writer;
+    private final Thread shutdownHook;
+
+    /**
+     * @param stripeSize number of events every stripe can hold, rounded up to
+     *                   a power of two
+     * @param pattern supplies the current conversion pattern
+     * @param encoders creates the encoder of a stripe for a pattern, of a
+     *                 {@link LogFormat#isShareable() shareable} format
+     * @param routes returns the route of a level or {@code null} if its files
+     *               can not be opened
+     * @param idleAction called on the writer thread whenever the stripes
+     *                   became empty
+     * @since 1.1
+     */
+    StripedWriter(int stripeSize, Supplier<CompiledPattern> pattern,
+            Function<CompiledPattern, EventEncoder> encoders, Function<Level, SinkRoute> routes,
+            Runnable idleAction) {
+        this.stripeSize = Integer.highestOneBit(Math.max(2, stripeSize) - 1) << 1;
+        this.pattern = pattern;
+        this.encoders = encoders;
+        this.routes = routes;
+        this.idleAction = idleAction;
+        this.stripe = ThreadLocal.withInitial(() -> {
+            Stripe created = new Stripe(Thread.currentThread(), this.stripeSize);
+            stripes.add(created);
+            return created;
+        });
+        this.writer = new Thread(this::drain, "HasselFreeLogger-StripedWriter");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        this.shutdownHook = new Thread(this::closeFromHook, "HasselFreeLogger-StripedShutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Encodes the event on the calling thread and publishes it into the
+     * stripe of that thread. It waits while the stripe is full.
+     *
+     * @return {@code false} if the writer is closed or the caller is a
+     *         virtual thread and the caller should record the event itself
+     * @since 1.1
+     */
+    boolean publish(LogEvent event) {
+        if (VirtualThreads.isCurrentVirtual())
+            return false;
+        Stripe own = stripe.get();
+        /*
+            A message argument logging while it is rendered must not overwrite
+            the slot and the encoder in use, so its event is recorded by the
+            caller.
+        */
+        if (own.publishing)
+            return false;
+        own.publishing = true;
+        try {
+            return publish(own, event);
+        } finally {
+            own.publishing = false;
+        }
+    }
+
+    private boolean publish(Stripe own, LogEvent event) {
+        long slot = own.tail.get();
+        int idle = 0;
+        while (slot - own.head.get() >= stripeSize) {
+            if (closedAt >= 0 || !writer.isAlive())
+                return false;
+            idle = backOff(idle);
+        }
+        CompiledPattern current = pattern.get();
+        if (own.encoder == null || own.pattern != current) {
+            own.encoder = encoders.apply(current);
+            own.pattern = current;
+        }
+        int index = (int) slot & own.mask;
+        ByteBuffer encoded = own.encoder.encode(event);
+        ByteBuffer copy = own.bytes[index];
+        if (copy.capacity() < encoded.remaining()) {
+            copy = ByteBuffer.allocate(Math.max(encoded.remaining(), copy.capacity() * 2));
+            own.bytes[index] = copy;
+        }
+        copy.clear();
+        copy.put(encoded);
+        copy.flip();
+        own.timestamps[index] = event.timestamp;
+        own.levels[index] = event.level;
+        long number = sequence.getAndIncrement();
+        if ((number & CLOSED) != 0)
+            return false;
+        own.sequences.set(index, number);
+        own.tail.lazySet(slot + 1);
+        return true;
+    }
+
+    private static int backOff(int idle) {
+        if (idle < 100)
+            return idle + 1;
+        if (idle < 200) {
+            Thread.yield();
+            return idle + 1;
+        }
+        LockSupport.parkNanos(10_000L);
+        return idle;
+    }
+
+    /**
+     * Body of the writer thread.
+     */
+    private void drain() {
+        PriorityQueue<Stripe> pending = new PriorityQueue<>(64,
+                (first, second) -> Long.compare(first.oldestSequence(), second.oldestSequence()));
+        LogEvent event = new LogEvent();
+        long next = 0L;
+        int idle = 0;
+        boolean busy = false;
+        while (true) {
+            Stripe oldest = pending.peek();
+            if (oldest == null || oldest.oldestSequence() != next) {
+                /*
+                    The event numbered next is either in a stripe which is not in
+                    the heap or still being published.
+                */
+                collect(pending);
+                oldest = pending.peek();
+                if (oldest == null || oldest.oldestSequence() != next) {
+                    if (busy) {
+                        busy = false;
+                        runIdleAction();
+                    }
+                    written = next;
+                    if (closedAt >= 0 && next >= closedAt)
+                        return;
+                    idle = backOff(idle);
+                    continue;
+                }
+            }
+            pending.poll();
+            oldest.queued = false;
+            int index = (int) oldest.head.get() & oldest.mask;
+            event.level = oldest.levels[index];
+            event.timestamp = oldest.timestamps[index];
+            write(event, oldest.bytes[index]);
+            oldest.levels[index] = null;
+            oldest.head.lazySet(oldest.head.get() + 1);
+            if (oldest.tail.get() > oldest.head.get()) {
+                oldest.queued = true;
+                pending.offer(oldest);
+            }
+            next++;
+            written = next;
+            idle = 0;
+            busy = true;
+        }
+    }
+
+    private void collect(PriorityQueue<Stripe> pending) {
+        for (Stripe candidate : stripes) {
+            if (candidate.tail.get() > candidate.head.get()) {
+                if (!candidate.queued) {
+                    candidate.queued = true;
+                    pending.offer(candidate);
+                }
+            } else if (!candidate.owner.isAlive()) {
+                stripes.remove(candidate);
+            }
+        }
+    }
+
+    private void write(LogEvent event, ByteBuffer bytes) {
+        try {
+            SinkRoute delivered = null;
+            SinkRoute route = routes.apply(event.level);
+            while (route != null && route != delivered && !route.append(bytes, event, delivered)) {
+                delivered = route;
+                route = routes.apply(event.level);
+            }
+        } catch (RuntimeException e) {
+            java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(
+                    java.util.logging.Level.SEVERE, "Unable To Record Log Event", e);
+        }
+    }
+
+    private void runIdleAction() {
+        try {
+            idleAction.run();
+        } catch (RuntimeException e) {
+            java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(
+                    java.util.logging.Level.SEVERE, "Unable To Flush LOG FILE", e);
+        }
+    }
+
+    /**
+     * Waits until every event published before this call has been written.
+     * @since 1.1
+     */
+    void awaitWritten() {
+        long target = sequence.get() & ~CLOSED;
+        while (written < target && writer.isAlive() && Thread.currentThread() != writer)
+            LockSupport.parkNanos(100_000L);
+    }
+
+    /**
+     * Stops accepting events and waits until every event already published
+     * has been written.
+     * @since 1.1
+     */
+    void close() {
+        closeFromHook();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            /*
+                The JVM is already shutting down, the hook is running anyway.
+            */
+        }
+    }
+
+    private void closeFromHook() {
+        long current;
+        do {
+            current = sequence.get();
+        } while ((current & CLOSED) == 0 && !sequence.compareAndSet(current, current | CLOSED));
+        if ((current & CLOSED) == 0)
+            closedAt = current;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
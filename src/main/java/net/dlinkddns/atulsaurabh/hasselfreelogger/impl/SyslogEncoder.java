@@ -0,0 +1,223 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import org.apache.log4j.Level;
+
+/**
+ * Encodes events as syslog messages of RFC 5424, e.g.
+ * <pre>
+ * &lt;14&gt;1 2024-01-31T10:15:30.123Z web-01 shop 4711 - [log@32473 logger="com.shop.Checkout" thread="main" orderId="42"] order 42 paid
+ * </pre>
+ * The priority is made of the configured facility and the severity of the
+ * level: fatal is critical, error is error, warn is warning, info is
+ * informational and debug is debug. The host name and the process id are
+ * looked up once. The logger, the thread and the key value pairs of a
+ * structured event are written as the parameters of the structured data
+ * element {@code log@32473}, the enterprise number reserved for
+ * documentation. The message is UTF-8 and is followed by the stack trace of
+ * the exception, if the event has one.
+ * <p>
+ * The message is not framed; the network sink adds the length of the message
+ * in front of it if the events are shipped over TCP.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class SyslogEncoder implements EventEncoder
+{
+    private static final String STRUCTURED_DATA_ID = "log@32473";
+
+    private final int facility;
+    private final String header;
+    private final ThrowableRenderer throwables;
+
+    private final StringBuilder text = new StringBuilder(256);
+    private final CharsetEncoder utf8 = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+    private final SimpleDateFormat secondFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.");
+    private final Date date = new Date(0L);
+    private String second = "";
+    private long secondFrom = 1L;
+
+    /**
+     * @param throwables renders the stack traces
+     * @param facility the syslog facility, 1 is user level
+     * @param appName the application name of the messages
+     * @since 1.1
+     */
+    SyslogEncoder(ThrowableRenderer throwables, int facility, String appName) {
+        this.throwables = throwables;
+        this.facility = Math.max(0, Math.min(23, facility));
+        this.header = ' ' + headerField(hostName(), 255) + ' ' + headerField(appName, 48) + ' '
+                + headerField(processId(), 128) + " - ";
+        secondFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    @Override
+    public ByteBuffer encode(LogEvent event) {
+        text.setLength(0);
+        text.append('<').append(facility * 8 + severity(HasselFreeLogger.priority(event.level))).append(">1 ");
+        timestamp(event.timestamp);
+        text.append(header);
+        text.append('[').append(STRUCTURED_DATA_ID);
+        parameter("logger", event.categoryName != null ? event.categoryName
+                : event.category == null ? HasselFreeLogger.class.getName() : event.category.getName());
+        parameter("thread", event.threadName);
+        KeyValues keyValues = event.keyValues;
+        if (keyValues != null) {
+            for (int i = 0; i < keyValues.size(); i++) {
+                text.append(' ');
+                name(keyValues.key(i));
+                text.append("=\"");
+                int start = text.length();
+                keyValues.appendValue(text, i);
+                escape(start);
+                text.append('"');
+            }
+        }
+        text.append("] ");
+        if (event.supplier != null)
+            text.append(event.supplier.get());
+        else if (event.argumentCount == 0)
+            text.append(event.message);
+        else
+            MessageFormatter.formatTo(text, event.message, event.argumentCount,
+                    event.argument0, event.argument1, event.arguments);
+        String stackTrace = throwables.render(event);
+        if (stackTrace != null)
+            text.append('\n').append(stackTrace);
+        return utf8();
+    }
+
+    /*
+        The severities of RFC 5424 section 6.2.1.
+    */
+    private static int severity(Level level) {
+        switch (level.toInt()) {
+            case Level.FATAL_INT:
+                return 2;
+            case Level.ERROR_INT:
+                return 3;
+            case Level.WARN_INT:
+                return 4;
+            case Level.INFO_INT:
+                return 6;
+            default:
+                return 7;
+        }
+    }
+
+    private void timestamp(long timestamp) {
+        long from = timestamp - Math.floorMod(timestamp, 1000L);
+        if (from != secondFrom) {
+            date.setTime(from);
+            second = secondFormat.format(date);
+            secondFrom = from;
+        }
+        int millis = (int) (timestamp - from);
+        text.append(second).append((char) ('0' + millis / 100)).append((char) ('0' + millis / 10 % 10))
+                .append((char) ('0' + millis % 10)).append('Z');
+    }
+
+    private void parameter(String name, String value) {
+        text.append(' ').append(name).append("=\"");
+        int start = text.length();
+        text.append(value);
+        escape(start);
+        text.append('"');
+    }
+
+    /*
+        An SD-NAME is printable US-ASCII without '=', ' ', ']' and '"' and at
+        most 32 characters long.
+    */
+    private void name(String key) {
+        int count = Math.min(32, key.length());
+        for (int i = 0; i < count; i++) {
+            char c = key.charAt(i);
+            text.append(c > ' ' && c < 127 && c != '=' && c != ']' && c != '"' ? c : '_');
+        }
+        if (count == 0)
+            text.append('_');
+    }
+
+    /*
+        A PARAM-VALUE escapes '"', '\' and ']' with a backslash.
+    */
+    private void escape(int start) {
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\' || c == ']')
+                text.insert(i++, '\\');
+        }
+    }
+
+    private ByteBuffer utf8() {
+        CharBuffer chars = CharBuffer.wrap(text);
+        buffer.clear();
+        utf8.reset();
+        while (true) {
+            CoderResult result = utf8.encode(chars, buffer, true);
+            if (!result.isOverflow())
+                result = utf8.flush(buffer);
+            if (!result.isOverflow())
+                break;
+            ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /*
+        A header field is printable US-ASCII of a limited length, or '-' if it
+        is unknown.
+    */
+    private static String headerField(String value, int maxLength) {
+        if (value == null || value.isEmpty())
+            return "-";
+        StringBuilder field = new StringBuilder(Math.min(maxLength, value.length()));
+        for (int i = 0; i < value.length() && field.length() < maxLength; i++) {
+            char c = value.charAt(i);
+            field.append(c > ' ' && c < 127 ? c : '_');
+        }
+        return field.toString();
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /*
+        The name of the runtime is "pid@host" on the common virtual machines.
+    */
+    private static String processId() {
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int at = name.indexOf('@');
+        return at > 0 ? name.substring(0, at) : null;
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Renders the stack traces of the events like
+ * {@link Throwable#printStackTrace()}, caching the rendered text of every
+ * stack signature, i.e. a hash of the classes and frames of the exception, of
+ * its causes and of their suppressed exceptions. An exception thrown again at
+ * the same place with the same messages is rendered by comparing the messages
+ * with the cached ones instead of formatting every frame again.
+ * <p>
+ * With a window, the trace of a signature is written in full only once per
+ * window and marked with its id. Within the window the same exception is
+ * written as one line referring to that id and counting the repeats, e.g.
+ * <pre>
+ * java.io.IOException: Connection reset (same as #12, x500)
+ * </pre>
+ * so an exception logged thousands of times per second does not cost
+ * thousands of stack traces.
+ * <p>
+ * The frames written per exception and the length of the cause chain can be
+ * limited. The limits apply to the full traces and are part of the
+ * signature.
+ * <p>
+ * The renderer is used by the sinks of all the files concurrently. It holds no
+ * lock: the cache is a {@link ConcurrentHashMap} read with {@code get} and
+ * filled with {@code putIfAbsent}, the windows are moved by compare and set.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class ThrowableRenderer
+{
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    /**
+     * Number of signatures cached. The cache is emptied when it is full.
+     */
+    private static final int CACHE_SIZE = 1024;
+
+    /**
+     * Writes every trace in full, without limits.
+     */
+    static final ThrowableRenderer PLAIN = new ThrowableRenderer(0L, -1, -1);
+
+    /**
+     * The id and the current window of one signature.
+     */
+    private static final class Trace
+    {
+        final int id;
+        final AtomicLong windowStart;
+        final AtomicLong repeats = new AtomicLong();
+        volatile Rendered rendered;
+
+        Trace(int id, long windowStart) {
+            this.id = id;
+            this.windowStart = new AtomicLong(windowStart);
+        }
+    }
+
+    /**
+     * The text of a trace, valid for the exceptions with the same headers,
+     * i.e. class and message of the exceptions of the chain and of their
+     * suppressed exceptions, as the one rendered.
+     */
+    private static final class Rendered
+    {
+        final String[] headers;
+        final String text;
+
+        Rendered(String[] headers, String text) {
+            this.headers = headers;
+            this.text = text;
+        }
+    }
+
+    private final long window;
+    private final int maxDepth;
+    private final int maxCauses;
+
+    private final Map<Long, Trace> traces = new ConcurrentHashMap<>();
+    private final AtomicInteger ids = new AtomicInteger();
+
+    /**
+     * @param window milliseconds during which a repeated trace is written as
+     *               a reference, 0 to write every trace in full
+     * @param maxDepth the number of frames written per exception
+     * @param maxCauses the number of causes written per exception
+     * @since 1.1
+     */
+    ThrowableRenderer(long window, int maxDepth, int maxCauses) {
+        this.window = Math.max(0L, window);
+        this.maxDepth = maxDepth < 0 ? Integer.MAX_VALUE : maxDepth;
+        this.maxCauses = maxCauses < 0 ? Integer.MAX_VALUE : maxCauses;
+    }
+
+    /**
+     * Renders the exception of an event once, even if the event is encoded
+     * for several files.
+     *
+     * @return the stack trace ending with a line separator or {@code null}
+     *         if the event has no exception
+     * @since 1.1
+     */
+    String render(LogEvent event) {
+        if (event.renderedThrowable == null) {
+            Throwable throwable = event.renderThrowable();
+            if (throwable == null)
+                return null;
+            event.renderedThrowable = render(throwable, event.timestamp);
+        }
+        return event.renderedThrowable;
+    }
+
+    /**
+     * @return the lines of the stack trace as expected by
+     *         {@link org.apache.log4j.spi.ThrowableInformation}
+     * @since 1.1
+     */
+    String[] lines(Throwable throwable) {
+        return render(throwable, System.currentTimeMillis()).split(LINE_SEPARATOR);
+    }
+
+    /*
+        The repeats are recognized by the signature alone, so an exception whose
+        message differs, e.g. by an id, is still referred to within the window.
+        The cached text is reused only if the messages are the same.
+    */
+    private String render(Throwable throwable, long now) {
+        List<Throwable> chain = chain(throwable);
+        long signature = signature(chain);
+        Trace trace = traces.get(signature);
+        boolean first = false;
+        if (trace == null) {
+            if (traces.size() >= CACHE_SIZE)
+                traces.clear();
+            Trace created = new Trace(ids.incrementAndGet(), now);
+            trace = traces.putIfAbsent(signature, created);
+            if (trace == null) {
+                trace = created;
+                first = true;
+            }
+        }
+        String[] headers = headers(chain);
+        if (window > 0L && !first) {
+            long start = trace.windowStart.get();
+            if (now - start < window || !trace.windowStart.compareAndSet(start, now)) {
+                long repeats = trace.repeats.incrementAndGet() + 1;
+                return headers[0] + " (same as #" + trace.id + ", x" + repeats + ")" + LINE_SEPARATOR;
+            }
+            trace.repeats.set(0L);
+        }
+        Rendered rendered = trace.rendered;
+        if (rendered == null || !sameHeaders(rendered.headers, headers)) {
+            rendered = new Rendered(headers, format(chain));
+            trace.rendered = rendered;
+        }
+        if (window == 0L)
+            return rendered.text;
+        return rendered.text + "\t... trace #" + trace.id + LINE_SEPARATOR;
+    }
+
+    /*
+        The exception and its causes up to the limit, stopping at a cycle.
+    */
+    private List<Throwable> chain(Throwable throwable) {
+        List<Throwable> chain = new ArrayList<>(4);
+        for (Throwable current = throwable; current != null && chain.size() <= maxCauses;
+                current = current.getCause()) {
+            for (Throwable seen : chain)
+                if (seen == current)
+                    return chain;
+            chain.add(current);
+        }
+        return chain;
+    }
+
+    private long signature(List<Throwable> chain) {
+        long hash = 17L;
+        for (Throwable throwable : chain) {
+            hash = hash * 31L + throwable.getClass().getName().hashCode();
+            StackTraceElement[] frames = throwable.getStackTrace();
+            int depth = Math.min(frames.length, maxDepth);
+            hash = hash * 31L + frames.length;
+            for (int i = 0; i < depth; i++)
+                hash = hash * 31L + frames[i].hashCode();
+            Throwable[] suppressed = throwable.getSuppressed();
+            hash = hash * 31L + suppressed.length;
+            for (Throwable each : suppressed) {
+                hash = hash * 31L + each.getClass().getName().hashCode();
+                StackTraceElement[] suppressedFrames = each.getStackTrace();
+                int suppressedDepth = Math.min(suppressedFrames.length, maxDepth);
+                hash = hash * 31L + suppressedFrames.length;
+                for (int i = 0; i < suppressedDepth; i++)
+                    hash = hash * 31L + suppressedFrames[i].hashCode();
+            }
+        }
+        hash = hash * 31L + omittedCauses(chain);
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /*
+        The header of the exception comes first, followed by the ones of its
+        suppressed exceptions and then by those of its causes.
+    */
+    private static String[] headers(List<Throwable> chain) {
+        List<String> headers = new ArrayList<>(chain.size());
+        for (Throwable throwable : chain) {
+            headers.add(throwable.toString());
+            for (Throwable suppressed : throwable.getSuppressed())
+                headers.add(suppressed.toString());
+        }
+        return headers.toArray(new String[headers.size()]);
+    }
+
+    private static boolean sameHeaders(String[] cached, String[] headers) {
+        if (cached.length != headers.length)
+            return false;
+        for (int i = 0; i < headers.length; i++)
+            if (!cached[i].equals(headers[i]))
+                return false;
+        return true;
+    }
+
+    /*
+        Follows the layout of Throwable.printStackTrace: the frames a cause has
+        in common with the exception it caused are written as "... n more".
+        Suppressed exceptions are written with their header and frames only.
+    */
+    private String format(List<Throwable> chain) {
+        StringBuilder buffer = new StringBuilder(1024);
+        StackTraceElement[] enclosing = null;
+        for (int c = 0; c < chain.size(); c++) {
+            Throwable throwable = chain.get(c);
+            if (c > 0)
+                buffer.append("Caused by: ");
+            buffer.append(throwable).append(LINE_SEPARATOR);
+            StackTraceElement[] frames = throwable.getStackTrace();
+            int common = enclosing == null ? 0 : commonFrames(frames, enclosing);
+            appendFrames(buffer, frames, frames.length - common, "\t");
+            if (common > 0)
+                buffer.append("\t... ").append(common).append(" more").append(LINE_SEPARATOR);
+            for (Throwable suppressed : throwable.getSuppressed()) {
+                buffer.append("\tSuppressed: ").append(suppressed).append(LINE_SEPARATOR);
+                StackTraceElement[] suppressedFrames = suppressed.getStackTrace();
+                appendFrames(buffer, suppressedFrames, suppressedFrames.length, "\t\t");
+            }
+            enclosing = frames;
+        }
+        int omitted = omittedCauses(chain);
+        if (omitted > 0) {
+            buffer.append("\t... ").append(omitted).append(omitted == 1 ? " cause" : " causes")
+                    .append(" omitted").append(LINE_SEPARATOR);
+        }
+        return buffer.toString();
+    }
+
+    /*
+        The causes beyond the limit, which are counted but not written.
+    */
+    private static int omittedCauses(List<Throwable> chain) {
+        Throwable last = chain.get(chain.size() - 1).getCause();
+        if (last == null || chain.contains(last))
+            return 0;
+        int omitted = 0;
+        for (Throwable cause = last; cause != null && omitted < 1000; cause = cause.getCause())
+            omitted++;
+        return omitted;
+    }
+
+    private void appendFrames(StringBuilder buffer, StackTraceElement[] frames, int count, String prefix) {
+        int written = Math.min(count, maxDepth);
+        for (int i = 0; i < written; i++)
+            buffer.append(prefix).append("at ").append(frames[i]).append(LINE_SEPARATOR);
+        if (written < count)
+            buffer.append(prefix).append("... ").append(count - written).append(" frames omitted")
+                    .append(LINE_SEPARATOR);
+    }
+
+    private static int commonFrames(StackTraceElement[] frames, StackTraceElement[] enclosing) {
+        int m = frames.length - 1;
+        int n = enclosing.length - 1;
+        while (m >= 0 && n >= 0 && frames[m].equals(enclosing[n])) {
+            m--;
+            n--;
+        }
+        return frames.length - 1 - m;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The sidecar index of a log file, which tells where the events of a time
+ * range are in the file. The index of {@code error.log} is
+ * {@code error.log.idx} and it is renamed together with the file when the file
+ * is rolled, e.g. to {@code error.log.18-10-2026.2.idx}. A rolled file which
+ * is compressed keeps the index of its uncompressed content.
+ * <p>
+ * The sink hands every event written to {@link #eventWritten(long, int, long)}.
+ * The events are collected into blocks of a configurable number of events or
+ * bytes and one entry is appended to the index per block:
+ * <pre>
+ * header: int magic 'HFLI', int version
+ * entry:  long start offset, long end offset, long earliest timestamp, long latest timestamp
+ * </pre>
+ * Between two blocks the sink only compares and adds a few numbers, so the
+ * index costs one small write per block. An event always belongs to one block
+ * as a whole, so a block starts at the beginning of a line.
+ * <p>
+ * The events of several threads may reach the file slightly out of order,
+ * which is why a block records its earliest and its latest timestamp. The
+ * events written after the last complete block, e.g. by a process which died,
+ * are not indexed; {@link LogQuery} treats such a range as lying between the
+ * blocks around it.
+ * <p>
+ * The index is written only while the lock of the sink is held. A failure to
+ * write it is reported once and the index is given up, the log file itself is
+ * still written.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class TimeIndex implements Closeable
+{
+    static final String SUFFIX = ".idx";
+
+    private static final int MAGIC = 0x48464c49;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    static final int ENTRY_SIZE = 32;
+
+    private final Path file;
+    private final long blockEvents;
+    private final long blockBytes;
+    private final ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+
+    private FileChannel channel;
+    private boolean failed;
+
+    private long blockStart = -1L;
+    private long blockEnd;
+    private long earliest;
+    private long latest;
+    private long events;
+
+    /**
+     * @param file the log file
+     * @param blockEvents events per block, 0 for no limit
+     * @param blockBytes bytes per block, 0 for no limit
+     * @since 1.1
+     */
+    TimeIndex(Path file, long blockEvents, long blockBytes) {
+        this.file = file;
+        this.blockEvents = blockEvents <= 0 ? Long.MAX_VALUE : blockEvents;
+        this.blockBytes = blockBytes <= 0 ? Long.MAX_VALUE : blockBytes;
+    }
+
+    /**
+     * @param logFile a log file, compressed or not
+     * @return the index of the file
+     * @since 1.1
+     */
+    static Path sidecarOf(Path logFile) {
+        String name = logFile.getFileName().toString();
+        if (name.endsWith(".gz"))
+            name = name.substring(0, name.length() - 3);
+        return logFile.resolveSibling(name + SUFFIX);
+    }
+
+    /**
+     * Adds an event to the current block.
+     *
+     * @param offset the position of the event in the file
+     * @param length the number of bytes of the event
+     * @param timestamp the time of the event
+     * @since 1.1
+     */
+    void eventWritten(long offset, int length, long timestamp) {
+        if (failed)
+            return;
+        if (blockStart >= 0L && offset != blockEnd)
+            finishBlock();
+        if (blockStart < 0L) {
+            blockStart = offset;
+            earliest = timestamp;
+            latest = timestamp;
+            events = 0L;
+        } else if (timestamp < earliest) {
+            earliest = timestamp;
+        } else if (timestamp > latest) {
+            latest = timestamp;
+        }
+        blockEnd = offset + length;
+        if (++events >= blockEvents || blockEnd - blockStart >= blockBytes)
+            finishBlock();
+    }
+
+    private void finishBlock() {
+        if (blockStart < 0L)
+            return;
+        try {
+            if (channel == null)
+                open();
+            entry.clear();
+            entry.putLong(blockStart).putLong(blockEnd).putLong(earliest).putLong(latest);
+            entry.flip();
+            while (entry.hasRemaining())
+                channel.write(entry);
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            blockStart = -1L;
+        }
+    }
+
+    /*
+        Continues the index of the file. An index whose entries go beyond the
+        block, e.g. one left behind by a file which was replaced, or which ends
+        with a partial entry is cut back first.
+    */
+    private void open() throws IOException {
+        channel = FileChannel.open(sidecarOf(file), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = channel.size();
+        long valid = size < HEADER_SIZE ? 0L : HEADER_SIZE + (size - HEADER_SIZE) / ENTRY_SIZE * ENTRY_SIZE;
+        if (valid > 0L) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0L);
+            header.flip();
+            ByteBuffer last = ByteBuffer.allocate(8);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                valid = 0L;
+            else if (valid > HEADER_SIZE && channel.read(last, valid - ENTRY_SIZE + 8) == 8
+                    && last.getLong(0) > blockStart)
+                valid = HEADER_SIZE;
+        }
+        if (valid != size)
+            channel.truncate(valid);
+        if (valid == 0L) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            while (header.hasRemaining())
+                channel.write(header, HEADER_SIZE - header.remaining());
+        }
+        channel.position(channel.size());
+    }
+
+    private void fail(IOException e) {
+        failed = true;
+        java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(
+                java.util.logging.Level.SEVERE, "Unable To Write INDEX FILE " + sidecarOf(file), e);
+        try {
+            closeChannel();
+        } catch (IOException ignored) {
+            /* given up anyway */
+        }
+    }
+
+    /**
+     * Records the current block and closes the index. It is opened again by
+     * the next event.
+     * @since 1.1
+     */
+    @Override
+    public void close() {
+        finishBlock();
+        try {
+            closeChannel();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        FileChannel open = channel;
+        channel = null;
+        if (open != null)
+            open.close();
+    }
+
+    /**
+     * Closes the index and renames it after the log file was renamed to
+     * {@code target}. The index of the new file starts empty.
+     * @since 1.1
+     */
+    void rolled(Path target) {
+        close();
+        Path index = sidecarOf(file);
+        try {
+            Files.move(index, sidecarOf(target), StandardCopyOption.REPLACE_EXISTING);
+        } catch (NoSuchFileException e) {
+            /* nothing was indexed */
+        } catch (IOException e) {
+            java.util.logging.Logger.getLogger(HasselFreeLogger.class.getName()).log(
+                    java.util.logging.Level.SEVERE, "Unable To Roll INDEX FILE " + index, e);
+            try {
+                Files.deleteIfExists(index);
+            } catch (IOException ignored) {
+                /* cut back by the next open */
+            }
+        }
+    }
+
+    /**
+     * Reads an index through a read only mapping.
+     *
+     * @param index the index file
+     * @return four values per block: start offset, end offset, earliest and
+     *         latest timestamp, or {@code null} if there is no valid index
+     * @throws IOException if the index can not be read
+     * @since 1.1
+     */
+    static long[] read(Path index) throws IOException {
+        if (!Files.isRegularFile(index))
+            return null;
+        try (FileChannel in = FileChannel.open(index, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size < HEADER_SIZE)
+                return null;
+            MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+            try {
+                if (mapped.getInt() != MAGIC || mapped.getInt() != VERSION)
+                    return null;
+                long[] blocks = new long[(int) ((size - HEADER_SIZE) / ENTRY_SIZE) * 4];
+                mapped.asLongBuffer().get(blocks);
+                return blocks;
+            } finally {
+                MappedFileSink.unmap(mapped);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Recognizes the virtual threads of Java 21 while the library itself is
+ * compiled for Java 8. {@code Thread.isVirtual()} is looked up once; on a
+ * runtime without virtual threads every thread is a platform thread.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+final class VirtualThreads
+{
+    private static final MethodHandle IS_VIRTUAL;
+
+    static {
+        MethodHandle isVirtual = null;
+        try {
+            isVirtual = MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual",
+                    MethodType.methodType(boolean.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            /*
+                Java 20 or older.
+            */
+        }
+        IS_VIRTUAL = isVirtual;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if the current thread is a virtual thread
+     * @since 1.1
+     */
+    static boolean isCurrentVirtual() {
+        if (IS_VIRTUAL == null)
+            return false;
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(Thread.currentThread());
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+}
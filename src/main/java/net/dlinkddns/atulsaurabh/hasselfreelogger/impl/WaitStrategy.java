@@ -0,0 +1,54 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package net.dlinkddns.atulsaurabh.hasselfreelogger.impl;
+
+/**
+ * Decides what the writer thread of {@link AsyncDispatcher} does while there
+ * is no event to record. It is configured with the key
+ * <b><i>log.async.waitstrategy</i></b>.
+ *
+ * @author Atul Saurabh
+ * @since 1.1
+ */
+enum WaitStrategy
+{
+    /**
+     * The writer thread waits on a condition and is woken up by the producers.
+     * Lowest CPU usage, highest latency.
+     */
+    BLOCKING,
+
+    /**
+     * The writer thread spins, then yields and finally parks for a short time.
+     * This is the default.
+     */
+    SLEEPING,
+
+    /**
+     * The writer thread keeps yielding its time slice.
+     */
+    YIELDING,
+
+    /**
+     * The writer thread never gives up the CPU. Lowest latency, needs a
+     * dedicated core.
+     */
+    BUSY_SPIN;
+
+    /**
+     * @param name the configured value e.g. {@code busy-spin}, may be {@code null}
+     * @return the matching strategy or {@link #SLEEPING} if nothing matches
+     */
+    static WaitStrategy of(String name) {
+        if (name != null) {
+            String normalized = name.trim().replace('-', '_').toUpperCase();
+            for (WaitStrategy strategy : values())
+                if (strategy.name().equals(normalized))
+                    return strategy;
+        }
+        return SLEEPING;
+    }
+}